@@ -0,0 +1,85 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.api.utils;
+
+import com.billyyccc.entity.Book;
+import io.vertx.ext.web.RoutingContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the decoding of the body of {@code POST /books} and {@code POST /books/_bulk}.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DecodeBodyBenchmark {
+  private io.vertx.reactivex.ext.web.RoutingContext bookContext;
+  private io.vertx.reactivex.ext.web.RoutingContext booksContext;
+
+  @Setup
+  public void setUp() {
+    String book = new Book(1, "Effective Java", "java", "2009-01-01").toJson().encode();
+    StringBuilder books = new StringBuilder("[");
+    for (int i = 0; i < 100; i++) {
+      books.append(i == 0 ? "" : ",").append(new Book(i, "Effective Java", "java", "2009-01-01").toJson().encode());
+    }
+    bookContext = routingContextWithBody(book);
+    booksContext = routingContextWithBody(books.append("]").toString());
+  }
+
+  @Benchmark
+  public Book decodeBook() {
+    return RestApiUtil.decodeBodyToObject(bookContext, Book.class);
+  }
+
+  @Benchmark
+  public Book[] decodeBooks() {
+    return RestApiUtil.decodeBodyToObject(booksContext, Book[].class);
+  }
+
+  // only the body of the request is read by the decoding
+  private static io.vertx.reactivex.ext.web.RoutingContext routingContextWithBody(String body) {
+    RoutingContext routingContext = (RoutingContext) Proxy.newProxyInstance(RoutingContext.class.getClassLoader(),
+      new Class<?>[]{RoutingContext.class}, (proxy, method, args) -> {
+        if ("getBodyAsString".equals(method.getName())) {
+          return body;
+        }
+        throw new UnsupportedOperationException(method.getName());
+      });
+    return io.vertx.reactivex.ext.web.RoutingContext.newInstance(routingContext);
+  }
+}
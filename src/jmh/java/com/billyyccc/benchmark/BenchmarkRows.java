@@ -0,0 +1,70 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.benchmark;
+
+import io.reactiverse.pgclient.Row;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rows of the book table for the benchmarks, without a database.
+ * <p>
+ * A row answers every getter by column name from a map through a dynamic proxy, the cost of the proxy is part of
+ * every result using it and is the same whatever is benchmarked.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public final class BenchmarkRows {
+
+  private BenchmarkRows() {
+    // No instance of this class allowed
+  }
+
+  public static Row bookRow(int id, String title, String category, LocalDate publicationDate) {
+    Map<String, Object> columns = new HashMap<>();
+    columns.put("id", id);
+    columns.put("title", title);
+    columns.put("category", category);
+    columns.put("publication_date", publicationDate);
+    return (Row) Proxy.newProxyInstance(Row.class.getClassLoader(), new Class<?>[]{Row.class}, (proxy, method, args) -> {
+      if (args != null && args.length == 1 && args[0] instanceof String) {
+        return columns.get(args[0]);
+      }
+      throw new UnsupportedOperationException(method.getName());
+    });
+  }
+
+  public static Row[] bookRows(int count) {
+    Row[] rows = new Row[count];
+    for (int i = 0; i < count; i++) {
+      rows[i] = bookRow(i, "Effective Java, edition " + i, "java", LocalDate.of(2009, 1, 1).plusDays(i));
+    }
+    return rows;
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database;
+
+import com.billyyccc.entity.Book;
+import com.billyyccc.entity.BookFilter;
+import com.billyyccc.entity.BookPage;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+
+import java.util.List;
+
+/**
+ * A {@link BookDatabaseService} answering with fixed books, so that a benchmark measures what is around the service only.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class FixedBookDatabaseService implements BookDatabaseService {
+  private final BookPage book;
+  private final BookPage books;
+
+  public FixedBookDatabaseService(int bookCount) {
+    this.book = BookPage.of(new JsonArray().add(new Book(1, "Effective Java", "java", "2009-01-01").toJson()));
+    JsonArray books = new JsonArray();
+    for (int i = 0; i < bookCount; i++) {
+      books.add(new Book(i, "Effective Java", "java", "2009-01-01").toJson());
+    }
+    this.books = BookPage.of(books);
+  }
+
+  @Override
+  public BookDatabaseService addNewBook(Book book, Handler<AsyncResult<Void>> resultHandler) {
+    resultHandler.handle(Future.succeededFuture());
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService addNewBooks(List<Book> books, Handler<AsyncResult<JsonArray>> resultHandler) {
+    resultHandler.handle(Future.succeededFuture(new JsonArray()));
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService deleteBookById(int id, Handler<AsyncResult<Void>> resultHandler) {
+    resultHandler.handle(Future.succeededFuture());
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService getBookById(int id, long writtenAt, Handler<AsyncResult<BookPage>> resultHandler) {
+    resultHandler.handle(Future.succeededFuture(book));
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService getBooks(BookFilter filter, Handler<AsyncResult<BookPage>> resultHandler) {
+    resultHandler.handle(Future.succeededFuture(books));
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService loadBooks(String address, Handler<AsyncResult<Void>> resultHandler) {
+    resultHandler.handle(Future.failedFuture(new UnsupportedOperationException("loadBooks")));
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService streamBooks(BookFilter filter, String format, int fetchSize, String address, Handler<AsyncResult<Void>> resultHandler) {
+    resultHandler.handle(Future.failedFuture(new UnsupportedOperationException("streamBooks")));
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService upsertBookById(int id, Book book, Handler<AsyncResult<Void>> resultHandler) {
+    resultHandler.handle(Future.succeededFuture());
+    return this;
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database;
+
+import com.billyyccc.database.impl.LocalBookDatabaseService;
+import com.billyyccc.entity.BookFilter;
+import com.billyyccc.entity.BookPage;
+import io.vertx.core.Vertx;
+import io.vertx.serviceproxy.ServiceBinder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark a round trip to a {@link BookDatabaseService} through the event bus proxy and through the local binding.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ServiceProxyBenchmark {
+  private static final String ADDRESS = "library.db.benchmark";
+
+  @Param({"1", "100"})
+  private int bookCount;
+
+  private Vertx vertx;
+  private com.billyyccc.database.reactivex.BookDatabaseService eventBusProxy;
+  private com.billyyccc.database.reactivex.BookDatabaseService localProxy;
+  private final BookFilter filter = new BookFilter();
+
+  @Setup
+  public void setUp() throws InterruptedException {
+    vertx = Vertx.vertx();
+    BookDatabaseService service = new FixedBookDatabaseService(bookCount);
+
+    CountDownLatch registered = new CountDownLatch(1);
+    new ServiceBinder(vertx)
+      .setAddress(ADDRESS)
+      .register(BookDatabaseService.class, service)
+      .completionHandler(ar -> registered.countDown());
+    registered.await();
+    new LocalBookDatabaseService(service, vertx.getOrCreateContext()).bind(vertx, ADDRESS);
+
+    eventBusProxy = BookDatabaseService.createProxy(vertx, ADDRESS);
+    localProxy = BookDatabaseService.createLocalProxy(vertx, ADDRESS);
+  }
+
+  @TearDown
+  public void tearDown() throws InterruptedException {
+    CountDownLatch closed = new CountDownLatch(1);
+    vertx.close(ar -> closed.countDown());
+    closed.await();
+  }
+
+  @Benchmark
+  public BookPage eventBusGetBookById() {
+    return eventBusProxy.rxGetBookById(1, 0L).blockingGet();
+  }
+
+  @Benchmark
+  public BookPage eventBusGetBooks() {
+    return eventBusProxy.rxGetBooks(filter).blockingGet();
+  }
+
+  @Benchmark
+  public BookPage localGetBookById() {
+    return localProxy.rxGetBookById(1, 0L).blockingGet();
+  }
+
+  @Benchmark
+  public BookPage localGetBooks() {
+    return localProxy.rxGetBooks(filter).blockingGet();
+  }
+}
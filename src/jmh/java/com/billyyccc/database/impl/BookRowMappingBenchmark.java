@@ -0,0 +1,89 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.impl;
+
+import com.billyyccc.benchmark.BenchmarkRows;
+import com.billyyccc.database.utils.BookRowFormat;
+import com.billyyccc.entity.BookPage;
+import io.reactiverse.pgclient.Row;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the mapping of a page of rows to the response, as JSON objects or straight to bytes.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BookRowMappingBenchmark {
+  @Param({"1", "100", "1000"})
+  private int rowCount;
+
+  private Row[] rows;
+
+  @Setup
+  public void setUp() {
+    rows = BenchmarkRows.bookRows(rowCount);
+  }
+
+  @Benchmark
+  public JsonArray jsonArrayCollector() {
+    return Arrays.stream(rows).collect(BookDatabaseServiceImpl.BOOK_JSON_ARRAY_COLLECTOR);
+  }
+
+  @Benchmark
+  public String jsonArrayCollectorEncoded() {
+    return Arrays.stream(rows).collect(BookDatabaseServiceImpl.BOOK_JSON_ARRAY_COLLECTOR).encode();
+  }
+
+  @Benchmark
+  public BookPage bookPageCollector() {
+    return Arrays.stream(rows).collect(BookDatabaseServiceImpl.BOOK_PAGE_COLLECTOR);
+  }
+
+  @Benchmark
+  public Buffer jsonBufferCollector() {
+    return Arrays.stream(rows).collect(BookRowFormat.JSON.batchCollector());
+  }
+
+  @Benchmark
+  public Buffer csvBufferCollector() {
+    return Arrays.stream(rows).collect(BookRowFormat.CSV.batchCollector());
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.utils;
+
+import com.billyyccc.entity.BookFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the query of {@code GET /books} for the common shapes of filters, {@link BookQuery} against the
+ * concatenation it replaced. The allocations per operation are reported by the gc profiler.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BookQueryBenchmark {
+  private final BookFilter emptyFilter = new BookFilter();
+  private final BookFilter categoryFilter = new BookFilter().setCategory("java");
+  private final BookFilter fullFilter = new BookFilter()
+    .setTitle("Effective Java")
+    .setCategory("java")
+    .setPublicationDate("2009-01-01");
+  private final BookFilter pageFilter = new BookFilter()
+    .setCategory("java")
+    .setAfterId(1000)
+    .setLimit(20)
+    .setSort(BookFilter.SORT_BY_ID_DESC);
+
+  @Benchmark
+  public void concatenatedEmptyFilter(Blackhole blackhole) {
+    concatenated(emptyFilter, blackhole);
+  }
+
+  @Benchmark
+  public void concatenatedCategoryFilter(Blackhole blackhole) {
+    concatenated(categoryFilter, blackhole);
+  }
+
+  @Benchmark
+  public void concatenatedFullFilter(Blackhole blackhole) {
+    concatenated(fullFilter, blackhole);
+  }
+
+  @Benchmark
+  public void concatenatedPageFilter(Blackhole blackhole) {
+    concatenated(pageFilter, blackhole);
+  }
+
+  @Benchmark
+  public void templateEmptyFilter(Blackhole blackhole) {
+    template(emptyFilter, blackhole);
+  }
+
+  @Benchmark
+  public void templateCategoryFilter(Blackhole blackhole) {
+    template(categoryFilter, blackhole);
+  }
+
+  @Benchmark
+  public void templateFullFilter(Blackhole blackhole) {
+    template(fullFilter, blackhole);
+  }
+
+  @Benchmark
+  public void templatePageFilter(Blackhole blackhole) {
+    template(pageFilter, blackhole);
+  }
+
+  private static void concatenated(BookFilter filter, Blackhole blackhole) {
+    ConcatenatedBookQuery.DynamicQuery dynamicQuery = ConcatenatedBookQuery.generateDynamicQuery(BookQuery.SQL_FIND_BOOKS, filter);
+    blackhole.consume(dynamicQuery.getPreparedQuery());
+    blackhole.consume(dynamicQuery.getParams());
+  }
+
+  private static void template(BookFilter filter, Blackhole blackhole) {
+    blackhole.consume(BookQuery.statementOf(filter));
+    blackhole.consume(BookQuery.paramsOf(filter));
+  }
+}
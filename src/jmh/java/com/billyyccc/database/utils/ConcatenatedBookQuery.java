@@ -24,30 +24,40 @@
 
 package com.billyyccc.database.utils;
 
-import com.billyyccc.entity.Book;
+import com.billyyccc.entity.BookFilter;
 import io.reactiverse.reactivex.pgclient.Tuple;
-import io.vertx.core.json.JsonObject;
 
 import java.util.Optional;
 
 /**
+ * The query generation replaced by {@link BookQuery}, kept as the baseline of {@link BookQueryBenchmark}.
+ * It concatenates the statement for every filter and wraps it along with its parameters.
+ *
  * @author Billy Yuan <billy112487983@gmail.com>
  */
 
-public class BookDatabaseServiceUtils {
+final class ConcatenatedBookQuery {
   private static final String SQL_FIND_BOOKS_CONDITION_BY_TITLE = " AND title = $";
   private static final String SQL_FIND_BOOKS_CONDITION_BY_CATEGORY = " AND category = $";
   private static final String SQL_FIND_BOOKS_CONDITION_BY_PUBLICATION_DATE = " AND publication_date = $";
+  private static final String SQL_FIND_BOOKS_CONDITION_AFTER_ID = " AND id > $";
+  private static final String SQL_FIND_BOOKS_CONDITION_BEFORE_ID = " AND id < $";
+  private static final String SQL_FIND_BOOKS_ORDER_BY_ID_ASC = " ORDER BY id ASC";
+  private static final String SQL_FIND_BOOKS_ORDER_BY_ID_DESC = " ORDER BY id DESC";
+  private static final String SQL_FIND_BOOKS_LIMIT = " LIMIT $";
 
-  public static JsonObject emptyJsonObject() {
-    return new JsonObject();
+  private ConcatenatedBookQuery() {
+    // No instance of this class allowed
   }
 
   // generate query with dynamic where clause in a manual way
-  public static DynamicQuery generateDynamicQuery(String rawSql, Book book) {
-    Optional<String> title = Optional.ofNullable(book.getTitle());
-    Optional<String> category = Optional.ofNullable(book.getCategory());
-    Optional<String> publicationDate = Optional.ofNullable(book.getPublicationDate());
+  static DynamicQuery generateDynamicQuery(String rawSql, BookFilter filter) {
+    Optional<String> title = Optional.ofNullable(filter.getTitle());
+    Optional<String> category = Optional.ofNullable(filter.getCategory());
+    Optional<String> publicationDate = Optional.ofNullable(filter.getPublicationDate());
+    Optional<Integer> afterId = Optional.ofNullable(filter.getAfterId());
+    Optional<Integer> limit = Optional.ofNullable(filter.getLimit());
+    boolean descending = BookFilter.SORT_BY_ID_DESC.equals(filter.getSort());
 
     // Concat the SQL by conditions
     int count = 0;
@@ -71,23 +81,40 @@ public class BookDatabaseServiceUtils {
       dynamicSql += count;
       params.addValue(publicationDate.get());
     }
+
+    // Keyset pagination on the primary key, the cost of a page does not grow with its depth
+    if (afterId.isPresent()) {
+      count++;
+      dynamicSql += descending ? SQL_FIND_BOOKS_CONDITION_BEFORE_ID : SQL_FIND_BOOKS_CONDITION_AFTER_ID;
+      dynamicSql += count;
+      params.addInteger(afterId.get());
+    }
+    if (afterId.isPresent() || limit.isPresent() || filter.getSort() != null) {
+      dynamicSql += descending ? SQL_FIND_BOOKS_ORDER_BY_ID_DESC : SQL_FIND_BOOKS_ORDER_BY_ID_ASC;
+    }
+    if (limit.isPresent()) {
+      count++;
+      dynamicSql += SQL_FIND_BOOKS_LIMIT;
+      dynamicSql += count;
+      params.addLong(limit.get().longValue());
+    }
     return new DynamicQuery(dynamicSql, params);
   }
 
-  public static class DynamicQuery {
+  static class DynamicQuery {
     private String preparedQuery;
     private Tuple params;
 
-    public DynamicQuery(String preparedQuery, Tuple params) {
+    DynamicQuery(String preparedQuery, Tuple params) {
       this.preparedQuery = preparedQuery;
       this.params = params;
     }
 
-    public String getPreparedQuery() {
+    String getPreparedQuery() {
       return preparedQuery;
     }
 
-    public Tuple getParams() {
+    Tuple getParams() {
       return params;
     }
   }
@@ -0,0 +1,95 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.entity;
+
+import com.billyyccc.entity.codec.BookJsonWriter;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark the ways a {@link Book} is turned into a response or an event bus message and back.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BookSerializationBenchmark {
+  private final Book book = new Book(1, "Effective Java: \"Programming Language Guide\"", "java", "2009-01-01");
+  private final JsonObject bookJson = book.toJson();
+  private final String bookString = bookJson.encode();
+
+  @Benchmark
+  public String bookToString() {
+    return book.toString();
+  }
+
+  @Benchmark
+  public Buffer bookJsonWriter() {
+    return BookJsonWriter.encode(book);
+  }
+
+  @Benchmark
+  public Buffer bookToJsonBuffer() {
+    return book.toJson().toBuffer();
+  }
+
+  @Benchmark
+  public JsonObject bookToJson() {
+    return book.toJson();
+  }
+
+  @Benchmark
+  public String bookToJsonEncoded() {
+    return book.toJson().encode();
+  }
+
+  @Benchmark
+  public String jacksonEncode() {
+    return Json.encode(book);
+  }
+
+  @Benchmark
+  public Book converterFromJson() {
+    Book decoded = new Book();
+    BookConverter.fromJson(bookJson, decoded);
+    return decoded;
+  }
+
+  @Benchmark
+  public Book jacksonDecode() {
+    return Json.decodeValue(bookString, Book.class);
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.loadtest;
+
+import com.billyyccc.database.BookDatabaseService;
+import com.billyyccc.entity.Book;
+import com.billyyccc.entity.BookFilter;
+import com.billyyccc.entity.BookPage;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A {@link BookDatabaseService} keeping the books in memory, so that the REST API can be loaded without a database.
+ * <p>
+ * It answers like the PostgreSQL service for the books, the filters and the pages, the streaming and the bulk load
+ * are not supported.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class InMemoryBookDatabaseService implements BookDatabaseService {
+  private final NavigableMap<Integer, JsonObject> books = new ConcurrentSkipListMap<>();
+
+  /**
+   * Fill the service with the books of ids 1 to {@code bookCount}.
+   */
+  public InMemoryBookDatabaseService seed(int bookCount) {
+    String[] categories = {"java", "design", "database", "network"};
+    for (int id = 1; id <= bookCount; id++) {
+      books.put(id, new Book(id, "Book " + id, categories[id % categories.length], "2018-01-01").toJson());
+    }
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService addNewBook(Book book, Handler<AsyncResult<Void>> resultHandler) {
+    if (books.putIfAbsent(book.getId(), book.toJson()) == null) {
+      resultHandler.handle(Future.succeededFuture());
+    } else {
+      resultHandler.handle(Future.failedFuture("The book with id " + book.getId() + " exists already"));
+    }
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService addNewBooks(List<Book> newBooks, Handler<AsyncResult<JsonArray>> resultHandler) {
+    for (Book book : newBooks) {
+      if (books.containsKey(book.getId())) {
+        resultHandler.handle(Future.failedFuture("The book with id " + book.getId() + " exists already"));
+        return this;
+      }
+    }
+    JsonArray results = new JsonArray();
+    for (Book book : newBooks) {
+      books.put(book.getId(), book.toJson());
+      results.add(new JsonObject().put("id", book.getId()).put("status", "created"));
+    }
+    resultHandler.handle(Future.succeededFuture(results));
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService deleteBookById(int id, Handler<AsyncResult<Void>> resultHandler) {
+    books.remove(id);
+    resultHandler.handle(Future.succeededFuture());
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService getBookById(int id, long writtenAt, Handler<AsyncResult<BookPage>> resultHandler) {
+    JsonObject book = books.get(id);
+    JsonArray page = new JsonArray();
+    if (book != null) {
+      page.add(book);
+    }
+    resultHandler.handle(Future.succeededFuture(BookPage.of(page)));
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService getBooks(BookFilter filter, Handler<AsyncResult<BookPage>> resultHandler) {
+    boolean descending = BookFilter.SORT_BY_ID_DESC.equals(filter.getSort());
+    NavigableMap<Integer, JsonObject> candidates = descending ? books.descendingMap() : books;
+    if (filter.getAfterId() != null) {
+      candidates = candidates.tailMap(filter.getAfterId(), false);
+    }
+    Collection<JsonObject> ordered = candidates.values();
+
+    JsonArray result = new JsonArray();
+    for (JsonObject book : ordered) {
+      if (filter.getLimit() != null && result.size() >= filter.getLimit()) {
+        break;
+      }
+      if (matches(filter.getTitle(), book.getString("title"))
+        && matches(filter.getCategory(), book.getString("category"))
+        && matches(filter.getPublicationDate(), book.getString("publicationDate"))) {
+        result.add(book);
+      }
+    }
+    resultHandler.handle(Future.succeededFuture(BookPage.of(result)));
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService loadBooks(String address, Handler<AsyncResult<Void>> resultHandler) {
+    resultHandler.handle(Future.failedFuture(new UnsupportedOperationException("Loading books is not supported in memory")));
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService streamBooks(BookFilter filter, String format, int fetchSize, String address,
+                                         Handler<AsyncResult<Void>> resultHandler) {
+    resultHandler.handle(Future.failedFuture(new UnsupportedOperationException("Streaming books is not supported in memory")));
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService upsertBookById(int id, Book book, Handler<AsyncResult<Void>> resultHandler) {
+    books.put(id, new Book(id, book.getTitle(), book.getCategory(), book.getPublicationDate()).toJson());
+    resultHandler.handle(Future.succeededFuture());
+    return this;
+  }
+
+  private static boolean matches(String expected, String actual) {
+    return expected == null || expected.equals(actual);
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.loadtest;
+
+import com.billyyccc.api.HttpServerVerticle;
+import com.billyyccc.database.BookDatabaseService;
+import com.billyyccc.database.impl.LocalBookDatabaseService;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.web.client.WebClient;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.serviceproxy.ServiceBinder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Load the REST API with an open loop of requests and report the throughput and the latency percentiles.
+ * <p>
+ * The options are given as {@code --name=value} arguments, see {@link LoadTestOptions}. With the {@code in-memory}
+ * target the HTTP server verticle is deployed here in front of an {@link InMemoryBookDatabaseService}, otherwise
+ * the target is the base URL of a running server, e.g. one started with docker-compose in front of PostgreSQL.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class LoadTest {
+  private static final String DB_EB_ADDRESS = "library.db.queue";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LoadTest.class);
+
+  public static void main(String[] args) throws Exception {
+    LoadTestOptions options = new LoadTestOptions(parseArguments(args));
+    Vertx vertx = Vertx.vertx();
+    try {
+      if (options.isInMemory()) {
+        await(handler -> deployInMemoryServer(vertx, options, handler));
+      }
+
+      WebClient webClient = WebClient.create(vertx, new WebClientOptions()
+        .setMaxPoolSize(options.getConnections())
+        .setKeepAlive(true));
+      OpenLoopLoadGenerator generator = new OpenLoopLoadGenerator(vertx, webClient, options);
+      LOGGER.info("Load testing " + options.getTarget() + " at " + options.getRate() + " requests per second for "
+        + options.getDurationSeconds() + " seconds after a warmup of " + options.getWarmupSeconds() + " seconds");
+      JsonObject result = LoadTest.<JsonObject>await(handler -> vertx.runOnContext(v -> generator.run(handler)))
+        .put("options", options.toJson());
+
+      File outputDir = new File(options.getOutput());
+      outputDir.mkdirs();
+      Files.write(new File(outputDir, "results.json").toPath(), result.encodePrettily().getBytes(StandardCharsets.UTF_8));
+      try (PrintStream percentiles = new PrintStream(new FileOutputStream(new File(outputDir, "latency-percentiles.hgrm")))) {
+        // the values are recorded in microseconds and reported in milliseconds
+        generator.latencies().outputPercentileDistribution(percentiles, 1000.0);
+      }
+      System.out.println(result.encodePrettily());
+    } finally {
+      vertx.close();
+    }
+  }
+
+  private static void deployInMemoryServer(Vertx vertx, LoadTestOptions options, Handler<AsyncResult<String>> resultHandler) {
+    BookDatabaseService bookDatabaseService = new InMemoryBookDatabaseService().seed(options.getBookCount());
+    new ServiceBinder(vertx)
+      .setAddress(DB_EB_ADDRESS)
+      .register(BookDatabaseService.class, bookDatabaseService)
+      .completionHandler(registration -> {
+        if (registration.failed()) {
+          resultHandler.handle(Future.failedFuture(registration.cause()));
+          return;
+        }
+        if (options.isDatabaseLocal()) {
+          new LocalBookDatabaseService(bookDatabaseService, vertx.getOrCreateContext()).bind(vertx, DB_EB_ADDRESS);
+        }
+        JsonObject httpServerConfig = new JsonObject()
+          .put("http.server.port", options.getPort())
+          .put("library.db.eb.address", DB_EB_ADDRESS)
+          .put("library.db.local", options.isDatabaseLocal());
+        vertx.deployVerticle(HttpServerVerticle.class.getName(), new DeploymentOptions()
+          .setConfig(httpServerConfig)
+          .setInstances(options.getHttpServerInstances()), resultHandler);
+      });
+  }
+
+  private static JsonObject parseArguments(String[] args) throws IOException {
+    JsonObject config = new JsonObject();
+    for (String arg : args) {
+      if (!arg.startsWith("--") || !arg.contains("=")) {
+        throw new IllegalArgumentException("Expected an argument as --name=value but got " + arg);
+      }
+      String name = arg.substring(2, arg.indexOf('='));
+      String value = arg.substring(arg.indexOf('=') + 1);
+      if ("conf".equals(name)) {
+        config.mergeIn(new JsonObject(new String(Files.readAllBytes(new File(value).toPath()), StandardCharsets.UTF_8)));
+      } else if (value.startsWith("{")) {
+        config.put(name, new JsonObject(value));
+      } else if (value.matches("-?\\d+")) {
+        config.put(name, Integer.valueOf(value));
+      } else if ("true".equals(value) || "false".equals(value)) {
+        config.put(name, Boolean.valueOf(value));
+      } else {
+        config.put(name, value);
+      }
+    }
+    return config;
+  }
+
+  private static <T> T await(Handler<Handler<AsyncResult<T>>> operation) throws Exception {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    operation.handle(ar -> {
+      if (ar.succeeded()) {
+        future.complete(ar.result());
+      } else {
+        future.completeExceptionally(ar.cause());
+      }
+    });
+    return future.get();
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.loadtest;
+
+import io.vertx.core.json.JsonObject;
+
+import java.net.URI;
+
+/**
+ * The options of a load test, read from a JSON object whose missing entries take the defaults.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class LoadTestOptions {
+  public static final String TARGET_IN_MEMORY = "in-memory";
+
+  private static final String CONFIG_TARGET = "target";
+  private static final String CONFIG_RATE = "rate";
+  private static final String CONFIG_DURATION = "duration";
+  private static final String CONFIG_WARMUP = "warmup";
+  private static final String CONFIG_CONNECTIONS = "connections";
+  private static final String CONFIG_BOOK_COUNT = "books";
+  private static final String CONFIG_HTTP_SERVER_INSTANCES = "http.server.instances";
+  private static final String CONFIG_DB_LOCAL = "library.db.local";
+  private static final String CONFIG_MIX = "mix";
+  private static final String CONFIG_OUTPUT = "output";
+
+  private static final int IN_MEMORY_PORT = 18080;
+
+  private final JsonObject config;
+  private final String host;
+  private final int port;
+
+  public LoadTestOptions(JsonObject config) {
+    this.config = config;
+    if (isInMemory()) {
+      this.host = "localhost";
+      this.port = IN_MEMORY_PORT;
+    } else {
+      URI target = URI.create(getTarget());
+      this.host = target.getHost();
+      this.port = target.getPort() == -1 ? 80 : target.getPort();
+    }
+  }
+
+  /**
+   * @return either {@link #TARGET_IN_MEMORY} or the base URL of a running server
+   */
+  public String getTarget() {
+    return config.getString(CONFIG_TARGET, TARGET_IN_MEMORY);
+  }
+
+  public boolean isInMemory() {
+    return TARGET_IN_MEMORY.equals(getTarget());
+  }
+
+  public String getHost() {
+    return host;
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  /**
+   * @return the requests sent per second
+   */
+  public int getRate() {
+    return config.getInteger(CONFIG_RATE, 1000);
+  }
+
+  public int getDurationSeconds() {
+    return config.getInteger(CONFIG_DURATION, 30);
+  }
+
+  public int getWarmupSeconds() {
+    return config.getInteger(CONFIG_WARMUP, 5);
+  }
+
+  public int getConnections() {
+    return config.getInteger(CONFIG_CONNECTIONS, 64);
+  }
+
+  /**
+   * @return the number of books the reads are spread over, the in-memory service is seeded with them
+   */
+  public int getBookCount() {
+    return config.getInteger(CONFIG_BOOK_COUNT, 10000);
+  }
+
+  public int getHttpServerInstances() {
+    return config.getInteger(CONFIG_HTTP_SERVER_INSTANCES, 1);
+  }
+
+  public boolean isDatabaseLocal() {
+    return config.getBoolean(CONFIG_DB_LOCAL, false);
+  }
+
+  public JsonObject getMix() {
+    return config.getJsonObject(CONFIG_MIX, new JsonObject()
+      .put("getBooks", 30)
+      .put("getBookById", 50)
+      .put("addBook", 10)
+      .put("upsertBook", 5)
+      .put("deleteBook", 5));
+  }
+
+  public String getOutput() {
+    return config.getString(CONFIG_OUTPUT, "build/reports/loadtest");
+  }
+
+  public JsonObject toJson() {
+    return config.copy();
+  }
+}
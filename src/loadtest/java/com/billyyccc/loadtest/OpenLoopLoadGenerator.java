@@ -0,0 +1,217 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.loadtest;
+
+import com.billyyccc.entity.Book;
+import com.billyyccc.loadtest.RequestMix.Operation;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Send requests at a fixed rate whatever the response times, and record the latency of each request from the time it
+ * was meant to be sent rather than from the time it was actually sent.
+ * <p>
+ * A closed loop waits for a response before it sends the next request, so a stalled server is hardly measured at all.
+ * Measuring from the schedule counts the time a request had to wait behind the slow ones, that is the coordinated
+ * omission correction.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class OpenLoopLoadGenerator {
+  private static final long TICK_MILLIS = 1;
+
+  private final Vertx vertx;
+  private final WebClient webClient;
+  private final LoadTestOptions options;
+  private final RequestMix requestMix;
+  private final Random random = new Random(42);
+
+  private final Histogram latencies = new Histogram(3);
+  private final Map<Operation, Histogram> operationLatencies = new EnumMap<>(Operation.class);
+  private final ArrayDeque<Integer> addedIds = new ArrayDeque<>();
+
+  private long startNanos;
+  private long warmupEndNanos;
+  private long endNanos;
+  private long intervalNanos;
+  private long sentCount;
+  private long inFlightCount;
+  private long recordedCount;
+  private long errorCount;
+  private int nextNewId;
+  private Handler<AsyncResult<JsonObject>> resultHandler;
+
+  public OpenLoopLoadGenerator(Vertx vertx, WebClient webClient, LoadTestOptions options) {
+    this.vertx = vertx;
+    this.webClient = webClient;
+    this.options = options;
+    this.requestMix = new RequestMix(options.getMix());
+    for (Operation operation : Operation.values()) {
+      operationLatencies.put(operation, new Histogram(3));
+    }
+  }
+
+  /**
+   * Run the load test, this must be called on a Vert.x context which then does all the bookkeeping.
+   */
+  public void run(Handler<AsyncResult<JsonObject>> resultHandler) {
+    this.resultHandler = resultHandler;
+    this.nextNewId = options.getBookCount() + 1;
+    this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / options.getRate();
+    this.startNanos = System.nanoTime();
+    this.warmupEndNanos = startNanos + TimeUnit.SECONDS.toNanos(options.getWarmupSeconds());
+    this.endNanos = warmupEndNanos + TimeUnit.SECONDS.toNanos(options.getDurationSeconds());
+    vertx.setPeriodic(TICK_MILLIS, this::tick);
+  }
+
+  private void tick(long timerId) {
+    long now = System.nanoTime();
+    // catch up with the schedule, a late tick sends every request which is due
+    long intendedNanos = startNanos + sentCount * intervalNanos;
+    while (intendedNanos <= now && intendedNanos < endNanos) {
+      send(requestMix.pick(random), intendedNanos);
+      sentCount++;
+      intendedNanos = startNanos + sentCount * intervalNanos;
+    }
+    if (intendedNanos >= endNanos) {
+      vertx.cancelTimer(timerId);
+      completeIfDone();
+    }
+  }
+
+  private void send(Operation operation, long intendedNanos) {
+    inFlightCount++;
+    Handler<AsyncResult<HttpResponse<Buffer>>> responseHandler = ar -> {
+      inFlightCount--;
+      record(operation, intendedNanos, ar.succeeded() && ar.result().statusCode() < 500);
+      completeIfDone();
+    };
+    switch (operation) {
+      case GET_BOOKS:
+        request(HttpMethod.GET, "/books?limit=20&afterId=" + randomId()).send(responseHandler);
+        break;
+      case GET_BOOK_BY_ID:
+        request(HttpMethod.GET, "/books/" + randomId()).send(responseHandler);
+        break;
+      case ADD_BOOK:
+        int newId = nextNewId++;
+        addedIds.add(newId);
+        request(HttpMethod.POST, "/books").sendBuffer(book(newId), responseHandler);
+        break;
+      case UPSERT_BOOK:
+        int id = randomId();
+        request(HttpMethod.PUT, "/books/" + id).sendBuffer(book(id), responseHandler);
+        break;
+      case DELETE_BOOK:
+        // delete the books the test added, so that the books read keep existing
+        Integer deletedId = addedIds.poll();
+        request(HttpMethod.DELETE, "/books/" + (deletedId == null ? nextNewId : deletedId)).send(responseHandler);
+        break;
+      default:
+        throw new IllegalStateException("Unknown operation " + operation);
+    }
+  }
+
+  private HttpRequest<Buffer> request(HttpMethod method, String uri) {
+    return webClient.request(method, options.getPort(), options.getHost(), uri)
+      .putHeader("Content-Type", "application/json; charset=utf-8");
+  }
+
+  private void record(Operation operation, long intendedNanos, boolean succeeded) {
+    // the requests scheduled during the warmup are sent but not recorded
+    if (intendedNanos < warmupEndNanos) {
+      return;
+    }
+    long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedNanos);
+    latencies.recordValue(latencyMicros);
+    operationLatencies.get(operation).recordValue(latencyMicros);
+    recordedCount++;
+    if (!succeeded) {
+      errorCount++;
+    }
+  }
+
+  private void completeIfDone() {
+    if (inFlightCount > 0 || startNanos + sentCount * intervalNanos < endNanos) {
+      return;
+    }
+    double elapsedSeconds = (System.nanoTime() - warmupEndNanos) / 1_000_000_000.0;
+    JsonObject operations = new JsonObject();
+    operationLatencies.forEach((operation, histogram) -> {
+      if (histogram.getTotalCount() > 0) {
+        operations.put(operation.key(), summary(histogram));
+      }
+    });
+    resultHandler.handle(Future.succeededFuture(new JsonObject()
+      .put("targetRate", options.getRate())
+      .put("requests", recordedCount)
+      .put("errors", errorCount)
+      .put("throughput", recordedCount / elapsedSeconds)
+      .put("latencyMicros", summary(latencies))
+      .put("operations", operations)));
+  }
+
+  /**
+   * @return the histogram of all the latencies in microseconds recorded after the warmup
+   */
+  public Histogram latencies() {
+    return latencies;
+  }
+
+  private static JsonObject summary(Histogram histogram) {
+    return new JsonObject()
+      .put("count", histogram.getTotalCount())
+      .put("mean", histogram.getMean())
+      .put("p50", histogram.getValueAtPercentile(50))
+      .put("p90", histogram.getValueAtPercentile(90))
+      .put("p99", histogram.getValueAtPercentile(99))
+      .put("p999", histogram.getValueAtPercentile(99.9))
+      .put("max", histogram.getMaxValue());
+  }
+
+  private int randomId() {
+    return 1 + random.nextInt(options.getBookCount());
+  }
+
+  private static Buffer book(int id) {
+    return new Book(id, "Load test book " + id, "java", "2018-01-01").toJson().toBuffer();
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.loadtest;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.Random;
+
+/**
+ * The operations of the REST API a load test sends and how often each one is picked.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class RequestMix {
+  public enum Operation {
+    GET_BOOKS("getBooks"),
+    GET_BOOK_BY_ID("getBookById"),
+    ADD_BOOK("addBook"),
+    UPSERT_BOOK("upsertBook"),
+    DELETE_BOOK("deleteBook");
+
+    private final String key;
+
+    Operation(String key) {
+      this.key = key;
+    }
+
+    public String key() {
+      return key;
+    }
+  }
+
+  private final Operation[] operations = Operation.values();
+  private final int[] cumulativeWeights = new int[operations.length];
+  private final int totalWeight;
+
+  /**
+   * @param weights the weight of each operation by its key, a missing operation is never picked
+   */
+  public RequestMix(JsonObject weights) {
+    int total = 0;
+    for (int i = 0; i < operations.length; i++) {
+      int weight = weights.getInteger(operations[i].key(), 0);
+      if (weight < 0) {
+        throw new IllegalArgumentException("The weight of " + operations[i].key() + " must not be negative");
+      }
+      total += weight;
+      cumulativeWeights[i] = total;
+    }
+    if (total == 0) {
+      throw new IllegalArgumentException("At least one operation must have a positive weight");
+    }
+    this.totalWeight = total;
+  }
+
+  public Operation pick(Random random) {
+    int value = random.nextInt(totalWeight);
+    for (int i = 0; i < operations.length; i++) {
+      if (value < cumulativeWeights[i]) {
+        return operations[i];
+      }
+    }
+    throw new IllegalStateException("Unreachable");
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc;
+
+import io.vertx.core.Launcher;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.micrometer.Label;
+import io.vertx.micrometer.Match;
+import io.vertx.micrometer.MatchType;
+import io.vertx.micrometer.MetricsDomain;
+import io.vertx.micrometer.MicrometerMetricsOptions;
+import io.vertx.micrometer.VertxPrometheusOptions;
+
+import java.util.EnumSet;
+
+/**
+ * The launcher of the library, it configures the Vert.x instance before the verticles are deployed.
+ * <p>
+ * The Vert.x metrics are collected in a Prometheus registry unless {@code metrics.enabled} is false in the
+ * configuration, they are scraped from {@code /metrics} of the HTTP server.
+ * <p>
+ * The native transport (epoll on Linux) is preferred unless {@code vertx.native.transport} is false, Vert.x falls back
+ * to the JDK transport where it can not be loaded. Only the native transport can bind the port of the HTTP server
+ * with SO_REUSEPORT, so that several processes share it.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class LibraryLauncher extends Launcher {
+  private static final String CONFIG_METRICS_ENABLED = "metrics.enabled";
+  private static final String CONFIG_NATIVE_TRANSPORT = "vertx.native.transport";
+  private static final String CONFIG_EVENT_LOOP_POOL_SIZE = "vertx.event.loop.pool.size";
+  private static final String CONFIG_WORKER_POOL_SIZE = "vertx.worker.pool.size";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LibraryLauncher.class);
+
+  private boolean metricsEnabled = true;
+  private boolean nativeTransport = true;
+  private Integer eventLoopPoolSize;
+  private Integer workerPoolSize;
+
+  public static void main(String[] args) {
+    new LibraryLauncher().dispatch(args);
+  }
+
+  @Override
+  public void afterConfigParsed(JsonObject config) {
+    metricsEnabled = config.getBoolean(CONFIG_METRICS_ENABLED, true);
+    nativeTransport = config.getBoolean(CONFIG_NATIVE_TRANSPORT, true);
+    eventLoopPoolSize = config.getInteger(CONFIG_EVENT_LOOP_POOL_SIZE);
+    workerPoolSize = config.getInteger(CONFIG_WORKER_POOL_SIZE);
+  }
+
+  @Override
+  public void beforeStartingVertx(VertxOptions options) {
+    options.setPreferNativeTransport(nativeTransport);
+    if (eventLoopPoolSize != null) {
+      options.setEventLoopPoolSize(eventLoopPoolSize);
+    }
+    if (workerPoolSize != null) {
+      options.setWorkerPoolSize(workerPoolSize);
+    }
+    if (!metricsEnabled) {
+      return;
+    }
+    options.setMetricsOptions(new MicrometerMetricsOptions()
+      .setEnabled(true)
+      .setPrometheusOptions(new VertxPrometheusOptions()
+        .setEnabled(true)
+        .setPublishQuantiles(true))
+      .setLabels(EnumSet.of(Label.HTTP_METHOD, Label.HTTP_CODE, Label.HTTP_PATH, Label.EB_ADDRESS, Label.EB_SIDE,
+        Label.EB_FAILURE, Label.POOL_TYPE, Label.POOL_NAME))
+      // one series per route rather than per book, and per kind of stream rather than per request
+      .addLabelMatch(new Match()
+        .setDomain(MetricsDomain.HTTP_SERVER)
+        .setLabel(Label.HTTP_PATH.toString())
+        .setType(MatchType.REGEX)
+        .setValue("/books/[^/_][^/]*")
+        .setAlias("/books/:id"))
+      .addLabelMatch(new Match()
+        .setDomain(MetricsDomain.EVENT_BUS)
+        .setLabel(Label.EB_ADDRESS.toString())
+        .setType(MatchType.REGEX)
+        .setValue("library\\.books\\.stream\\..*")
+        .setAlias("library.books.stream"))
+      .addLabelMatch(new Match()
+        .setDomain(MetricsDomain.EVENT_BUS)
+        .setLabel(Label.EB_ADDRESS.toString())
+        .setType(MatchType.REGEX)
+        .setValue("library\\.books\\.load\\..*")
+        .setAlias("library.books.load")));
+  }
+
+  @Override
+  public void afterStartingVertx(Vertx vertx) {
+    if (vertx.isNativeTransportEnabled()) {
+      LOGGER.info("Vert.x is running on the native transport");
+    } else if (nativeTransport) {
+      LOGGER.warn("The native transport is not available, Vert.x falls back to the JDK transport");
+    } else {
+      LOGGER.info("Vert.x is running on the JDK transport");
+    }
+  }
+}
@@ -29,6 +29,9 @@ import com.billyyccc.api.HttpServerVerticle;
 import io.reactivex.Single;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
 import io.vertx.reactivex.core.AbstractVerticle;
 
 /**
@@ -40,19 +43,55 @@ import io.vertx.reactivex.core.AbstractVerticle;
 public class MainVerticle extends AbstractVerticle {
   private static final String HTTP_SERVER_VERTICLE_IDENTIFIER = HttpServerVerticle.class.getName();
   private static final String PG_DATABASE_VERTICLE_IDENTIFIER = BookDatabaseVerticle.class.getName();
+  private static final String CONFIG_DB_LOCAL = "library.db.local";
+  private static final String CONFIG_HTTP_SERVER_INSTANCES = "http.server.instances";
+  private static final String CONFIG_PG_INSTANCES = "postgresql.instances";
+  private static final String CONFIG_PG_POOL_MAX_SIZE = "postgresql.pool.maxsize";
+  private static final String CONFIG_PG_POOL_SHARED = "postgresql.pool.shared";
+  private static final String CONFIG_TRACING_PREFIX = "tracing.";
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(MainVerticle.class);
 
   @Override
   public void start(Future<Void> startFuture) throws Exception {
+    // both sides must agree on whether the database service is called in this JVM or through the event bus
+    boolean localDatabaseService = config().getBoolean(CONFIG_DB_LOCAL, false);
+    JsonObject databaseConfig = config().getJsonObject("postgresql.config").copy().put(CONFIG_DB_LOCAL, localDatabaseService);
+    JsonObject httpServerConfig = config().getJsonObject("http.server.config").copy().put(CONFIG_DB_LOCAL, localDatabaseService);
+    // both sides trace their part of the requests to the same exporter
+    config().forEach(entry -> {
+      if (entry.getKey().startsWith(CONFIG_TRACING_PREFIX)) {
+        databaseConfig.put(entry.getKey(), entry.getValue());
+        httpServerConfig.put(entry.getKey(), entry.getValue());
+      }
+    });
+
+    // the HTTP servers share the port, so one per core lets every event loop accept requests
+    int httpServerInstances = httpServerConfig.getInteger(CONFIG_HTTP_SERVER_INSTANCES, Runtime.getRuntime().availableProcessors());
+    int databaseInstances = databaseConfig.getInteger(CONFIG_PG_INSTANCES, 1);
+
     Single<String> dbVerticleDeployment = vertx.rxDeployVerticle(PG_DATABASE_VERTICLE_IDENTIFIER,
-      new DeploymentOptions().setConfig(config().getJsonObject("postgresql.config")));
+      new DeploymentOptions().setConfig(databaseConfig).setInstances(databaseInstances));
 
     dbVerticleDeployment
       .doOnError(startFuture::fail)
       .flatMap(deploymentId -> vertx.rxDeployVerticle(HTTP_SERVER_VERTICLE_IDENTIFIER,
-        new DeploymentOptions().setConfig(config().getJsonObject("http.server.config"))))
-      .subscribe(deploymentId -> startFuture.complete(),
+        new DeploymentOptions().setConfig(httpServerConfig).setInstances(httpServerInstances)))
+      .subscribe(deploymentId -> {
+          logLayout(httpServerInstances, databaseInstances, databaseConfig, localDatabaseService);
+          startFuture.complete();
+        },
         startFuture::fail);
   }
+
+  private void logLayout(int httpServerInstances, int databaseInstances, JsonObject databaseConfig, boolean localDatabaseService) {
+    int poolMaxSize = databaseConfig.getInteger(CONFIG_PG_POOL_MAX_SIZE, 20);
+    String pools = databaseConfig.getBoolean(CONFIG_PG_POOL_SHARED, false)
+      ? "1 shared pool of " + poolMaxSize + " connections"
+      : databaseInstances + " pools of " + poolMaxSize + " connections";
+    LOGGER.info("Deployed " + httpServerInstances + " HTTP server instances and " + databaseInstances
+      + " database instances with " + pools + " on " + Runtime.getRuntime().availableProcessors() + " cores, "
+      + (localDatabaseService ? "the database is called in-process" : "the database is called through the event bus"));
+  }
 }
 
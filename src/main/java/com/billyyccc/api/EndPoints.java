@@ -33,9 +33,13 @@ package com.billyyccc.api;
 public final class EndPoints {
   public static final String GET_BOOKS = "/books";
   public static final String ADD_NEW_BOOK = "/books";
+  public static final String ADD_NEW_BOOKS = "/books/_bulk";
+  public static final String LOAD_BOOKS = "/books/_load";
+  public static final String EXPORT_BOOKS = "/books/_export";
   public static final String GET_BOOK_BY_ID = "/books/:id";
   public static final String DELETE_BOOK_BY_ID = "/books/:id";
   public static final String UPDATE_BOOK_BY_ID = "/books/:id";
+  public static final String METRICS = "/metrics";
 
   private EndPoints() {
     // No instance of this class allowed
@@ -25,17 +25,33 @@
 package com.billyyccc.api;
 
 import com.billyyccc.api.handler.BookApis;
+import com.billyyccc.api.handler.CompressionThresholdHandler;
 import com.billyyccc.api.handler.FailureHandler;
+import com.billyyccc.api.handler.TracingHandler;
+import com.billyyccc.database.impl.TracingBookDatabaseService;
 import com.billyyccc.database.reactivex.BookDatabaseService;
+import com.billyyccc.entity.codec.BookMessageCodecs;
+import com.billyyccc.tracing.SpanExporters;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.http.Http2Settings;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.net.JksOptions;
+import io.vertx.micrometer.PrometheusScrapingHandler;
+import io.vertx.micrometer.backends.BackendRegistries;
 import io.vertx.reactivex.core.AbstractVerticle;
 import io.vertx.reactivex.core.http.HttpServer;
 import io.vertx.reactivex.ext.web.Router;
+import io.vertx.reactivex.ext.web.RoutingContext;
 import io.vertx.reactivex.ext.web.api.validation.HTTPRequestValidationHandler;
 import io.vertx.reactivex.ext.web.handler.BodyHandler;
 
+import java.util.Arrays;
+
 import static com.billyyccc.api.EndPoints.*;
 import static com.billyyccc.api.handler.HttpRequestValidator.*;
 import static com.billyyccc.database.BookDatabaseService.*;
@@ -48,35 +64,94 @@ import static com.billyyccc.database.BookDatabaseService.*;
 
 public class HttpServerVerticle extends AbstractVerticle {
   private static final String CONFIG_HTTP_SERVER_PORT = "http.server.port";
+  private static final String CONFIG_HTTP_COMPRESSION = "http.server.compression";
+  private static final String CONFIG_HTTP_COMPRESSION_LEVEL = "http.server.compression.level";
+  private static final String CONFIG_HTTP_COMPRESSION_MIN_SIZE = "http.server.compression.min.size";
+  private static final String CONFIG_HTTP_H2C = "http.server.h2c";
+  private static final String CONFIG_HTTP_H2_MAX_CONCURRENT_STREAMS = "http.server.h2.max.concurrent.streams";
+  private static final String CONFIG_HTTP_SSL = "http.server.ssl";
+  private static final String CONFIG_HTTP_SSL_KEYSTORE_PATH = "http.server.ssl.keystore.path";
+  private static final String CONFIG_HTTP_SSL_KEYSTORE_PASSWORD = "http.server.ssl.keystore.password";
+  private static final String CONFIG_HTTP_TCP_NO_DELAY = "http.server.tcp.nodelay";
+  private static final String CONFIG_HTTP_TCP_FAST_OPEN = "http.server.tcp.fast.open";
+  private static final String CONFIG_HTTP_REUSE_PORT = "http.server.reuse.port";
+  private static final String CONFIG_HTTP_IDLE_TIMEOUT = "http.server.idle.timeout";
   private static final String CONFIG_DB_EB_QUEUE = "library.db.eb.address";
+  private static final String CONFIG_DB_LOCAL = "library.db.local";
+  private static final String CONFIG_BOOKS_STREAM_FETCH_SIZE = "http.books.stream.fetch.size";
+  private static final String CONFIG_BOOKS_LOAD_BATCH_SIZE = "http.books.load.batch.size";
+  private static final String CONFIG_BODY_LIMIT = "http.body.limit";
+  private static final String CONFIG_BULK_BODY_LIMIT = "http.bulk.body.limit";
 
   private static final Logger LOGGER = LoggerFactory.getLogger(HttpServerVerticle.class);
 
+  private boolean tracing;
+
   @Override
   public void start(Future<Void> startFuture) throws Exception {
-    HttpServer httpServer = vertx.createHttpServer();
+    BookMessageCodecs.registerDefaultCodecs(vertx.eventBus().getDelegate());
 
-    BookDatabaseService bookDatabaseService = createProxy(vertx.getDelegate(), config().getString(CONFIG_DB_EB_QUEUE));
+    HttpServer httpServer = vertx.createHttpServer(httpServerOptions(config()));
+
+    String databaseEbAddress = config().getString(CONFIG_DB_EB_QUEUE);
+    BookDatabaseService bookDatabaseService = config().getBoolean(CONFIG_DB_LOCAL, false)
+      ? createLocalProxy(vertx.getDelegate(), databaseEbAddress)
+      : createProxy(vertx.getDelegate(), databaseEbAddress);
 
     Router router = Router.router(vertx);
 
-    router.route().handler(BodyHandler.create());
+    if (config().getBoolean(CONFIG_HTTP_COMPRESSION, true)) {
+      router.route().handler(new CompressionThresholdHandler(config().getLong(CONFIG_HTTP_COMPRESSION_MIN_SIZE, 1024L)));
+    }
+
+    // scraped by Prometheus, which sends no JSON content type
+    if (BackendRegistries.getDefaultNow() != null) {
+      Handler<io.vertx.ext.web.RoutingContext> scrapingHandler = PrometheusScrapingHandler.create();
+      router.get(METRICS).handler(routingContext -> scrapingHandler.handle(routingContext.getDelegate()));
+    }
+
+    // the trace must start before any other handler so that all of them are part of it
+    this.tracing = config().getBoolean(SpanExporters.CONFIG_TRACING_ENABLED, false);
+    if (tracing) {
+      router.route().handler(new TracingHandler(SpanExporters.acquire(vertx.getDelegate(), config()),
+        config().getDouble(SpanExporters.CONFIG_TRACING_SAMPLE_RATIO, 1.0)));
+      bookDatabaseService = new BookDatabaseService(
+        new TracingBookDatabaseService(vertx.getDelegate(), databaseEbAddress, bookDatabaseService.getDelegate()));
+    }
+
+    // the books to load are parsed while the body arrives, so this route must come before the body is buffered
+    router.post(LOAD_BOOKS).handler(traced("validation", loadBooksValidationHandler()))
+      .handler(traced("handler", BookApis.loadBooksHandler(bookDatabaseService, config().getInteger(CONFIG_BOOKS_LOAD_BATCH_SIZE, 1000))));
+
+    router.route().handler(traced("content-type", HTTPRequestValidationHandler.create().addExpectedContentType("application/json")));
+
+    // only the routes of a single book buffer their body, the bulk one parses it while it arrives
+    BodyHandler bodyHandler = BodyHandler.create()
+      .setBodyLimit(config().getLong(CONFIG_BODY_LIMIT, 64 * 1024L))
+      .setHandleFileUploads(false);
 
-    router.route().handler(HTTPRequestValidationHandler.create().addExpectedContentType("application/json"));
+    router.get(GET_BOOKS).handler(traced("validation", addBookValidationHandler()))
+      .handler(traced("handler", BookApis.getBooksHandler(bookDatabaseService, config().getInteger(CONFIG_BOOKS_STREAM_FETCH_SIZE, 100))));
 
-    router.get(GET_BOOKS).handler(addBookValidationHandler())
-      .handler(BookApis.getBooksHandler(bookDatabaseService));
+    // must come before the routes by id which would take "_export" as an id
+    router.get(EXPORT_BOOKS).handler(traced("validation", exportBooksValidationHandler()))
+      .handler(traced("handler", BookApis.exportBooksHandler(bookDatabaseService, config().getInteger(CONFIG_BOOKS_STREAM_FETCH_SIZE, 100))));
 
-    router.post(ADD_NEW_BOOK).handler(BookApis.addBookHandler(bookDatabaseService));
+    router.post(ADD_NEW_BOOK).handler(traced("body", bodyHandler))
+      .handler(traced("handler", BookApis.addBookHandler(bookDatabaseService)));
 
-    router.delete(DELETE_BOOK_BY_ID).handler(deleteBookByIdValidationHandler())
-      .handler(BookApis.deleteBookByIdHandler(bookDatabaseService));
+    router.post(ADD_NEW_BOOKS).handler(traced("handler",
+      BookApis.addBooksHandler(bookDatabaseService, config().getLong(CONFIG_BULK_BODY_LIMIT, 16 * 1024 * 1024L))));
 
-    router.get(GET_BOOK_BY_ID).handler(getBookByIdValidationHandler())
-      .handler(BookApis.getBookByIdHandler(bookDatabaseService));
+    router.delete(DELETE_BOOK_BY_ID).handler(traced("validation", deleteBookByIdValidationHandler()))
+      .handler(traced("handler", BookApis.deleteBookByIdHandler(bookDatabaseService)));
 
-    router.put(UPDATE_BOOK_BY_ID).handler(upsertBookByIdValidationHandler())
-      .handler(BookApis.upsertBookByIdHandler(bookDatabaseService));
+    router.get(GET_BOOK_BY_ID).handler(traced("validation", getBookByIdValidationHandler()))
+      .handler(traced("handler", BookApis.getBookByIdHandler(bookDatabaseService)));
+
+    router.put(UPDATE_BOOK_BY_ID).handler(traced("validation", upsertBookByIdValidationHandler()))
+      .handler(traced("body", bodyHandler))
+      .handler(traced("handler", BookApis.upsertBookByIdHandler(bookDatabaseService)));
 
     router.route().failureHandler(new FailureHandler());
 
@@ -92,4 +167,43 @@ public class HttpServerVerticle extends AbstractVerticle {
           startFuture.fail(throwable);
         });
   }
+
+  @Override
+  public void stop() throws Exception {
+    if (tracing) {
+      SpanExporters.release(vertx.getDelegate());
+    }
+  }
+
+  /**
+   * The options of the HTTP server, HTTP/2 is negotiated with ALPN over TLS and upgraded to or sent with prior
+   * knowledge in clear text. The TCP fast open and the reuse of the port are only applied by the native transport,
+   * the port is only reused when it is enabled, since another process could then silently listen to it as well.
+   */
+  static HttpServerOptions httpServerOptions(JsonObject config) {
+    HttpServerOptions options = new HttpServerOptions()
+      .setCompressionSupported(config.getBoolean(CONFIG_HTTP_COMPRESSION, true))
+      .setCompressionLevel(config.getInteger(CONFIG_HTTP_COMPRESSION_LEVEL, 6))
+      .setHttp2ClearTextEnabled(config.getBoolean(CONFIG_HTTP_H2C, true))
+      .setInitialSettings(new Http2Settings()
+        .setMaxConcurrentStreams(config.getLong(CONFIG_HTTP_H2_MAX_CONCURRENT_STREAMS, 100L)))
+      .setTcpNoDelay(config.getBoolean(CONFIG_HTTP_TCP_NO_DELAY, true))
+      .setTcpFastOpen(config.getBoolean(CONFIG_HTTP_TCP_FAST_OPEN, false))
+      .setReusePort(config.getBoolean(CONFIG_HTTP_REUSE_PORT, false))
+      .setIdleTimeout(config.getInteger(CONFIG_HTTP_IDLE_TIMEOUT, 60));
+
+    if (config.getBoolean(CONFIG_HTTP_SSL, false)) {
+      options.setSsl(true)
+        .setUseAlpn(true)
+        .setAlpnVersions(Arrays.asList(HttpVersion.HTTP_2, HttpVersion.HTTP_1_1))
+        .setKeyStoreOptions(new JksOptions()
+          .setPath(config.getString(CONFIG_HTTP_SSL_KEYSTORE_PATH))
+          .setPassword(config.getString(CONFIG_HTTP_SSL_KEYSTORE_PASSWORD)));
+    }
+    return options;
+  }
+
+  private Handler<RoutingContext> traced(String phase, Handler<RoutingContext> handler) {
+    return tracing ? TracingHandler.phase(phase, handler) : handler;
+  }
 }
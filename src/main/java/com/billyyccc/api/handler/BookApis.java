@@ -26,18 +26,43 @@ package com.billyyccc.api.handler;
 
 import com.billyyccc.api.exception.BadRequestException;
 import com.billyyccc.api.exception.ResourceNotFoundException;
+import com.billyyccc.api.utils.EventBusBufferStream;
+import com.billyyccc.api.utils.StreamingBookArray;
+import com.billyyccc.api.utils.StreamingBookUpload;
 import com.billyyccc.database.reactivex.BookDatabaseService;
+import com.billyyccc.database.utils.BookRowFormat;
 import com.billyyccc.entity.Book;
+import com.billyyccc.entity.BookFilter;
+import com.billyyccc.entity.BookPage;
+import com.billyyccc.entity.codec.BookJsonWriter;
 import io.vertx.core.Handler;
-import io.vertx.core.json.JsonObject;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.streams.Pump;
+import io.vertx.reactivex.core.MultiMap;
 import io.vertx.reactivex.ext.web.RoutingContext;
 
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
 import static com.billyyccc.api.utils.RestApiUtil.*;
 
 /**
  * @author Billy Yuan
  */
 public class BookApis {
+  private static final int DEFAULT_STREAM_FETCH_SIZE = 100;
+  private static final int MAX_PAGE_SIZE = 1000;
+  private static final String BOOK_STREAM_ADDRESS_PREFIX = "library.books.stream.";
+  private static final String BOOK_LOAD_ADDRESS_PREFIX = "library.books.load.";
+  private static final String DEFAULT_EXPORT_FORMAT = "ndjson";
+  /**
+   * The time of the last write of a client, it is responded by the writes and sent back with the reads of the client
+   * so that they see its writes even when they are served by a lagging replica.
+   */
+  public static final String WRITTEN_AT_HEADER = "Library-Written-At";
 
   /**
    * This handler is for adding a new book.
@@ -45,11 +70,73 @@ public class BookApis {
   public static Handler<RoutingContext> addBookHandler(BookDatabaseService bookDatabaseService) {
     return routingContext -> {
       Book book = decodeBodyToObject(routingContext, Book.class);
+      if (routingContext.failed()) {
+        return;
+      }
 
       bookDatabaseService.rxAddNewBook(book)
         .subscribe(
-          () -> restResponse(routingContext, 200, book.toString()),
+          () -> {
+            markWritten(routingContext);
+            restResponse(routingContext, 200, BookJsonWriter.encode(book));
+          },
+          throwable -> routingContext.fail(new BadRequestException(throwable)));
+    };
+  }
+
+  /**
+   * This handler is for adding new books in bulk, the response tells the result of each book.
+   * The body is parsed while it arrives, it must not be buffered by a body handler.
+   */
+  public static Handler<RoutingContext> addBooksHandler(BookDatabaseService bookDatabaseService, long bodyLimit) {
+    return routingContext -> new StreamingBookArray(routingContext.request().getDelegate(), bodyLimit, ar -> {
+      if (ar.failed()) {
+        routingContext.fail(ar.cause());
+        return;
+      }
+      if (ar.result().isEmpty()) {
+        routingContext.fail(new BadRequestException("No books to add"));
+        return;
+      }
+
+      bookDatabaseService.rxAddNewBooks(ar.result())
+        .subscribe(
+          results -> {
+            markWritten(routingContext);
+            restResponse(routingContext, 200, results.toString());
+          },
           throwable -> routingContext.fail(new BadRequestException(throwable)));
+    }).parse();
+  }
+
+  /**
+   * This handler is for loading books from an NDJSON or CSV body of any size, the existing books are updated.
+   * The body is parsed while it arrives, it must not be buffered by a body handler.
+   */
+  public static Handler<RoutingContext> loadBooksHandler(BookDatabaseService bookDatabaseService, int batchSize) {
+    return routingContext -> {
+      String format = routingContext.queryParams().get("format");
+      StreamingBookUpload upload = new StreamingBookUpload(routingContext.request().getDelegate(),
+        format == null ? StreamingBookUpload.FORMAT_NDJSON : format, batchSize,
+        stats -> {
+          markWritten(routingContext);
+          restResponse(routingContext, 200, stats.toString());
+        },
+        throwable -> routingContext.fail(new BadRequestException(throwable)));
+      String address = BOOK_LOAD_ADDRESS_PREFIX + UUID.randomUUID().toString();
+
+      upload.listen(routingContext.getDelegate().vertx().eventBus(), address, registration -> {
+        if (registration.failed()) {
+          upload.fail(registration.cause());
+          return;
+        }
+        bookDatabaseService.rxLoadBooks(address)
+          .subscribe(
+            () -> {
+              // the statistics are responded by the upload once the load is committed
+            },
+            upload::fail);
+      });
     };
   }
 
@@ -62,7 +149,10 @@ public class BookApis {
 
       bookDatabaseService.rxDeleteBookById(bookId)
         .subscribe(
-          () -> restResponse(routingContext, 202),
+          () -> {
+            markWritten(routingContext);
+            restResponse(routingContext, 202);
+          },
           throwable -> routingContext.fail(new BadRequestException(throwable)));
     };
   }
@@ -74,13 +164,15 @@ public class BookApis {
     return routingContext -> {
       int bookId = Integer.valueOf(routingContext.pathParam("id"));
 
-      bookDatabaseService.rxGetBookById(bookId)
+      Long writtenAt = writtenAtOf(routingContext);
+
+      bookDatabaseService.rxGetBookById(bookId, writtenAt == null ? 0L : writtenAt)
         .subscribe(
           dbResponse -> {
             if (dbResponse.isEmpty()) {
               routingContext.fail(new ResourceNotFoundException("The book with id " + bookId + " can not be found"));
             } else {
-              restResponse(routingContext, 200, dbResponse.toString());
+              restResponse(routingContext, 200, dbResponse.getSingleBook());
             }
           },
           throwable -> routingContext.fail(new BadRequestException(throwable))
@@ -92,25 +184,45 @@ public class BookApis {
    * This handler is for getting all books or some books by conditions.
    */
   public static Handler<RoutingContext> getBooksHandler(BookDatabaseService bookDatabaseService) {
+    return getBooksHandler(bookDatabaseService, DEFAULT_STREAM_FETCH_SIZE);
+  }
+
+  /**
+   * This handler is for getting all books or some books by conditions,
+   * the books are streamed {@code streamFetchSize} rows at a time when the query parameter {@code stream} is true.
+   */
+  public static Handler<RoutingContext> getBooksHandler(BookDatabaseService bookDatabaseService, int streamFetchSize) {
     return routingContext -> {
-      // Get all the query parameters to an object
-      Book book = new Book();
-      book.setTitle(routingContext.queryParams().get("title"));
-      book.setCategory(routingContext.queryParams().get("category"));
-      book.setPublicationDate(routingContext.queryParams().get("publicationDate"));
+      MultiMap queryParams = routingContext.queryParams();
+      BookFilter filter = bookFilterOf(queryParams).setWrittenAt(writtenAtOf(routingContext));
+      checkPaging(routingContext, filter);
+      if (routingContext.failed()) {
+        return;
+      }
+
+      if (Boolean.parseBoolean(queryParams.get("stream"))) {
+        streamBooks(routingContext, bookDatabaseService, filter, BookRowFormat.JSON, streamFetchSize);
+        return;
+      }
 
-      bookDatabaseService.rxGetBooks(book)
+      bookDatabaseService.rxGetBooks(filter)
         .subscribe(
           dbResponse -> {
-            switch (dbResponse.size()) {
+            addNextPageLink(routingContext, filter, dbResponse);
+            if (isFollowingPage(filter)) {
+              // the page after a full one may be empty, the link to it is not broken for all that
+              restResponse(routingContext, 200, dbResponse.getBooks());
+              return;
+            }
+            switch (dbResponse.getSize()) {
               case 0:
                 routingContext.fail(new ResourceNotFoundException("The books have not been found"));
                 break;
               case 1:
-                restResponse(routingContext, 200, dbResponse.getJsonObject(0).toString());
+                restResponse(routingContext, 200, dbResponse.getSingleBook());
                 break;
               default:
-                restResponse(routingContext, 200, dbResponse.toString());
+                restResponse(routingContext, 200, dbResponse.getBooks());
                 break;
             }
           },
@@ -119,24 +231,208 @@ public class BookApis {
     };
   }
 
+  /**
+   * This handler is for exporting all books or some books by conditions as a CSV or NDJSON attachment,
+   * the rows are encoded by the database service and streamed {@code fetchSize} rows at a time.
+   */
+  public static Handler<RoutingContext> exportBooksHandler(BookDatabaseService bookDatabaseService, int fetchSize) {
+    return routingContext -> {
+      String format = routingContext.queryParams().get("format");
+      if (format == null) {
+        format = DEFAULT_EXPORT_FORMAT;
+      }
+      BookFilter filter = bookFilterOf(routingContext.queryParams()).setWrittenAt(writtenAtOf(routingContext));
+      checkPaging(routingContext, filter);
+      if (routingContext.failed()) {
+        return;
+      }
+      routingContext.response().putHeader("Content-Disposition", "attachment; filename=\"books." + format + "\"");
+      streamBooks(routingContext, bookDatabaseService, filter, BookRowFormat.of(format), fetchSize);
+    };
+  }
+
   /**
    * This handler is for upserting a book by id.
    */
   public static Handler<RoutingContext> upsertBookByIdHandler(BookDatabaseService bookDatabaseService) {
     return routingContext -> {
       Book book = decodeBodyToObject(routingContext, Book.class);
+      if (routingContext.failed()) {
+        return;
+      }
       int bookId = Integer.valueOf(routingContext.pathParam("id"));
 
+      // the book is responded with the id of the path, whatever the id of the body
       bookDatabaseService.rxUpsertBookById(bookId, book)
         .subscribe(
-          () -> restResponse(routingContext, 200, new JsonObject()
-            .put("id", bookId)
-            .put("title", book.getTitle())
-            .put("category", book.getCategory())
-            .put("publicationDate", book.getPublicationDate())
-            .toString()),
+          () -> {
+            markWritten(routingContext);
+            restResponse(routingContext, 200,
+              BookJsonWriter.encode(new Book(bookId, book.getTitle(), book.getCategory(), book.getPublicationDate())));
+          },
           throwable -> routingContext.fail(new BadRequestException(throwable))
         );
     };
   }
+
+  /**
+   * A full page might be followed by another one, which starts after the last book of this page,
+   * or after the rows of this page when the search results are ranked.
+   */
+  private static void addNextPageLink(RoutingContext routingContext, BookFilter filter, BookPage page) {
+    if (filter.getLimit() == null || page.getSize() < filter.getLimit()) {
+      return;
+    }
+    String pagingParam;
+    StringBuilder link = new StringBuilder("<").append(routingContext.request().path());
+    if (isRanked(filter)) {
+      pagingParam = "offset";
+      int offset = filter.getOffset() == null ? 0 : filter.getOffset();
+      link.append("?offset=").append(offset + page.getSize());
+    } else {
+      pagingParam = "afterId";
+      link.append("?afterId=").append(page.getLastId());
+    }
+    MultiMap queryParams = routingContext.queryParams();
+    for (String name : queryParams.names()) {
+      if (!pagingParam.equals(name)) {
+        for (String value : queryParams.getAll(name)) {
+          link.append('&').append(name).append('=').append(urlEncode(value));
+        }
+      }
+    }
+    link.append(">; rel=\"next\"");
+    routingContext.response().putHeader("Link", link.toString());
+  }
+
+  // a page reached through afterId or offset is always an array, empty when the previous page was the last one
+  // the rank of a search result is no key, so the ranked results are paged with offset and the others with afterId
+  private static void checkPaging(RoutingContext routingContext, BookFilter filter) {
+    if (isRanked(filter) && filter.getAfterId() != null) {
+      routingContext.fail(new BadRequestException("The ranked search results are paged with offset, not afterId"));
+    } else if (!isRanked(filter) && filter.getOffset() != null) {
+      routingContext.fail(new BadRequestException("Only the ranked search results are paged with offset, not the others"));
+    }
+  }
+
+  private static boolean isFollowingPage(BookFilter filter) {
+    return filter.getAfterId() != null || filter.getOffset() != null;
+  }
+
+  // taken once the write has completed, so the time is after its commit
+  private static void markWritten(RoutingContext routingContext) {
+    routingContext.response().putHeader(WRITTEN_AT_HEADER, String.valueOf(System.currentTimeMillis()));
+  }
+
+  private static Long writtenAtOf(RoutingContext routingContext) {
+    String writtenAt = routingContext.request().getHeader(WRITTEN_AT_HEADER);
+    if (writtenAt == null) {
+      return null;
+    }
+    try {
+      return Long.valueOf(writtenAt);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static String urlEncode(String value) {
+    try {
+      return URLEncoder.encode(value, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  // the search results are ordered by relevance unless a sort is given
+  private static boolean isRanked(BookFilter filter) {
+    return filter.getSearch() != null && filter.getSort() == null;
+  }
+
+  private static BookFilter bookFilterOf(MultiMap queryParams) {
+    // Get all the query parameters to an object
+    BookFilter filter = new BookFilter()
+      .setTitle(queryParams.get("title"))
+      .setSearch(queryParams.get("q"))
+      .setPublicationDate(queryParams.get("publicationDate"))
+      .setPublicationDateFrom(queryParams.get("publicationDateFrom"))
+      .setPublicationDateTo(queryParams.get("publicationDateTo"))
+      .setSort(queryParams.get("sort"));
+    // a single category keeps the plain equality, several are matched at once with = ANY
+    List<String> categories = categoriesOf(queryParams);
+    if (categories.size() == 1) {
+      filter.setCategory(categories.get(0));
+    } else if (categories.size() > 1) {
+      filter.setCategories(categories);
+    }
+    if (queryParams.contains("afterId")) {
+      filter.setAfterId(Integer.valueOf(queryParams.get("afterId")));
+    }
+    if (queryParams.contains("limit")) {
+      filter.setLimit(Math.max(1, Math.min(MAX_PAGE_SIZE, Integer.valueOf(queryParams.get("limit")))));
+    }
+    if (queryParams.contains("offset")) {
+      filter.setOffset(Math.max(0, Integer.valueOf(queryParams.get("offset"))));
+    }
+    return filter;
+  }
+
+  // the categories are either repeated or separated by commas, as the validation of an array parameter accepts both
+  private static List<String> categoriesOf(MultiMap queryParams) {
+    List<String> categories = new ArrayList<>();
+    for (String value : queryParams.getAll("category")) {
+      for (String category : value.split(",")) {
+        if (!category.isEmpty() && !categories.contains(category)) {
+          categories.add(category);
+        }
+      }
+    }
+    return categories;
+  }
+
+  /**
+   * The encoded batches are pumped into the response, which pauses the stream and so holds back the database cursor
+   * while the write queue of the connection is full.
+   */
+  private static void streamBooks(RoutingContext routingContext, BookDatabaseService bookDatabaseService, BookFilter filter,
+                                  BookRowFormat format, int fetchSize) {
+    String address = BOOK_STREAM_ADDRESS_PREFIX + UUID.randomUUID().toString();
+    HttpServerResponse response = routingContext.response().getDelegate()
+      .setChunked(true)
+      .putHeader("Content-Type", format.contentType());
+    EventBusBufferStream bookStream = new EventBusBufferStream(format.prefix(), format.separator(), format.suffix());
+    bookStream
+      .endHandler(v -> response.end())
+      .exceptionHandler(throwable -> failStream(routingContext, throwable));
+    response.closeHandler(v -> bookStream.cancel());
+    Pump.pump(bookStream, response).start();
+
+    // the consumer must be registered before the first batch is sent
+    bookStream.listen(routingContext.getDelegate().vertx().eventBus(), address, registration -> {
+      if (registration.failed()) {
+        failStream(routingContext, registration.cause());
+        return;
+      }
+      bookDatabaseService.rxStreamBooks(filter, format.name(), fetchSize, address)
+        .subscribe(
+          () -> {
+            // the books are pumped into the response by the stream
+          },
+          throwable -> {
+            bookStream.cancel();
+            failStream(routingContext, throwable);
+          });
+    });
+  }
+
+  private static void failStream(RoutingContext routingContext, Throwable throwable) {
+    HttpServerResponse response = routingContext.response().getDelegate();
+    if (response.headWritten()) {
+      // the status has been sent already, cut the connection so the client can not mistake it for the whole result
+      response.close();
+    } else {
+      response.setChunked(false).headers().clear();
+      routingContext.fail(new BadRequestException(throwable));
+    }
+  }
 }
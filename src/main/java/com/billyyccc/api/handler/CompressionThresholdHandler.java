@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.api.handler;
+
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.reactivex.core.MultiMap;
+import io.vertx.reactivex.ext.web.RoutingContext;
+
+/**
+ * Leave the responses smaller than a threshold uncompressed, the compression of a few bytes costs more CPU
+ * than it saves on the wire.
+ * <p>
+ * A response of a known length under the threshold is marked with the {@code identity} content encoding, which the
+ * compressor of the HTTP server skips. The streamed responses have no length and are always compressed.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class CompressionThresholdHandler implements Handler<RoutingContext> {
+  private final long minSize;
+
+  public CompressionThresholdHandler(long minSize) {
+    this.minSize = minSize;
+  }
+
+  @Override
+  public void handle(RoutingContext routingContext) {
+    MultiMap headers = routingContext.response().headers();
+    routingContext.addHeadersEndHandler(v -> {
+      String contentLength = headers.get(HttpHeaders.CONTENT_LENGTH.toString());
+      if (contentLength != null && !headers.contains(HttpHeaders.CONTENT_ENCODING.toString())
+        && Long.parseLong(contentLength) < minSize) {
+        headers.set(HttpHeaders.CONTENT_ENCODING.toString(), HttpHeaders.IDENTITY.toString());
+      }
+    });
+    routingContext.next();
+  }
+}
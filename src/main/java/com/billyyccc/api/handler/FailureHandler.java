@@ -1,7 +1,9 @@
 package com.billyyccc.api.handler;
 
 import com.billyyccc.api.exception.BadRequestException;
+import com.billyyccc.api.exception.PayloadTooLargeException;
 import com.billyyccc.api.exception.ResourceNotFoundException;
+import io.netty.handler.codec.http.HttpResponseStatus;
 import io.vertx.core.Handler;
 import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.JsonObject;
@@ -20,12 +22,18 @@ public class FailureHandler implements Handler<RoutingContext> {
   @Override
   public void handle(RoutingContext routingContext) {
     Throwable failure = routingContext.failure();
-    if (failure instanceof ValidationException) {
+    if (failure == null) {
+      // failed with a status code only, e.g. 413 by a body handler over its limit
+      int statusCode = routingContext.statusCode();
+      restResponse(routingContext, statusCode, errorMessageToErrorBody(HttpResponseStatus.valueOf(statusCode).reasonPhrase()));
+    } else if (failure instanceof ValidationException) {
       restResponse(routingContext, 400, errorMessageToErrorBody("Validation failed"));
     } else if (failure instanceof BadRequestException) {
       restResponse(routingContext, 400, errorMessageToErrorBody("Invalid Request"));
     } else if (failure instanceof ResourceNotFoundException) {
       restResponse(routingContext, 404, errorMessageToErrorBody(failure.getMessage()));
+    } else if (failure instanceof PayloadTooLargeException) {
+      restResponse(routingContext, 413, errorMessageToErrorBody(failure.getMessage()));
     } else if (failure instanceof DecodeException) {
       restResponse(routingContext, 400, errorMessageToErrorBody("Problems parsing JSON"));
     } else {
@@ -35,8 +35,34 @@ public class HttpRequestValidator {
   public static HTTPRequestValidationHandler addBookValidationHandler() {
     return HTTPRequestValidationHandler.create()
       .addQueryParam("title", ParameterType.GENERIC_STRING, false)
-      .addQueryParam("category", ParameterType.GENERIC_STRING, false)
-      .addQueryParam("publicationDate", ParameterType.DATE, false);
+      .addQueryParam("q", ParameterType.GENERIC_STRING, false)
+      .addQueryParamsArray("category", ParameterType.GENERIC_STRING, false)
+      .addQueryParam("publicationDate", ParameterType.DATE, false)
+      .addQueryParam("publicationDateFrom", ParameterType.DATE, false)
+      .addQueryParam("publicationDateTo", ParameterType.DATE, false)
+      .addQueryParam("afterId", ParameterType.INT, false)
+      .addQueryParam("limit", ParameterType.INT, false)
+      .addQueryParam("offset", ParameterType.INT, false)
+      .addQueryParamWithPattern("sort", "^-?id$", false)
+      .addQueryParam("stream", ParameterType.BOOL, false);
+  }
+
+  public static HTTPRequestValidationHandler exportBooksValidationHandler() {
+    return HTTPRequestValidationHandler.create()
+      .addQueryParamWithPattern("format", "^(ndjson|csv)$", false)
+      .addQueryParam("title", ParameterType.GENERIC_STRING, false)
+      .addQueryParam("q", ParameterType.GENERIC_STRING, false)
+      .addQueryParamsArray("category", ParameterType.GENERIC_STRING, false)
+      .addQueryParam("publicationDate", ParameterType.DATE, false)
+      .addQueryParam("publicationDateFrom", ParameterType.DATE, false)
+      .addQueryParam("publicationDateTo", ParameterType.DATE, false)
+      .addQueryParam("afterId", ParameterType.INT, false)
+      .addQueryParamWithPattern("sort", "^-?id$", false);
+  }
+
+  public static HTTPRequestValidationHandler loadBooksValidationHandler() {
+    return HTTPRequestValidationHandler.create()
+      .addQueryParamWithPattern("format", "^(ndjson|csv)$", false);
   }
 
   public static HTTPRequestValidationHandler deleteBookByIdValidationHandler() {
@@ -0,0 +1,93 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.api.handler;
+
+import com.billyyccc.tracing.Span;
+import com.billyyccc.tracing.SpanExporter;
+import com.billyyccc.tracing.Trace;
+import io.vertx.core.Handler;
+import io.vertx.reactivex.core.http.HttpServerRequest;
+import io.vertx.reactivex.core.http.HttpServerResponse;
+import io.vertx.reactivex.ext.web.RoutingContext;
+
+/**
+ * Trace each request from the first route to the end of the response.
+ * <p>
+ * The handlers wrapped by {@link #phase} each start a phase of the trace, the phase lasts until the next one starts,
+ * so a handler which completes asynchronously is timed until the next handler runs. The spans ended before the
+ * response is sent are told by the {@code Server-Timing} header, the whole trace is exported once the response
+ * has been written.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class TracingHandler implements Handler<RoutingContext> {
+  public static final String TRACE_CONTEXT_KEY = "trace";
+  private static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+  private final SpanExporter spanExporter;
+  private final double sampleRatio;
+
+  public TracingHandler(SpanExporter spanExporter, double sampleRatio) {
+    this.spanExporter = spanExporter;
+    this.sampleRatio = sampleRatio;
+  }
+
+  /**
+   * Run the handler as a phase of the trace, with the trace as the current one so that the services it calls
+   * can add their spans.
+   */
+  public static Handler<RoutingContext> phase(String name, Handler<RoutingContext> handler) {
+    return routingContext -> {
+      Trace trace = routingContext.get(TRACE_CONTEXT_KEY);
+      if (trace == null) {
+        handler.handle(routingContext);
+        return;
+      }
+      trace.phase(name);
+      Trace.runWith(trace, () -> handler.handle(routingContext));
+    };
+  }
+
+  @Override
+  public void handle(RoutingContext routingContext) {
+    HttpServerRequest request = routingContext.request();
+    HttpServerResponse response = routingContext.response();
+    Trace trace = Trace.start(request.rawMethod() + " " + request.path(), request.getHeader(Trace.TRACEPARENT_HEADER), sampleRatio);
+    Span rootSpan = trace.rootSpan()
+      .put("http.method", request.rawMethod())
+      .put("http.target", request.uri());
+    routingContext.put(TRACE_CONTEXT_KEY, trace);
+
+    routingContext.addHeadersEndHandler(v -> response.putHeader(SERVER_TIMING_HEADER, trace.serverTiming()));
+    routingContext.addBodyEndHandler(v -> {
+      rootSpan.put("http.status_code", response.getStatusCode()).end();
+      if (trace.isSampled()) {
+        spanExporter.export(trace.spans());
+      }
+    });
+    routingContext.next();
+  }
+}
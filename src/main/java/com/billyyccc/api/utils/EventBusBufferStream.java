@@ -0,0 +1,173 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.api.utils;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.streams.ReadStream;
+
+import static com.billyyccc.database.utils.RowStreamMessages.*;
+
+/**
+ * Receive the buffers streamed to an event bus address as a {@link ReadStream}, so that they can be pumped into a
+ * response as they are without being decoded.
+ * <p>
+ * The stream is framed by a prefix and a suffix and the batches are separated by a separator, as given by
+ * {@link com.billyyccc.database.utils.BookRowFormat}. A batch is only acknowledged while the stream is not paused,
+ * so the memory held for a request is bounded by a batch whatever the size of the result.
+ * <p>
+ * The framing buffers are handed to the handler as they are for each chunk, a buffer written to a response is not
+ * consumed by the write so the same one can be written many times.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class EventBusBufferStream implements ReadStream<Buffer>, Handler<Message<Object>> {
+  private static final int CANCELLED = 0;
+
+  private final Buffer prefix;
+  private final Buffer separator;
+  private final Buffer suffix;
+
+  private MessageConsumer<Object> consumer;
+  private Handler<Buffer> handler;
+  private Handler<Void> endHandler;
+  private Handler<Throwable> exceptionHandler;
+  private Message<Object> pendingBatch;
+  private boolean paused;
+  private boolean started;
+  private boolean closed;
+
+  public EventBusBufferStream(Buffer prefix, Buffer separator, Buffer suffix) {
+    this.prefix = prefix;
+    this.separator = separator;
+    this.suffix = suffix;
+  }
+
+  public void listen(EventBus eventBus, String address, Handler<AsyncResult<Void>> completionHandler) {
+    consumer = eventBus.consumer(address, this);
+    consumer.completionHandler(completionHandler);
+  }
+
+  /**
+   * Stop receiving, the sender is told to stop at its next batch.
+   */
+  public void cancel() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (consumer != null) {
+      consumer.unregister();
+    }
+    if (pendingBatch != null) {
+      pendingBatch.fail(CANCELLED, "The stream has been cancelled");
+      pendingBatch = null;
+    }
+  }
+
+  @Override
+  public EventBusBufferStream exceptionHandler(Handler<Throwable> handler) {
+    this.exceptionHandler = handler;
+    return this;
+  }
+
+  @Override
+  public EventBusBufferStream handler(Handler<Buffer> handler) {
+    this.handler = handler;
+    return this;
+  }
+
+  @Override
+  public EventBusBufferStream pause() {
+    paused = true;
+    return this;
+  }
+
+  @Override
+  public EventBusBufferStream resume() {
+    paused = false;
+    if (pendingBatch != null) {
+      Message<Object> batch = pendingBatch;
+      pendingBatch = null;
+      batch.reply(null);
+    }
+    return this;
+  }
+
+  public EventBusBufferStream fetch(long amount) {
+    return amount > 0 ? resume() : this;
+  }
+
+  @Override
+  public EventBusBufferStream endHandler(Handler<Void> endHandler) {
+    this.endHandler = endHandler;
+    return this;
+  }
+
+  @Override
+  public void handle(Message<Object> message) {
+    if (closed) {
+      message.fail(CANCELLED, "The stream has been cancelled");
+      return;
+    }
+    String action = message.headers().get(HEADER_ACTION);
+    if (ACTION_ROWS.equals(action)) {
+      // the batch is written as it is received, behind the separator written as a chunk of its own
+      emit(started ? separator : prefix);
+      emit((Buffer) message.body());
+      started = true;
+      if (paused) {
+        pendingBatch = message;
+      } else {
+        message.reply(null);
+      }
+    } else if (ACTION_END.equals(action)) {
+      if (!started) {
+        emit(prefix);
+      }
+      emit(suffix);
+      cancel();
+      if (endHandler != null) {
+        endHandler.handle(null);
+      }
+    } else {
+      cancel();
+      if (exceptionHandler != null) {
+        exceptionHandler.handle(new IllegalStateException(String.valueOf(message.body())));
+      }
+    }
+  }
+
+  private void emit(Buffer chunk) {
+    if (handler != null && chunk.length() > 0) {
+      handler.handle(chunk);
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package com.billyyccc.api.utils;
 
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
@@ -19,6 +20,15 @@ public class RestApiUtil {
       .end(body);
   }
 
+  /**
+   * End the response with a body which is already encoded, the buffer is written as it is.
+   */
+  public static void restResponse(RoutingContext routingContext, int statusCode, Buffer body) {
+    routingContext.response().putHeader("Content-Type", "application/json; charset=utf-8");
+    routingContext.response().setStatusCode(statusCode)
+      .end(io.vertx.reactivex.core.buffer.Buffer.newInstance(body));
+  }
+
   public static void restResponse(RoutingContext routingContext, int statusCode) {
     restResponse(routingContext, statusCode, "");
   }
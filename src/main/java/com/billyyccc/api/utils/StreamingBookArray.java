@@ -0,0 +1,164 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.api.utils;
+
+import com.billyyccc.api.exception.PayloadTooLargeException;
+import com.billyyccc.entity.Book;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.parsetools.JsonEvent;
+import io.vertx.core.parsetools.JsonParser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parse a JSON array of books while the request body arrives.
+ * <p>
+ * Each book is mapped as soon as its object is complete, so neither the whole body nor its JSON tree is held in memory,
+ * only the books parsed so far. The body is refused once it is over the size limit, without waiting for the rest of it.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class StreamingBookArray implements Handler<JsonEvent> {
+  private final HttpServerRequest request;
+  private final long bodyLimit;
+  private final Handler<AsyncResult<List<Book>>> resultHandler;
+  private final JsonParser parser;
+  private final List<Book> books = new ArrayList<>();
+
+  private long bodySize;
+  private boolean arrayStarted;
+  private boolean arrayEnded;
+  private boolean done;
+
+  /**
+   * @param bodyLimit     the maximum size of the body in bytes, -1 for no limit
+   * @param resultHandler called with the books once the array is complete, or with the failure
+   */
+  public StreamingBookArray(HttpServerRequest request, long bodyLimit, Handler<AsyncResult<List<Book>>> resultHandler) {
+    this.request = request;
+    this.bodyLimit = bodyLimit;
+    this.resultHandler = resultHandler;
+    this.parser = JsonParser.newParser().objectValueMode();
+  }
+
+  /**
+   * Start parsing the request body, this must be called before the request body starts to arrive.
+   */
+  public void parse() {
+    String contentLength = request.getHeader(HttpHeaders.CONTENT_LENGTH);
+    if (bodyLimit >= 0 && contentLength != null && Long.parseLong(contentLength) > bodyLimit) {
+      fail(new PayloadTooLargeException("The body is over " + bodyLimit + " bytes"));
+      return;
+    }
+
+    parser.exceptionHandler(this::fail);
+    parser.handler(this);
+    parser.endHandler(v -> {
+      if (arrayEnded) {
+        complete();
+      } else {
+        fail(new DecodeException("The array of books is not complete"));
+      }
+    });
+    request.exceptionHandler(this::fail);
+    request.handler(this::handleChunk);
+    request.endHandler(v -> {
+      if (!done) {
+        parser.end();
+      }
+    });
+  }
+
+  @Override
+  public void handle(JsonEvent event) {
+    if (done) {
+      return;
+    }
+    switch (event.type()) {
+      case START_ARRAY:
+        if (arrayStarted) {
+          fail(new DecodeException("Expected a book but got an array"));
+          return;
+        }
+        arrayStarted = true;
+        break;
+      case END_ARRAY:
+        arrayEnded = true;
+        break;
+      case VALUE:
+        if (!arrayStarted || arrayEnded || !(event.value() instanceof JsonObject)) {
+          fail(new DecodeException("Expected an array of books"));
+          return;
+        }
+        try {
+          books.add(new Book(event.objectValue()));
+        } catch (RuntimeException e) {
+          fail(new DecodeException("Invalid book at index " + books.size() + ": " + e.getMessage()));
+        }
+        break;
+      default:
+        fail(new DecodeException("Expected an array of books"));
+    }
+  }
+
+  private void handleChunk(Buffer chunk) {
+    if (done) {
+      // the rest of a refused body is drained and dropped
+      return;
+    }
+    bodySize += chunk.length();
+    if (bodyLimit >= 0 && bodySize > bodyLimit) {
+      fail(new PayloadTooLargeException("The body is over " + bodyLimit + " bytes"));
+      return;
+    }
+    parser.handle(chunk);
+  }
+
+  private void complete() {
+    if (done) {
+      return;
+    }
+    done = true;
+    resultHandler.handle(Future.succeededFuture(books));
+  }
+
+  private void fail(Throwable throwable) {
+    if (done) {
+      return;
+    }
+    done = true;
+    books.clear();
+    resultHandler.handle(Future.failedFuture(throwable));
+  }
+}
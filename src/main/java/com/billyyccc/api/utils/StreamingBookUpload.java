@@ -0,0 +1,300 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.api.utils;
+
+import com.billyyccc.entity.Book;
+import com.billyyccc.entity.BookList;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonObject;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.billyyccc.database.utils.RowStreamMessages.*;
+
+/**
+ * Parse the books of a request body record by record, either as NDJSON or as CSV, and hand them out in batches
+ * to the database side pulling them from an event bus address. A batch is sent as a {@link BookList},
+ * see {@link com.billyyccc.entity.codec.BookMessageCodecs}.
+ * <p>
+ * The request is paused while a full batch waits to be pulled, so the memory held for an upload is bounded by a batch
+ * whatever the size of the body.
+ * <p>
+ * A record ends with a new line, or with the body for the last one. A CSV record goes on over the new lines within
+ * a quoted field, so that anything written by {@link com.billyyccc.database.utils.BookRowFormat#CSV} loads back.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class StreamingBookUpload implements Handler<Message<Object>> {
+  public static final String FORMAT_NDJSON = "ndjson";
+  public static final String FORMAT_CSV = "csv";
+
+  private static final int CANCELLED = 0;
+
+  private final HttpServerRequest request;
+  private final boolean csv;
+  private final int batchSize;
+  private final Handler<JsonObject> statsHandler;
+  private final Handler<Throwable> failureHandler;
+
+  private MessageConsumer<Object> consumer;
+  private BookList batch;
+  private Message<Object> pendingPull;
+  // the bytes received and not parsed yet, the next record starts at recordStart
+  private Buffer received = Buffer.buffer();
+  private int recordStart;
+  private int scanPos;
+  private boolean quoted;
+  private long recordNumber;
+  private boolean paused;
+  private boolean inputEnded;
+  private boolean parsed;
+  private boolean done;
+
+  /**
+   * @param statsHandler   called with the statistics of the load once it is committed
+   * @param failureHandler called when the upload can not be parsed or the load fails
+   */
+  public StreamingBookUpload(HttpServerRequest request, String format, int batchSize,
+                             Handler<JsonObject> statsHandler, Handler<Throwable> failureHandler) {
+    this.request = request;
+    this.csv = FORMAT_CSV.equals(format);
+    this.batchSize = batchSize;
+    this.statsHandler = statsHandler;
+    this.failureHandler = failureHandler;
+    this.batch = new BookList(batchSize);
+  }
+
+  /**
+   * Start parsing the request body, this must be called before the request body starts to arrive.
+   */
+  public void listen(EventBus eventBus, String address, Handler<AsyncResult<Void>> completionHandler) {
+    consumer = eventBus.consumer(address, this);
+    consumer.completionHandler(completionHandler);
+    request.exceptionHandler(this::fail);
+    request.endHandler(v -> {
+      inputEnded = true;
+      parseRecords();
+    });
+    request.handler(chunk -> {
+      received.appendBuffer(chunk);
+      parseRecords();
+    });
+    request.response().closeHandler(v -> fail(new IllegalStateException("The connection has been closed")));
+  }
+
+  /**
+   * Stop the upload, the database side is told to roll the load back at its next pull.
+   */
+  public void fail(Throwable throwable) {
+    if (done) {
+      return;
+    }
+    done = true;
+    consumer.unregister();
+    pause();
+    if (pendingPull != null) {
+      pendingPull.fail(CANCELLED, "The upload has been cancelled");
+      pendingPull = null;
+    }
+    failureHandler.handle(throwable);
+  }
+
+  @Override
+  public void handle(Message<Object> message) {
+    if (done) {
+      message.fail(CANCELLED, "The upload has been cancelled");
+      return;
+    }
+    String action = message.headers().get(HEADER_ACTION);
+    if (ACTION_PULL.equals(action)) {
+      pendingPull = message;
+      if (batch.size() >= batchSize || parsed) {
+        replyPull();
+      } else {
+        resume();
+      }
+    } else if (ACTION_END.equals(action)) {
+      done = true;
+      consumer.unregister();
+      statsHandler.handle((JsonObject) message.body());
+    } else {
+      fail(new IllegalStateException(String.valueOf(message.body())));
+    }
+  }
+
+  // parse the complete records received so far, then the last one once the body has ended
+  private void parseRecords() {
+    int recordEnd;
+    while (!paused && !done && (recordEnd = nextRecordEnd()) >= 0) {
+      Buffer record = received.getBuffer(recordStart, recordEnd);
+      recordStart = recordEnd + 1;
+      scanPos = recordStart;
+      handleRecord(record);
+    }
+    if (recordStart > 0) {
+      received = received.getBuffer(recordStart, received.length());
+      scanPos -= recordStart;
+      recordStart = 0;
+    }
+    if (!inputEnded || paused || done || parsed) {
+      return;
+    }
+    if (quoted) {
+      fail(new IllegalArgumentException("Unterminated quoted field at record " + (recordNumber + 1)));
+      return;
+    }
+    // the last record may end with the body rather than with a new line
+    if (received.length() > 0) {
+      Buffer record = received;
+      received = Buffer.buffer();
+      handleRecord(record);
+    }
+    if (!done) {
+      parsed = true;
+      if (pendingPull != null && !paused) {
+        replyPull();
+      }
+    }
+  }
+
+  // the quotes and the new lines are single bytes in UTF-8, they never show up within the bytes of another character
+  private int nextRecordEnd() {
+    for (; scanPos < received.length(); scanPos++) {
+      byte b = received.getByte(scanPos);
+      if (csv && b == '"') {
+        quoted = !quoted;
+      } else if (b == '\n' && !quoted) {
+        return scanPos;
+      }
+    }
+    return -1;
+  }
+
+  private void handleRecord(Buffer record) {
+    recordNumber++;
+    String text = record.toString("UTF-8").trim();
+    if (text.isEmpty() || (csv && recordNumber == 1 && text.startsWith("id,"))) {
+      return;
+    }
+    try {
+      batch.add(csv ? parseCsvRecord(text) : parseJsonRecord(text));
+    } catch (RuntimeException e) {
+      fail(new IllegalArgumentException("Invalid book at record " + recordNumber, e));
+      return;
+    }
+    if (batch.size() >= batchSize) {
+      if (pendingPull != null) {
+        replyPull();
+      } else {
+        pause();
+      }
+    }
+  }
+
+  private void pause() {
+    paused = true;
+    request.pause();
+  }
+
+  private void resume() {
+    paused = false;
+    if (!inputEnded) {
+      request.resume();
+    }
+    parseRecords();
+  }
+
+  private void replyPull() {
+    Message<Object> pull = pendingPull;
+    BookList books = batch;
+    pendingPull = null;
+    batch = new BookList(batchSize);
+    pull.reply(books);
+  }
+
+  private static Book parseJsonRecord(String record) {
+    JsonObject json = new JsonObject(record);
+    return toBook(json.getInteger("id"), json.getString("title"), json.getString("category"),
+      json.getString("publicationDate"));
+  }
+
+  private static Book parseCsvRecord(String record) {
+    List<String> fields = splitCsvRecord(record);
+    if (fields.size() != 4) {
+      throw new IllegalArgumentException("Expected the 4 fields id,title,category,publicationDate");
+    }
+    String publicationDate = fields.get(3);
+    return toBook(Integer.valueOf(fields.get(0)), fields.get(1), fields.get(2),
+      publicationDate.isEmpty() ? null : publicationDate);
+  }
+
+  private static Book toBook(Integer id, String title, String category, String publicationDate) {
+    if (id == null) {
+      throw new IllegalArgumentException("The id of a loaded book is required");
+    }
+    if (publicationDate != null) {
+      // fail on the record rather than in the middle of the load
+      LocalDate.parse(publicationDate);
+    }
+    return new Book(id, title, category, publicationDate);
+  }
+
+  private static List<String> splitCsvRecord(String record) {
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < record.length(); i++) {
+      char c = record.charAt(i);
+      if (quoted) {
+        if (c != '"') {
+          field.append(c);
+        } else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+          field.append('"');
+          i++;
+        } else {
+          quoted = false;
+        }
+      } else if (c == '"') {
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(field.toString());
+        field.setLength(0);
+      } else {
+        field.append(c);
+      }
+    }
+    fields.add(field.toString());
+    return fields;
+  }
+}
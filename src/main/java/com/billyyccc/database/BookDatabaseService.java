@@ -25,7 +25,10 @@
 package com.billyyccc.database;
 
 import com.billyyccc.database.impl.BookDatabaseServiceImpl;
+import com.billyyccc.database.impl.LocalBookDatabaseService;
 import com.billyyccc.entity.Book;
+import com.billyyccc.entity.BookFilter;
+import com.billyyccc.entity.BookPage;
 import io.reactiverse.pgclient.PgPool;
 import io.vertx.codegen.annotations.Fluent;
 import io.vertx.codegen.annotations.GenIgnore;
@@ -37,6 +40,8 @@ import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 
+import java.util.List;
+
 /**
  * @author Billy Yuan <billy112487983@gmail.com>
  */
@@ -46,8 +51,8 @@ import io.vertx.core.json.JsonObject;
 public interface BookDatabaseService {
 
   @GenIgnore
-  static BookDatabaseService create(PgPool pgPool, Handler<AsyncResult<BookDatabaseService>> resultHandler) {
-    return new BookDatabaseServiceImpl(pgPool, resultHandler);
+  static BookDatabaseService create(Vertx vertx, PgPool pgPool, JsonObject config, Handler<AsyncResult<BookDatabaseService>> resultHandler) {
+    return new BookDatabaseServiceImpl(vertx, pgPool, config, resultHandler);
   }
 
   @GenIgnore
@@ -55,17 +60,61 @@ public interface BookDatabaseService {
     return new com.billyyccc.database.reactivex.BookDatabaseService(new BookDatabaseServiceVertxEBProxy(vertx, address));
   }
 
+  /**
+   * Create a proxy which calls the service bound in this JVM directly,
+   * it falls back to the event bus proxy when the service is deployed elsewhere.
+   */
+  @GenIgnore
+  static com.billyyccc.database.reactivex.BookDatabaseService createLocalProxy(Vertx vertx, String address) {
+    BookDatabaseService localService = LocalBookDatabaseService.lookup(vertx, address);
+    if (localService == null) {
+      return createProxy(vertx, address);
+    }
+    return new com.billyyccc.database.reactivex.BookDatabaseService(localService);
+  }
+
   @Fluent
   BookDatabaseService addNewBook(Book book, Handler<AsyncResult<Void>> resultHandler);
 
+  /**
+   * Add the books in one transaction, the result holds the outcome of each book in the order of the given books:
+   * {@code created}, or {@code conflict} when a book with the same id exists already and the book is skipped.
+   * Any other failure rolls all the books back.
+   */
+  @Fluent
+  BookDatabaseService addNewBooks(List<Book> books, Handler<AsyncResult<JsonArray>> resultHandler);
+
   @Fluent
   BookDatabaseService deleteBookById(int id, Handler<AsyncResult<Void>> resultHandler);
 
+  /**
+   * The book is answered as a page of the encoded book, which is empty when there is no such book.
+   *
+   * @param writtenAt the time in milliseconds since the epoch of the last write of the caller, or 0, the book read
+   *                  then reflects that write even when the reads are balanced over lagging replicas
+   */
+  @Fluent
+  BookDatabaseService getBookById(int id, long writtenAt, Handler<AsyncResult<BookPage>> resultHandler);
+
+  @Fluent
+  BookDatabaseService getBooks(BookFilter filter, Handler<AsyncResult<BookPage>> resultHandler);
+
+  /**
+   * Load the books pulled from an event bus address in batches and merge them into the existing books,
+   * see {@link com.billyyccc.database.utils.RowStreamMessages} for the messages sent.
+   * The result handler is called once the load has been started, the statistics of the load are sent to the address.
+   */
   @Fluent
-  BookDatabaseService getBookById(int id, Handler<AsyncResult<JsonObject>> resultHandler);
+  BookDatabaseService loadBooks(String address, Handler<AsyncResult<Void>> resultHandler);
 
+  /**
+   * Stream the books matching the conditions to an event bus address with a database cursor, each batch of
+   * {@code fetchSize} rows is sent as a buffer already encoded in the given {@link com.billyyccc.database.utils.BookRowFormat},
+   * see {@link com.billyyccc.database.utils.RowStreamMessages} for the messages sent.
+   * The result handler is called once the query has been started.
+   */
   @Fluent
-  BookDatabaseService getBooks(Book book, Handler<AsyncResult<JsonArray>> resultHandler);
+  BookDatabaseService streamBooks(BookFilter filter, String format, int fetchSize, String address, Handler<AsyncResult<Void>> resultHandler);
 
   @Fluent
   BookDatabaseService upsertBookById(int id, Book book, Handler<AsyncResult<Void>> resultHandler);
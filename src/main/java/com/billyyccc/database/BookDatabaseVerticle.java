@@ -24,16 +24,41 @@
 
 package com.billyyccc.database;
 
-
+import com.billyyccc.database.cache.BookCache;
+import com.billyyccc.database.cache.BookChangeListener;
+import com.billyyccc.database.impl.CachedBookDatabaseService;
+import com.billyyccc.database.impl.LocalBookDatabaseService;
+import com.billyyccc.database.impl.MeteredBookDatabaseService;
+import com.billyyccc.database.impl.ReplicatedBookDatabaseService;
+import com.billyyccc.database.impl.TraceReceivingBookDatabaseService;
+import com.billyyccc.database.metrics.PgPoolMetrics;
+import com.billyyccc.database.migration.QueryPlanLogger;
+import com.billyyccc.database.migration.SchemaMigrator;
+import com.billyyccc.entity.codec.BookMessageCodecs;
+import com.billyyccc.tracing.SpanExporters;
+import com.billyyccc.tracing.TraceInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.reactiverse.pgclient.PgClient;
 import io.reactiverse.pgclient.PgPool;
 import io.reactiverse.pgclient.PgPoolOptions;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import io.vertx.micrometer.backends.BackendRegistries;
 import io.vertx.serviceproxy.ServiceBinder;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * @author Billy Yuan <billy112487983@gmail.com>
  */
@@ -45,41 +70,104 @@ public class BookDatabaseVerticle extends AbstractVerticle {
   private static final String CONFIG_PG_USERNAME = "postgresql.username";
   private static final String CONFIG_PG_PASSWORD = "postgresql.password";
   private static final String CONFIG_PG_POOL_MAX_SIZE = "postgresql.pool.maxsize";
+  private static final String CONFIG_PG_POOL_SHARED = "postgresql.pool.shared";
+  private static final String CONFIG_PG_CACHE_PREPARED_STATEMENTS = "postgresql.cache.prepared.statements";
+  private static final String CONFIG_PG_MIGRATE = "postgresql.migrate";
+  private static final String CONFIG_PG_EXPLAIN = "postgresql.explain";
+  private static final String CONFIG_PG_PREPARED_SAMPLE_INTERVAL = "postgresql.metrics.prepared.interval";
+  private static final String CONFIG_PG_REPLICAS = "postgresql.replicas";
+  private static final String CONFIG_PG_READ_YOUR_WRITES = "postgresql.read.your.writes";
+  private static final String CONFIG_CACHE_MAX_SIZE = "postgresql.cache.maxsize";
+  private static final String CONFIG_CACHE_TTL = "postgresql.cache.ttl";
+  private static final String CONFIG_CACHE_STATS_INTERVAL = "postgresql.cache.stats.interval";
+  private static final String CONFIG_CACHE_NOTIFICATIONS = "postgresql.cache.notifications";
 
   private static final String CONFIG_DB_EB_QUEUE = "library.db.eb.address";
+  private static final String CONFIG_DB_LOCAL = "library.db.local";
 
   private static final Logger LOGGER = LoggerFactory.getLogger(BookDatabaseVerticle.class);
 
+  private static final AtomicInteger NEXT_POOL_ID = new AtomicInteger();
+  // the plans are the same for every instance, they are logged once
+  private static final AtomicBoolean PLANS_LOGGED = new AtomicBoolean();
+
   private PgPool pgPool;
+  private final List<PgPool> replicaPgPools = new ArrayList<>();
+  private boolean sharedPgPool;
+  private BookCache bookCache;
+  private LocalBookDatabaseService localBookDatabaseService;
+  private boolean tracing;
 
   @Override
   public void start(Future<Void> startFuture) throws Exception {
+    BookMessageCodecs.registerDefaultCodecs(vertx.eventBus());
+
     PgPoolOptions pgPoolOptions = new PgPoolOptions()
       .setHost(config().getString(CONFIG_PG_HOST, "127.0.0.1"))
       .setPort(config().getInteger(CONFIG_PG_PORT, 5432))
       .setDatabase(config().getString(CONFIG_PG_DATABASE))
       .setUser(config().getString(CONFIG_PG_USERNAME))
       .setPassword(config().getString(CONFIG_PG_PASSWORD))
-      .setMaxSize(config().getInteger(CONFIG_PG_POOL_MAX_SIZE, 20));
-
-    this.pgPool = PgClient.pool(vertx, pgPoolOptions);
+      .setMaxSize(config().getInteger(CONFIG_PG_POOL_MAX_SIZE, 20))
+      // each statement is then prepared once per connection instead of on every execution
+      .setCachePreparedStatements(config().getBoolean(CONFIG_PG_CACHE_PREPARED_STATEMENTS, true));
 
     String databaseEbAddress = config().getString(CONFIG_DB_EB_QUEUE);
 
-    BookDatabaseService.create(pgPool, result -> {
+    // a shared pool runs its connections on the event loop of the instance which created it,
+    // a pool per instance spreads them over the event loops of all the instances
+    this.sharedPgPool = config().getBoolean(CONFIG_PG_POOL_SHARED, false);
+    this.pgPool = sharedPgPool
+      ? SharedPgPools.acquire(vertx, databaseEbAddress, () -> createPgPool(pgPoolOptions, "shared"))
+      : createPgPool(pgPoolOptions, "instance-" + NEXT_POOL_ID.incrementAndGet());
+    createReplicaPgPools(pgPoolOptions, databaseEbAddress);
+
+    migrate(pgPoolOptions, migrateResult -> {
+      if (migrateResult.failed()) {
+        LOGGER.error("Failed to migrate the database schema", migrateResult.cause());
+        startFuture.fail(migrateResult.cause());
+        return;
+      }
+      logQueryPlans();
+      createService(pgPoolOptions, databaseEbAddress, startFuture);
+    });
+  }
+
+  // the replicas are pooled like the primary, each of them has its own settings of the connection
+  private void createReplicaPgPools(PgPoolOptions pgPoolOptions, String databaseEbAddress) {
+    JsonArray replicas = config().getJsonArray(CONFIG_PG_REPLICAS, new JsonArray());
+    for (int i = 0; i < replicas.size(); i++) {
+      JsonObject replicaConfig = replicas.getJsonObject(i);
+      PgPoolOptions replicaPgPoolOptions = new PgPoolOptions(pgPoolOptions)
+        .setHost(replicaConfig.getString(CONFIG_PG_HOST, pgPoolOptions.getHost()))
+        .setPort(replicaConfig.getInteger(CONFIG_PG_PORT, pgPoolOptions.getPort()))
+        .setDatabase(replicaConfig.getString(CONFIG_PG_DATABASE, pgPoolOptions.getDatabase()))
+        .setUser(replicaConfig.getString(CONFIG_PG_USERNAME, pgPoolOptions.getUser()))
+        .setPassword(replicaConfig.getString(CONFIG_PG_PASSWORD, pgPoolOptions.getPassword()));
+      String replicaName = "replica-" + i;
+      replicaPgPools.add(sharedPgPool
+        ? SharedPgPools.acquire(vertx, databaseEbAddress + "." + replicaName,
+            () -> createPgPool(replicaPgPoolOptions, "shared-" + replicaName))
+        : createPgPool(replicaPgPoolOptions, "instance-" + NEXT_POOL_ID.incrementAndGet() + "-" + replicaName));
+    }
+    if (!replicaPgPools.isEmpty()) {
+      LOGGER.info("The book reads are balanced over " + replicaPgPools.size() + " PostgreSQL replicas");
+    }
+  }
+
+  private void createService(PgPoolOptions pgPoolOptions, String databaseEbAddress, Future<Void> startFuture) {
+    createReplicatedService(result -> {
       if (result.succeeded()) {
-        // register the database service
-        new ServiceBinder(vertx)
-          .setAddress(databaseEbAddress)
-          .register(BookDatabaseService.class, result.result())
-          .exceptionHandler(throwable -> {
-            LOGGER.error("Failed to establish PostgreSQL database service", throwable);
-            startFuture.fail(throwable);
-          })
-          .completionHandler(res -> {
-            LOGGER.info("PostgreSQL database service is successfully established in \"" + databaseEbAddress + "\"");
-            startFuture.complete();
-          });
+        acquireBookCache(pgPoolOptions, databaseEbAddress, cacheResult -> {
+          if (cacheResult.succeeded()) {
+            registerService(withMetrics(withCache(result.result())), databaseEbAddress, startFuture);
+          } else {
+            LOGGER.error("Failed to listen to book changes", cacheResult.cause());
+            SharedBookCaches.release(vertx, databaseEbAddress);
+            bookCache = null;
+            startFuture.fail(cacheResult.cause());
+          }
+        });
       } else {
         LOGGER.error("Failed to initiate the connection to database", result.cause());
         startFuture.fail(result.cause());
@@ -87,8 +175,145 @@ public class BookDatabaseVerticle extends AbstractVerticle {
     });
   }
 
+  // the event bus registration is kept even when bound locally, so the service is still reachable from other nodes
+  private void registerService(BookDatabaseService bookDatabaseService, String databaseEbAddress, Future<Void> startFuture) {
+    if (config().getBoolean(CONFIG_DB_LOCAL, false)) {
+      localBookDatabaseService = new LocalBookDatabaseService(bookDatabaseService, context);
+      localBookDatabaseService.bind(vertx, databaseEbAddress);
+      LOGGER.info("PostgreSQL database service is bound locally to \"" + databaseEbAddress + "\"");
+    }
+    ServiceBinder serviceBinder = new ServiceBinder(vertx).setAddress(databaseEbAddress);
+    // the local calls bring their trace along, only the messages need to have it picked up from their headers
+    this.tracing = config().getBoolean(SpanExporters.CONFIG_TRACING_ENABLED, false);
+    if (tracing) {
+      serviceBinder.addInterceptor(new TraceInterceptor());
+      bookDatabaseService = new TraceReceivingBookDatabaseService(bookDatabaseService, SpanExporters.acquire(vertx, config()));
+    }
+    serviceBinder
+      .register(BookDatabaseService.class, bookDatabaseService)
+      .exceptionHandler(throwable -> {
+        LOGGER.error("Failed to establish PostgreSQL database service", throwable);
+        startFuture.fail(throwable);
+      })
+      .completionHandler(res -> {
+        LOGGER.info("PostgreSQL database service is successfully established in \"" + databaseEbAddress + "\"");
+        startFuture.complete();
+      });
+  }
+
+  // a service per pool, the first one is the primary
+  @SuppressWarnings("rawtypes")
+  private void createReplicatedService(Handler<AsyncResult<BookDatabaseService>> resultHandler) {
+    List<PgPool> pgPools = new ArrayList<>();
+    pgPools.add(pgPool);
+    pgPools.addAll(replicaPgPools);
+    List<Future> services = new ArrayList<>();
+    for (PgPool pool : pgPools) {
+      Future<BookDatabaseService> service = Future.future();
+      BookDatabaseService.create(vertx, pool, config(), service);
+      services.add(service);
+    }
+    CompositeFuture.all(services).setHandler(ar -> {
+      if (ar.failed()) {
+        resultHandler.handle(Future.failedFuture(ar.cause()));
+        return;
+      }
+      BookDatabaseService primaryService = ar.result().resultAt(0);
+      if (replicaPgPools.isEmpty()) {
+        resultHandler.handle(Future.succeededFuture(primaryService));
+        return;
+      }
+      List<BookDatabaseService> replicaServices = new ArrayList<>();
+      for (int i = 1; i < services.size(); i++) {
+        replicaServices.add(ar.result().resultAt(i));
+      }
+      // the reads of a client which has just written go to the primary, the others are balanced over the replicas
+      resultHandler.handle(Future.succeededFuture(new ReplicatedBookDatabaseService(primaryService, replicaServices,
+        config().getLong(CONFIG_PG_READ_YOUR_WRITES, 0L))));
+    });
+  }
+
+  // the indexes have to be in place before the service takes requests
+  private void migrate(PgPoolOptions pgPoolOptions, Handler<AsyncResult<Integer>> resultHandler) {
+    if (!config().getBoolean(CONFIG_PG_MIGRATE, true)) {
+      resultHandler.handle(Future.succeededFuture(0));
+      return;
+    }
+    new SchemaMigrator(vertx, pgPoolOptions).migrate(resultHandler);
+  }
+
+  // the plans are only logged, the service starts whatever they are
+  private void logQueryPlans() {
+    if (config().getBoolean(CONFIG_PG_EXPLAIN, false) && PLANS_LOGGED.compareAndSet(false, true)) {
+      QueryPlanLogger.logPlans(pgPool, ar -> {
+        if (ar.failed()) {
+          LOGGER.warn("Failed to explain the book queries", ar.cause());
+        }
+      });
+    }
+  }
+
+  // one cache per Vert.x instance, so that a write through any instance evicts the book for all of them,
+  // and other nodes change the rows as well, so the cache is only consistent when it follows the change notifications
+  private void acquireBookCache(PgPoolOptions pgPoolOptions, String databaseEbAddress, Handler<AsyncResult<Void>> resultHandler) {
+    int cacheMaxSize = config().getInteger(CONFIG_CACHE_MAX_SIZE, 0);
+    if (cacheMaxSize <= 0) {
+      resultHandler.handle(Future.succeededFuture());
+      return;
+    }
+    boolean notifications = config().getBoolean(CONFIG_CACHE_NOTIFICATIONS, false);
+    // a book changed elsewhere is then not cached again from a replica which has not replayed the change yet
+    long recacheDelay = replicaPgPools.isEmpty() ? 0L : config().getLong(CONFIG_PG_READ_YOUR_WRITES, 0L);
+    // the TTL and the stats interval are configured in seconds
+    bookCache = SharedBookCaches.acquire(vertx, databaseEbAddress,
+      () -> {
+        LOGGER.info("Book cache is enabled with max size " + cacheMaxSize);
+        return new BookCache(cacheMaxSize, config().getLong(CONFIG_CACHE_TTL, 60L), TimeUnit.SECONDS,
+          recacheDelay, TimeUnit.MILLISECONDS);
+      },
+      cache -> notifications ? new BookChangeListener(vertx, pgPoolOptions, cache) : null,
+      config().getLong(CONFIG_CACHE_STATS_INTERVAL, 0L),
+      resultHandler);
+  }
+
+  private PgPool createPgPool(PgPoolOptions pgPoolOptions, String poolName) {
+    PgPool pool = PgClient.pool(vertx, pgPoolOptions);
+    MeterRegistry meterRegistry = BackendRegistries.getDefaultNow();
+    // the statements prepared by the sessions are sampled at most once per interval in seconds
+    return meterRegistry == null ? pool : PgPoolMetrics.instrument(pool, meterRegistry, poolName, pgPoolOptions,
+      config().getLong(CONFIG_PG_PREPARED_SAMPLE_INTERVAL, 60L), TimeUnit.SECONDS);
+  }
+
+  // the calls are timed around the cache, so that the hits are part of the latencies
+  private BookDatabaseService withMetrics(BookDatabaseService bookDatabaseService) {
+    MeterRegistry meterRegistry = BackendRegistries.getDefaultNow();
+    return meterRegistry == null ? bookDatabaseService : new MeteredBookDatabaseService(bookDatabaseService, meterRegistry);
+  }
+
+  private BookDatabaseService withCache(BookDatabaseService bookDatabaseService) {
+    return bookCache == null ? bookDatabaseService : new CachedBookDatabaseService(bookDatabaseService, bookCache);
+  }
+
   @Override
   public void stop() throws Exception {
-    pgPool.close();
+    if (localBookDatabaseService != null) {
+      localBookDatabaseService.unbind(vertx, config().getString(CONFIG_DB_EB_QUEUE));
+    }
+    if (bookCache != null) {
+      SharedBookCaches.release(vertx, config().getString(CONFIG_DB_EB_QUEUE));
+    }
+    if (tracing) {
+      SpanExporters.release(vertx);
+    }
+    String databaseEbAddress = config().getString(CONFIG_DB_EB_QUEUE);
+    if (sharedPgPool) {
+      SharedPgPools.release(vertx, databaseEbAddress);
+      for (int i = 0; i < replicaPgPools.size(); i++) {
+        SharedPgPools.release(vertx, databaseEbAddress + ".replica-" + i);
+      }
+    } else {
+      pgPool.close();
+      replicaPgPools.forEach(PgPool::close);
+    }
   }
 }
@@ -0,0 +1,159 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database;
+
+import com.billyyccc.database.cache.BookCache;
+import com.billyyccc.database.cache.BookChangeListener;
+import com.billyyccc.database.impl.BookLoader;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The book caches shared by the instances of {@link BookDatabaseVerticle} in one Vert.x instance, together with
+ * the listener which evicts the books changed by the other nodes. A write through any instance then evicts the book
+ * for all of them, and the books are held once whatever the number of instances.
+ * <p>
+ * A cache is dropped and its listener closed once the last instance using it has released it.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+final class SharedBookCaches {
+  private static final String SHARED_CACHES_MAP = "library.db.shared.caches";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SharedBookCaches.class);
+
+  private SharedBookCaches() {
+    // No instance of this class allowed
+  }
+
+  /**
+   * @param listenerFactory      creates the listener of the changes made by the other nodes, or returns {@code null}
+   * @param statsIntervalSeconds the period the statistics of the cache are logged at, 0 to never log them
+   * @param readyHandler         called on the context of the caller once the cache follows the changes
+   */
+  static BookCache acquire(Vertx vertx, String name, Supplier<BookCache> bookCacheFactory,
+                           Function<BookCache, BookChangeListener> listenerFactory, long statsIntervalSeconds,
+                           Handler<AsyncResult<Void>> readyHandler) {
+    Context context = vertx.getOrCreateContext();
+    SharedBookCache sharedCache;
+    boolean created = false;
+    synchronized (SharedBookCaches.class) {
+      LocalMap<String, SharedBookCache> sharedCaches = vertx.sharedData().getLocalMap(SHARED_CACHES_MAP);
+      sharedCache = sharedCaches.get(name);
+      if (sharedCache == null) {
+        BookCache bookCache = bookCacheFactory.get();
+        sharedCache = new SharedBookCache(bookCache, listenerFactory.apply(bookCache));
+        sharedCaches.put(name, sharedCache);
+        created = true;
+      }
+      sharedCache.refCount++;
+    }
+
+    if (created) {
+      SharedBookCache newCache = sharedCache;
+      // the books read while a load runs are cached with their previous values until it is committed
+      newCache.loadedConsumer = vertx.eventBus().consumer(BookLoader.BOOKS_LOADED_ADDRESS,
+        message -> newCache.bookCache.invalidateAll());
+      if (statsIntervalSeconds > 0) {
+        newCache.statsTimerId = vertx.setPeriodic(TimeUnit.SECONDS.toMillis(statsIntervalSeconds),
+          timerId -> LOGGER.info("Book cache statistics " + newCache.bookCache.stats().encode()));
+      }
+      if (newCache.listener == null) {
+        newCache.ready(Future.succeededFuture());
+      } else {
+        newCache.listener.listen(newCache::ready);
+      }
+    }
+    sharedCache.whenReady(ar -> context.runOnContext(v -> readyHandler.handle(ar)));
+    return sharedCache.bookCache;
+  }
+
+  static synchronized void release(Vertx vertx, String name) {
+    LocalMap<String, SharedBookCache> sharedCaches = vertx.sharedData().getLocalMap(SHARED_CACHES_MAP);
+    SharedBookCache sharedCache = sharedCaches.get(name);
+    if (sharedCache != null && --sharedCache.refCount == 0) {
+      sharedCaches.remove(name);
+      sharedCache.loadedConsumer.unregister();
+      if (sharedCache.statsTimerId >= 0) {
+        vertx.cancelTimer(sharedCache.statsTimerId);
+      }
+      if (sharedCache.listener != null) {
+        sharedCache.listener.close();
+      }
+    }
+  }
+
+  private static class SharedBookCache implements Shareable {
+    private final BookCache bookCache;
+    private final BookChangeListener listener;
+    private final List<Handler<AsyncResult<Void>>> readyHandlers = new ArrayList<>();
+    private AsyncResult<Void> readyResult;
+    private MessageConsumer<Object> loadedConsumer;
+    private long statsTimerId = -1;
+    private int refCount;
+
+    private SharedBookCache(BookCache bookCache, BookChangeListener listener) {
+      this.bookCache = bookCache;
+      this.listener = listener;
+    }
+
+    private void ready(AsyncResult<Void> result) {
+      List<Handler<AsyncResult<Void>>> handlers;
+      synchronized (this) {
+        readyResult = result;
+        handlers = new ArrayList<>(readyHandlers);
+        readyHandlers.clear();
+      }
+      handlers.forEach(handler -> handler.handle(result));
+    }
+
+    private void whenReady(Handler<AsyncResult<Void>> handler) {
+      AsyncResult<Void> result;
+      synchronized (this) {
+        result = readyResult;
+        if (result == null) {
+          readyHandlers.add(handler);
+          return;
+        }
+      }
+      handler.handle(result);
+    }
+  }
+}
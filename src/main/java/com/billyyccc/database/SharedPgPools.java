@@ -0,0 +1,76 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database;
+
+import io.reactiverse.pgclient.PgPool;
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.function.Supplier;
+
+/**
+ * The pools shared by the instances of {@link BookDatabaseVerticle} in one Vert.x instance,
+ * a pool is closed once the last instance using it has released it.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+final class SharedPgPools {
+  private static final String SHARED_POOLS_MAP = "library.db.shared.pools";
+
+  private SharedPgPools() {
+    // No instance of this class allowed
+  }
+
+  static synchronized PgPool acquire(Vertx vertx, String name, Supplier<PgPool> pgPoolFactory) {
+    LocalMap<String, SharedPgPool> sharedPools = vertx.sharedData().getLocalMap(SHARED_POOLS_MAP);
+    SharedPgPool sharedPool = sharedPools.get(name);
+    if (sharedPool == null) {
+      sharedPool = new SharedPgPool(pgPoolFactory.get());
+      sharedPools.put(name, sharedPool);
+    }
+    sharedPool.refCount++;
+    return sharedPool.pgPool;
+  }
+
+  static synchronized void release(Vertx vertx, String name) {
+    LocalMap<String, SharedPgPool> sharedPools = vertx.sharedData().getLocalMap(SHARED_POOLS_MAP);
+    SharedPgPool sharedPool = sharedPools.get(name);
+    if (sharedPool != null && --sharedPool.refCount == 0) {
+      sharedPools.remove(name);
+      sharedPool.pgPool.close();
+    }
+  }
+
+  private static class SharedPgPool implements Shareable {
+    private final PgPool pgPool;
+    private int refCount;
+
+    private SharedPgPool(PgPool pgPool) {
+      this.pgPool = pgPool;
+    }
+  }
+}
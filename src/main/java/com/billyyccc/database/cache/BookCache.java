@@ -0,0 +1,255 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.billyyccc.database.cache;
+
+import com.billyyccc.entity.BookPage;
+import io.vertx.core.json.JsonObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded LRU cache of books keyed by id, each entry expires after a fixed TTL.
+ * <p>
+ * Entries are the {@link BookPage} of a book holding its encoded JSON, so a hit skips the database round trip,
+ * the row mapping and the serialization of the response. The cache is safe to share between event loops, the books are spread over segments
+ * locked on their own, each of them evicting its least recently used book. A small cache is a single segment.
+ * <p>
+ * A load is started by {@link #startLoad}, which puts a placeholder of the book in the cache. The loaded book is only
+ * cached if the placeholder is still there, so that invalidating a book cancels the loads of that book only.
+ * <p>
+ * With a recache delay an invalidated book is not cached again until the delay has passed, so that a read from
+ * a replica still lagging behind the write does not put the previous row back for a whole TTL.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class BookCache {
+  private static final int MAX_SEGMENTS = 16;
+  private static final int MIN_SEGMENT_SIZE = 64;
+
+  private final int maxSize;
+  private final long ttlNanos;
+  private final long recacheDelayNanos;
+  private final Segment[] segments;
+
+  // nothing is cached until then after all the books have been invalidated, in the time of System.nanoTime()
+  private volatile long recacheAllAt;
+
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+  private final LongAdder loadCount = new LongAdder();
+  private final LongAdder totalLoadNanos = new LongAdder();
+
+  public BookCache(int maxSize, long ttl, TimeUnit ttlUnit) {
+    this(maxSize, ttl, ttlUnit, 0, TimeUnit.MILLISECONDS);
+  }
+
+  public BookCache(int maxSize, long ttl, TimeUnit ttlUnit, long recacheDelay, TimeUnit recacheDelayUnit) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("The max size of the cache must be positive");
+    }
+    this.maxSize = maxSize;
+    this.ttlNanos = ttlUnit.toNanos(ttl);
+    this.recacheDelayNanos = recacheDelayUnit.toNanos(recacheDelay);
+    this.recacheAllAt = System.nanoTime();
+    int segmentCount = 1;
+    while (segmentCount < MAX_SEGMENTS && maxSize / (segmentCount * 2) >= MIN_SEGMENT_SIZE) {
+      segmentCount *= 2;
+    }
+    this.segments = new Segment[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new Segment(maxSize / segmentCount + (i < maxSize % segmentCount ? 1 : 0));
+    }
+  }
+
+  /**
+   * @return the cached book or {@code null} if it is absent or expired
+   */
+  public BookPage get(int id) {
+    Segment segment = segmentOf(id);
+    BookPage value;
+    synchronized (segment) {
+      Entry entry = segment.get(id);
+      value = entry == null ? null : entry.value;
+      if (entry != null && entry.expireAt - System.nanoTime() <= 0) {
+        segment.remove(id);
+        if (value != null) {
+          evictionCount.increment();
+        }
+        value = null;
+      }
+    }
+    (value == null ? missCount : hitCount).increment();
+    return value;
+  }
+
+  /**
+   * Start loading a book missing from the cache, the loads of the same book started meanwhile share the token.
+   *
+   * @return the token to pass back to {@link #put} when the load completes, {@code null} if the book can not be
+   * cached for now
+   */
+  public LoadToken startLoad(int id) {
+    long now = System.nanoTime();
+    if (recacheAllAt - now > 0) {
+      return null;
+    }
+    Segment segment = segmentOf(id);
+    synchronized (segment) {
+      Entry entry = segment.get(id);
+      if (entry != null && entry.expireAt - now > 0) {
+        // a book loaded meanwhile or waiting for the recache delay is not loaded again
+        return entry.loadToken;
+      }
+      LoadToken loadToken = new LoadToken();
+      segment.put(id, new Entry(null, loadToken, now + ttlNanos));
+      return loadToken;
+    }
+  }
+
+  /**
+   * Put a loaded book into the cache unless it has been invalidated since the load started.
+   */
+  public void put(int id, BookPage book, LoadToken loadToken, long loadNanos) {
+    loadCount.increment();
+    totalLoadNanos.add(loadNanos);
+    long now = System.nanoTime();
+    if (loadToken == null || recacheAllAt - now > 0) {
+      return;
+    }
+    Segment segment = segmentOf(id);
+    synchronized (segment) {
+      Entry entry = segment.get(id);
+      // the placeholder of the load is gone once the book has been invalidated
+      if (entry != null && entry.loadToken == loadToken) {
+        segment.put(id, new Entry(book, null, now + ttlNanos));
+      }
+    }
+  }
+
+  public void invalidate(int id) {
+    Segment segment = segmentOf(id);
+    synchronized (segment) {
+      if (recacheDelayNanos > 0) {
+        // an entry without a value keeps the book out of the cache until the delay has passed
+        segment.put(id, new Entry(null, null, System.nanoTime() + recacheDelayNanos));
+      } else {
+        segment.remove(id);
+      }
+    }
+  }
+
+  public void invalidateAll() {
+    recacheAllAt = System.nanoTime() + recacheDelayNanos;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        segment.clear();
+      }
+    }
+  }
+
+  /**
+   * @return the number of entries, the books being loaded and the ones waiting for the recache delay included
+   */
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * @return a snapshot of the statistics which can be used to size the cache
+   */
+  public JsonObject stats() {
+    long hits = hitCount.sum();
+    long requestCount = hits + missCount.sum();
+    long loads = loadCount.sum();
+    return new JsonObject()
+      .put("size", size())
+      .put("maxSize", maxSize)
+      .put("hitCount", hits)
+      .put("missCount", requestCount - hits)
+      .put("hitRatio", requestCount == 0 ? 0.0 : (double) hits / requestCount)
+      .put("evictionCount", evictionCount.sum())
+      .put("loadCount", loads)
+      .put("averageLoadMillis", loads == 0 ? 0.0 : totalLoadNanos.sum() / 1_000_000.0 / loads);
+  }
+
+  // consecutive ids are spread over the segments
+  private Segment segmentOf(int id) {
+    int hash = id * 0x9E3779B9;
+    return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+  }
+
+  /**
+   * Identifies a load of a book, it is only known to the loads started by {@link #startLoad}.
+   */
+  public static final class LoadToken {
+    private LoadToken() {
+    }
+  }
+
+  private static class Entry {
+    // null while the book is loaded or while an invalidated book waits to be cached again
+    private final BookPage value;
+    // the load the entry waits for, null once it holds a value or while it waits for the recache delay
+    private final LoadToken loadToken;
+    private final long expireAt;
+
+    private Entry(BookPage value, LoadToken loadToken, long expireAt) {
+      this.value = value;
+      this.loadToken = loadToken;
+      this.expireAt = expireAt;
+    }
+  }
+
+  // an LRU of its own, it is only used while locked
+  private final class Segment extends LinkedHashMap<Integer, Entry> {
+    private final int maxSize;
+
+    private Segment(int maxSize) {
+      super(16, 0.75f, true);
+      this.maxSize = maxSize;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+      if (size() > maxSize) {
+        if (eldest.getValue().value != null) {
+          evictionCount.increment();
+        }
+        return true;
+      }
+      return false;
+    }
+  }
+}
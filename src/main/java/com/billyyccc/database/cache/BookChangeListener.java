@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.cache;
+
+import io.reactiverse.pgclient.PgClient;
+import io.reactiverse.pgclient.PgConnectOptions;
+import io.reactiverse.pgclient.PgConnection;
+import io.reactiverse.pgclient.PgNotification;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+/**
+ * Listens on the {@link #CHANNEL} PostgreSQL notification channel with one dedicated connection and evicts the books
+ * changed by any node from the local {@link BookCache}.
+ * <p>
+ * The channel is fixed because the trigger of the book table notifies it as well.
+ * The payload of a notification is the id of the changed book, {@code *} means the whole table has changed.
+ * The cache is flushed whenever the connection is lost because notifications are not delivered in the meantime.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class BookChangeListener {
+  public static final String CHANNEL = "book_changes";
+  public static final String INVALIDATE_ALL_PAYLOAD = "*";
+
+  private static final long RECONNECT_DELAY_MILLIS = 1000;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BookChangeListener.class);
+
+  private final Vertx vertx;
+  private final PgConnectOptions pgConnectOptions;
+  private final BookCache bookCache;
+
+  private PgConnection pgConnection;
+  private boolean closed;
+
+  public BookChangeListener(Vertx vertx, PgConnectOptions pgConnectOptions, BookCache bookCache) {
+    this.vertx = vertx;
+    this.pgConnectOptions = pgConnectOptions;
+    this.bookCache = bookCache;
+  }
+
+  public void listen(Handler<AsyncResult<Void>> resultHandler) {
+    PgClient.connect(vertx, pgConnectOptions, ar -> {
+      if (ar.failed()) {
+        resultHandler.handle(Future.failedFuture(ar.cause()));
+        return;
+      }
+      PgConnection connection = ar.result();
+      // listen() is also called by a pending reconnection, which may fire after the listener is closed
+      if (closed) {
+        connection.close();
+        resultHandler.handle(Future.succeededFuture());
+        return;
+      }
+      connection.notificationHandler(this::handleNotification);
+      connection.query("LISTEN " + CHANNEL, listenResult -> {
+        if (listenResult.succeeded() && closed) {
+          connection.close();
+          resultHandler.handle(Future.succeededFuture());
+        } else if (listenResult.succeeded()) {
+          pgConnection = connection;
+          connection.closeHandler(v -> reconnect());
+          LOGGER.info("Listening to book changes on channel " + CHANNEL);
+          resultHandler.handle(Future.succeededFuture());
+        } else {
+          connection.close();
+          resultHandler.handle(Future.failedFuture(listenResult.cause()));
+        }
+      });
+    });
+  }
+
+  public void close() {
+    closed = true;
+    if (pgConnection != null) {
+      pgConnection.close();
+    }
+  }
+
+  private void handleNotification(PgNotification notification) {
+    String payload = notification.getPayload();
+    if (INVALIDATE_ALL_PAYLOAD.equals(payload)) {
+      bookCache.invalidateAll();
+      return;
+    }
+    try {
+      bookCache.invalidate(Integer.parseInt(payload));
+    } catch (NumberFormatException e) {
+      LOGGER.warn("Unexpected book change notification \"" + payload + "\", flushing the book cache");
+      bookCache.invalidateAll();
+    }
+  }
+
+  private void reconnect() {
+    pgConnection = null;
+    if (closed) {
+      return;
+    }
+    // notifications sent while we are disconnected are lost
+    bookCache.invalidateAll();
+    LOGGER.warn("Lost the connection listening to book changes, reconnecting");
+    vertx.setTimer(RECONNECT_DELAY_MILLIS, timerId -> listen(ar -> {
+      if (ar.succeeded()) {
+        // the entries loaded while disconnected might be stale as well
+        bookCache.invalidateAll();
+      } else {
+        LOGGER.error("Failed to listen to book changes", ar.cause());
+        reconnect();
+      }
+    }));
+  }
+}
@@ -25,14 +25,28 @@
 package com.billyyccc.database.impl;
 
 import com.billyyccc.database.BookDatabaseService;
+import com.billyyccc.database.utils.BookQuery;
+import com.billyyccc.database.utils.BookRowFormat;
+import com.billyyccc.database.utils.EventBusRowSender;
 import com.billyyccc.database.utils.RowCollectors;
 import com.billyyccc.entity.Book;
+import com.billyyccc.entity.BookFilter;
+import com.billyyccc.entity.BookPage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.reactiverse.pgclient.PgConnection;
+import io.reactiverse.pgclient.PgRowSet;
+import io.reactiverse.pgclient.PgTransaction;
 import io.reactiverse.pgclient.Row;
+import io.reactivex.Observable;
+import io.reactivex.Single;
 import io.reactiverse.reactivex.pgclient.PgPool;
 import io.reactiverse.reactivex.pgclient.Tuple;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
@@ -40,46 +54,51 @@ import io.vertx.core.logging.LoggerFactory;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Collector;
 
-import static com.billyyccc.database.utils.BookDatabaseServiceUtils.*;
-
 /**
  * @author Billy Yuan <billy112487983@gmail.com>
  */
 
 public class BookDatabaseServiceImpl implements BookDatabaseService {
   private static final String SQL_ADD_NEW_BOOK = "INSERT INTO book VALUES ($1, $2, $3, $4)";
+  // a book whose id is taken returns no row instead of failing the whole import
+  private static final String SQL_ADD_NEW_BOOK_UNLESS_CONFLICT = SQL_ADD_NEW_BOOK + " ON CONFLICT (id) DO NOTHING RETURNING id";
   private static final String SQL_DELETE_BOOK_BY_ID = "DELETE FROM book WHERE id = $1";
-  private static final String SQL_FIND_BOOK_BY_ID = "SELECT * FROM book WHERE id = $1";
+  private static final String SQL_FIND_BOOK_BY_ID = "SELECT id, title, category, publication_date FROM book WHERE id = $1";
   private static final String SQL_UPSERT_BOOK_BY_ID = "INSERT INTO book VALUES($1, $2, $3, $4) " +
     "ON CONFLICT(id) DO UPDATE SET title = $2, category = $3, publication_date = $4";
-  private static final String SQL_FIND_ALL_BOOKS = "SELECT * FROM book WHERE TRUE";
-
-  private final static Collector<Row, ?, JsonArray> BOOK_JSON_ARRAY_COLLECTOR = RowCollectors.jsonArrayCollector(
-    row -> {
-      JsonObject jsonObject = new JsonObject();
-      jsonObject.put("id", row.getInteger("id"));
-      jsonObject.put("title", row.getString("title"));
-      jsonObject.put("category", row.getString("category"));
-      LocalDate publicationDate = row.getLocalDate("publication_date");
-      if (publicationDate != null) {
-        jsonObject.put("publicationDate", publicationDate.format(DateTimeFormatter.ISO_DATE));
-      } else {
-        jsonObject.put("publicationDate", publicationDate);
-      }
-      return jsonObject;
-    });
+
+  // package private for the benchmarks
+  static final Collector<Row, ?, JsonArray> BOOK_JSON_ARRAY_COLLECTOR = RowCollectors.jsonArrayCollector(
+    BookDatabaseServiceImpl::toBookJson);
+  // the rows are written as JSON bytes as they are decoded, no JSON object is built in between
+  static final Collector<Row, ?, BookPage> BOOK_PAGE_COLLECTOR = Collector.<Row, BookPageBuilder, BookPage>of(
+    BookPageBuilder::new, BookPageBuilder::add, BookPageBuilder::addAll, BookPageBuilder::build);
+
+  private static final String CONFIG_PG_BATCH_SIZE = "postgresql.batch.size";
+  private static final String CONFIG_PG_STREAM_SEND_TIMEOUT = "postgresql.stream.send.timeout";
 
   private static final Logger LOGGER = LoggerFactory.getLogger(BookDatabaseServiceImpl.class);
 
+  private final Vertx vertx;
   private final PgPool pgConnectionPool;
+  private final int batchSize;
+  private final long streamSendTimeout;
 
-  public BookDatabaseServiceImpl(io.reactiverse.pgclient.PgPool pgPool, Handler<AsyncResult<BookDatabaseService>> resultHandler) {
+  public BookDatabaseServiceImpl(Vertx vertx, io.reactiverse.pgclient.PgPool pgPool, JsonObject config,
+                                 Handler<AsyncResult<BookDatabaseService>> resultHandler) {
+    this.vertx = vertx;
+    this.batchSize = config.getInteger(CONFIG_PG_BATCH_SIZE, 500);
+    // how long a batch of a stream or a load waits for the other side, the event bus default hides a stalled client
+    this.streamSendTimeout = config.getLong(CONFIG_PG_STREAM_SEND_TIMEOUT, 30000L);
     pgConnectionPool = new PgPool(pgPool);
     pgConnectionPool.rxGetConnection()
       .flatMap(pgConnection -> pgConnection
-        .rxQuery(SQL_FIND_ALL_BOOKS)
+        .rxQuery(BookQuery.SQL_FIND_BOOKS)
         .doAfterTerminate(pgConnection::close))
       .subscribe(result -> resultHandler.handle(Future.succeededFuture(this)),
         throwable -> {
@@ -90,8 +109,16 @@ public class BookDatabaseServiceImpl implements BookDatabaseService {
 
   @Override
   public BookDatabaseService addNewBook(Book book, Handler<AsyncResult<Void>> resultHandler) {
+    LocalDate publicationDate;
+    try {
+      publicationDate = publicationDateOf(book);
+    } catch (DateTimeParseException e) {
+      resultHandler.handle(Future.failedFuture(e));
+      return this;
+    }
+
     pgConnectionPool.rxPreparedQuery(SQL_ADD_NEW_BOOK,
-      Tuple.of(book.getId(), book.getTitle(), book.getCategory(), LocalDate.parse(book.getPublicationDate())))
+      Tuple.of(book.getId(), book.getTitle(), book.getCategory(), publicationDate))
       .subscribe(updateResult -> resultHandler.handle(Future.succeededFuture()),
         throwable -> {
           LOGGER.error("Failed to add a new book into database", throwable);
@@ -100,6 +127,52 @@ public class BookDatabaseServiceImpl implements BookDatabaseService {
     return this;
   }
 
+  @Override
+  public BookDatabaseService addNewBooks(List<Book> books, Handler<AsyncResult<JsonArray>> resultHandler) {
+    List<List<Tuple>> batches = new ArrayList<>();
+    for (int from = 0; from < books.size(); from += batchSize) {
+      List<Tuple> batch = new ArrayList<>();
+      for (int i = from; i < Math.min(books.size(), from + batchSize); i++) {
+        Book book = books.get(i);
+        LocalDate publicationDate;
+        try {
+          publicationDate = publicationDateOf(book);
+        } catch (DateTimeParseException e) {
+          resultHandler.handle(Future.failedFuture(new IllegalArgumentException(
+            "Invalid publication date of the book " + book.getId() + " at index " + i, e)));
+          return this;
+        }
+        batch.add(Tuple.of(book.getId(), book.getTitle(), book.getCategory(), publicationDate));
+      }
+      batches.add(batch);
+    }
+
+    // each batch is pipelined in one round trip, the books whose id is taken are reported rather than failing
+    // the import, any other failure rolls the whole import back
+    pgConnectionPool.rxGetConnection()
+      .flatMap(pgConnection -> {
+        io.reactiverse.reactivex.pgclient.PgTransaction pgTransaction = pgConnection.begin();
+        return Observable.fromIterable(batches)
+          .concatMapSingle(batch -> pgTransaction.rxPreparedBatch(SQL_ADD_NEW_BOOK_UNLESS_CONFLICT, batch))
+          .collect(JsonArray::new, (results, pgRowSet) -> {
+            // a row set per book, in the order of the books
+            for (PgRowSet rowSet = pgRowSet.getDelegate(); rowSet != null; rowSet = rowSet.next()) {
+              results.add(new JsonObject()
+                .put("id", books.get(results.size()).getId())
+                .put("status", rowSet.size() > 0 ? "created" : "conflict"));
+            }
+          })
+          .flatMap(results -> pgTransaction.rxCommit().andThen(Single.just(results)))
+          .doAfterTerminate(pgConnection::close);
+      })
+      .subscribe(results -> resultHandler.handle(Future.succeededFuture(results)),
+        throwable -> {
+          LOGGER.error("Failed to add " + books.size() + " new books into database", throwable);
+          resultHandler.handle(Future.failedFuture(throwable));
+        });
+    return this;
+  }
+
   @Override
   public BookDatabaseService deleteBookById(int id, Handler<AsyncResult<Void>> resultHandler) {
     pgConnectionPool.rxPreparedQuery(SQL_DELETE_BOOK_BY_ID, Tuple.of(id))
@@ -112,75 +185,110 @@ public class BookDatabaseServiceImpl implements BookDatabaseService {
   }
 
   @Override
-  public BookDatabaseService getBookById(int id, Handler<AsyncResult<JsonObject>> resultHandler) {
-    //TODO when Rxi-fied API supports wildcard type, then we can use Rxi-fied collector API OOTB.
-    pgConnectionPool.getDelegate().preparedQuery(SQL_FIND_BOOK_BY_ID, io.reactiverse.pgclient.Tuple.of(id), BOOK_JSON_ARRAY_COLLECTOR, ar -> {
+  public BookDatabaseService getBookById(int id, long writtenAt, Handler<AsyncResult<BookPage>> resultHandler) {
+    pgConnectionPool.getDelegate().preparedQuery(SQL_FIND_BOOK_BY_ID, io.reactiverse.pgclient.Tuple.of(id), BOOK_PAGE_COLLECTOR, ar -> {
       if (ar.succeeded()) {
-        JsonArray jsonArray = ar.result().value();
-        if (jsonArray.size() == 0) {
-          resultHandler.handle(Future.succeededFuture(emptyJsonObject()));
-        } else {
-          JsonObject dbResponse = jsonArray.getJsonObject(0);
-          resultHandler.handle(Future.succeededFuture(dbResponse));
-        }
+        resultHandler.handle(Future.succeededFuture(ar.result().value()));
       } else {
         LOGGER.error("Failed to get the book by id " + id, ar.cause());
         resultHandler.handle(Future.failedFuture(ar.cause()));
       }
     });
-//    pgConnectionPool.rxPreparedQuery(SQL_FIND_BOOK_BY_ID, Tuple.of(id))
-//      .map(PgRowSet::getDelegate)
-//      .subscribe(pgRowSet -> {
-//        JsonArray jsonArray = toJsonArray(pgRowSet);
-//        if (jsonArray.size() == 0) {
-//          resultHandler.handle(Future.succeededFuture(emptyJsonObject()));
-//        } else {
-//          JsonObject dbResponse = jsonArray.getJsonObject(0);
-//          resultHandler.handle(Future.succeededFuture(dbResponse));
-//        }
-//      }, throwable -> {
-//        LOGGER.error("Failed to get the book by id " + id, throwable);
-//        resultHandler.handle(Future.failedFuture(throwable));
-//      });
     return this;
   }
 
   @Override
-  public BookDatabaseService getBooks(Book book, Handler<AsyncResult<JsonArray>> resultHandler) {
-    DynamicQuery dynamicQuery = generateDynamicQuery(SQL_FIND_ALL_BOOKS, book);
-    String preparedQuery = dynamicQuery.getPreparedQuery();
-    Tuple params = dynamicQuery.getParams();
+  public BookDatabaseService getBooks(BookFilter filter, Handler<AsyncResult<BookPage>> resultHandler) {
+    io.reactiverse.pgclient.Tuple params;
+    try {
+      params = BookQuery.paramsOf(filter);
+    } catch (DateTimeParseException e) {
+      resultHandler.handle(Future.failedFuture(e));
+      return this;
+    }
 
-    //TODO when Rxi-fied API supports wildcard type, then we can use Rxi-fied collector API OOTB.
-    pgConnectionPool.getDelegate().preparedQuery(preparedQuery, params.getDelegate(), BOOK_JSON_ARRAY_COLLECTOR, ar -> {
+    pgConnectionPool.getDelegate().preparedQuery(BookQuery.statementOf(filter), params, BOOK_PAGE_COLLECTOR, ar -> {
       if (ar.succeeded()) {
-        JsonArray jsonArray = ar.result().value();
-        resultHandler.handle(Future.succeededFuture(jsonArray));
+        resultHandler.handle(Future.succeededFuture(ar.result().value()));
       } else {
         LOGGER.error("Failed to get the filtered books by the following conditions"
-          + params.toString(), ar.cause());
+          + filter.toString(), ar.cause());
+        resultHandler.handle(Future.failedFuture(ar.cause()));
+      }
+    });
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService loadBooks(String address, Handler<AsyncResult<Void>> resultHandler) {
+    new BookLoader(vertx.eventBus(), address, streamSendTimeout).load(pgConnectionPool.getDelegate(), ar -> {
+      if (ar.failed()) {
+        LOGGER.error("Failed to start loading books", ar.cause());
+      }
+      resultHandler.handle(ar);
+    });
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService streamBooks(BookFilter filter, String format, int fetchSize, String address, Handler<AsyncResult<Void>> resultHandler) {
+    BookRowFormat bookRowFormat;
+    try {
+      bookRowFormat = BookRowFormat.of(format);
+    } catch (IllegalArgumentException e) {
+      resultHandler.handle(Future.failedFuture(e));
+      return this;
+    }
+    io.reactiverse.pgclient.Tuple params;
+    try {
+      params = BookQuery.paramsOf(filter);
+    } catch (DateTimeParseException e) {
+      resultHandler.handle(Future.failedFuture(e));
+      return this;
+    }
+
+    // a cursor only lives as long as its transaction
+    pgConnectionPool.getDelegate().getConnection(ar -> {
+      if (ar.failed()) {
+        LOGGER.error("Can not open a database connection", ar.cause());
         resultHandler.handle(Future.failedFuture(ar.cause()));
+        return;
       }
+      PgConnection pgConnection = ar.result();
+      PgTransaction pgTransaction = pgConnection.begin();
+      pgConnection.prepare(BookQuery.statementOf(filter), prepareResult -> {
+        if (prepareResult.failed()) {
+          LOGGER.error("Failed to stream the filtered books by the following conditions"
+            + filter.toString(), prepareResult.cause());
+          pgConnection.close();
+          resultHandler.handle(Future.failedFuture(prepareResult.cause()));
+          return;
+        }
+        resultHandler.handle(Future.succeededFuture());
+        new EventBusRowSender(vertx.eventBus(), address, fetchSize, streamSendTimeout, bookRowFormat.batchCollector())
+          .send(prepareResult.result().createStream(fetchSize, params), sendResult -> {
+            if (sendResult.failed()) {
+              LOGGER.warn("Stopped streaming books to \"" + address + "\"", sendResult.cause());
+            }
+            pgTransaction.rollback(rollbackResult -> pgConnection.close());
+          });
+      });
     });
-//    pgConnectionPool.rxPreparedQuery(preparedQuery, params)
-//      .map(PgRowSet::getDelegate)
-//      .subscribe(
-//        pgRowSet -> {
-//          JsonArray jsonArray = toJsonArray(pgRowSet);
-//          resultHandler.handle(Future.succeededFuture(jsonArray));
-//        },
-//        throwable -> {
-//          LOGGER.error("Failed to get the filtered books by the following conditions"
-//            + params.toString(), throwable);
-//          resultHandler.handle(Future.failedFuture(throwable));
-//        });
     return this;
   }
 
   @Override
   public BookDatabaseService upsertBookById(int id, Book book, Handler<AsyncResult<Void>> resultHandler) {
+    LocalDate publicationDate;
+    try {
+      publicationDate = publicationDateOf(book);
+    } catch (DateTimeParseException e) {
+      resultHandler.handle(Future.failedFuture(e));
+      return this;
+    }
+
     pgConnectionPool.rxPreparedQuery(SQL_UPSERT_BOOK_BY_ID,
-      Tuple.of(id, book.getTitle(), book.getCategory(), LocalDate.parse(book.getPublicationDate())))
+      Tuple.of(id, book.getTitle(), book.getCategory(), publicationDate))
       .subscribe(
         updateResult -> resultHandler.handle(Future.succeededFuture()),
         throwable -> {
@@ -190,4 +298,53 @@ public class BookDatabaseServiceImpl implements BookDatabaseService {
       );
     return this;
   }
+
+  // a book without a publication date is stored with a NULL one
+  private static LocalDate publicationDateOf(Book book) {
+    return book.getPublicationDate() == null ? null : LocalDate.parse(book.getPublicationDate());
+  }
+
+  private static JsonObject toBookJson(Row row) {
+    JsonObject jsonObject = new JsonObject();
+    jsonObject.put("id", row.getInteger("id"));
+    jsonObject.put("title", row.getString("title"));
+    jsonObject.put("category", row.getString("category"));
+    LocalDate publicationDate = row.getLocalDate("publication_date");
+    if (publicationDate != null) {
+      jsonObject.put("publicationDate", publicationDate.format(DateTimeFormatter.ISO_DATE));
+    } else {
+      jsonObject.put("publicationDate", publicationDate);
+    }
+    return jsonObject;
+  }
+
+  private static class BookPageBuilder {
+    private final ByteBuf books = Unpooled.buffer();
+    private int size;
+    private Integer lastId;
+
+    private void add(Row row) {
+      books.writeByte(size == 0 ? '[' : ',');
+      BookRowFormat.JSON.writeRow(books, row);
+      size++;
+      lastId = row.getInteger("id");
+    }
+
+    private BookPageBuilder addAll(BookPageBuilder other) {
+      if (other.size > 0) {
+        books.writeByte(size == 0 ? '[' : ',').writeBytes(other.books, 1, other.books.readableBytes() - 1);
+        size += other.size;
+        lastId = other.lastId;
+      }
+      return this;
+    }
+
+    private BookPage build() {
+      if (size == 0) {
+        books.writeByte('[');
+      }
+      books.writeByte(']');
+      return new BookPage(Buffer.buffer(books), size, lastId);
+    }
+  }
 }
@@ -0,0 +1,217 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.impl;
+
+import com.billyyccc.database.cache.BookChangeListener;
+import com.billyyccc.entity.Book;
+import com.billyyccc.entity.BookList;
+import io.reactiverse.pgclient.PgConnection;
+import io.reactiverse.pgclient.PgPool;
+import io.reactiverse.pgclient.PgTransaction;
+import io.reactiverse.pgclient.Tuple;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.time.LocalDate;
+
+import static com.billyyccc.database.utils.RowStreamMessages.*;
+
+/**
+ * Load the books pulled from an event bus address into a staging table and merge them into the book table
+ * in one transaction, the books already present are updated.
+ * <p>
+ * Every batch is inserted with a single statement over arrays, which is the closest the client gets to {@code COPY}.
+ * The change notifications are turned off for the load and replaced by one notification flushing every cache.
+ * Once the load is committed the statistics are published to {@link #BOOKS_LOADED_ADDRESS} as well, so that the caches
+ * are flushed again even without a notification channel.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class BookLoader {
+  public static final String BOOKS_LOADED_ADDRESS = "library.books.loaded";
+
+  private static final String SQL_DISABLE_BOOK_NOTIFY = "SET LOCAL library.book_notify = 'off'";
+  private static final String SQL_CREATE_STAGING_TABLE = "CREATE TEMP TABLE book_staging (" +
+    "seq BIGSERIAL, id INT4, title VARCHAR(100), category VARCHAR(50), publication_date DATE) ON COMMIT DROP";
+  private static final String SQL_STAGE_BOOKS = "INSERT INTO book_staging (id, title, category, publication_date) " +
+    "SELECT * FROM unnest($1::INT4[], $2::VARCHAR[], $3::VARCHAR[], $4::DATE[])";
+  // the latest row of the input wins when an id shows up more than once
+  private static final String SQL_MERGE_STAGED_BOOKS = "INSERT INTO book (id, title, category, publication_date) " +
+    "SELECT DISTINCT ON (id) id, title, category, publication_date FROM book_staging ORDER BY id, seq DESC " +
+    "ON CONFLICT (id) DO UPDATE SET title = EXCLUDED.title, category = EXCLUDED.category, " +
+    "publication_date = EXCLUDED.publication_date";
+  private static final String SQL_NOTIFY_ALL_BOOKS_CHANGED = "SELECT pg_notify('" + BookChangeListener.CHANNEL
+    + "', '" + BookChangeListener.INVALIDATE_ALL_PAYLOAD + "')";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BookLoader.class);
+
+  private final EventBus eventBus;
+  private final String address;
+  private final long pullTimeout;
+
+  private PgConnection pgConnection;
+  private PgTransaction pgTransaction;
+  private long startTime;
+  private long rowCount;
+
+  /**
+   * @param pullTimeout the milliseconds the sender has to answer a pull before the load is rolled back
+   */
+  public BookLoader(EventBus eventBus, String address, long pullTimeout) {
+    this.eventBus = eventBus;
+    this.address = address;
+    this.pullTimeout = pullTimeout;
+  }
+
+  /**
+   * Start loading, the result handler is called once the staging table is ready and the books are being pulled.
+   */
+  public void load(PgPool pgPool, Handler<AsyncResult<Void>> resultHandler) {
+    pgPool.getConnection(ar -> {
+      if (ar.failed()) {
+        resultHandler.handle(Future.failedFuture(ar.cause()));
+        return;
+      }
+      pgConnection = ar.result();
+      pgTransaction = pgConnection.begin();
+      pgTransaction.query(SQL_DISABLE_BOOK_NOTIFY, disableResult -> {
+        if (disableResult.failed()) {
+          rollback();
+          resultHandler.handle(Future.failedFuture(disableResult.cause()));
+          return;
+        }
+        pgTransaction.query(SQL_CREATE_STAGING_TABLE, createResult -> {
+          if (createResult.failed()) {
+            rollback();
+            resultHandler.handle(Future.failedFuture(createResult.cause()));
+            return;
+          }
+          startTime = System.nanoTime();
+          resultHandler.handle(Future.succeededFuture());
+          pull();
+        });
+      });
+    });
+  }
+
+  private void pull() {
+    eventBus.<BookList>send(address, null, new DeliveryOptions()
+      .addHeader(HEADER_ACTION, ACTION_PULL)
+      .setSendTimeout(pullTimeout), reply -> {
+      if (reply.failed()) {
+        abort(reply.cause());
+        return;
+      }
+      BookList books = reply.result().body();
+      if (books.isEmpty()) {
+        merge();
+      } else {
+        stage(books);
+      }
+    });
+  }
+
+  private void stage(BookList books) {
+    int size = books.size();
+    Integer[] ids = new Integer[size];
+    String[] titles = new String[size];
+    String[] categories = new String[size];
+    LocalDate[] publicationDates = new LocalDate[size];
+    for (int i = 0; i < size; i++) {
+      Book book = books.get(i);
+      ids[i] = book.getId();
+      titles[i] = book.getTitle();
+      categories[i] = book.getCategory();
+      String publicationDate = book.getPublicationDate();
+      publicationDates[i] = publicationDate == null ? null : LocalDate.parse(publicationDate);
+    }
+
+    Tuple params = Tuple.tuple()
+      .addIntegerArray(ids)
+      .addStringArray(titles)
+      .addStringArray(categories)
+      .addLocalDateArray(publicationDates);
+    pgTransaction.preparedQuery(SQL_STAGE_BOOKS, params, ar -> {
+      if (ar.succeeded()) {
+        rowCount += size;
+        pull();
+      } else {
+        abort(ar.cause());
+      }
+    });
+  }
+
+  private void merge() {
+    pgTransaction.query(SQL_MERGE_STAGED_BOOKS, mergeResult -> {
+      if (mergeResult.failed()) {
+        abort(mergeResult.cause());
+        return;
+      }
+      pgTransaction.query(SQL_NOTIFY_ALL_BOOKS_CHANGED, notifyResult -> {
+        if (notifyResult.failed()) {
+          abort(notifyResult.cause());
+          return;
+        }
+        pgTransaction.commit(commitResult -> {
+          pgConnection.close();
+          if (commitResult.failed()) {
+            fail(commitResult.cause());
+            return;
+          }
+          long elapsedMillis = Math.max(1, (System.nanoTime() - startTime) / 1_000_000);
+          JsonObject stats = new JsonObject()
+            .put("rows", rowCount)
+            .put("merged", mergeResult.result().rowCount())
+            .put("millis", elapsedMillis)
+            .put("rowsPerSecond", rowCount * 1000 / elapsedMillis);
+          LOGGER.info("Loaded books " + stats.encode());
+          eventBus.publish(BOOKS_LOADED_ADDRESS, stats);
+          eventBus.send(address, stats, new DeliveryOptions().addHeader(HEADER_ACTION, ACTION_END));
+        });
+      });
+    });
+  }
+
+  private void abort(Throwable throwable) {
+    rollback();
+    fail(throwable);
+  }
+
+  private void rollback() {
+    pgTransaction.rollback(ar -> pgConnection.close());
+  }
+
+  private void fail(Throwable throwable) {
+    LOGGER.error("Failed to load books from \"" + address + "\"", throwable);
+    eventBus.send(address, throwable.getMessage(), new DeliveryOptions().addHeader(HEADER_ACTION, ACTION_ERROR));
+  }
+}
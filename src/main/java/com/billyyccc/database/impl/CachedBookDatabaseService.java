@@ -0,0 +1,130 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.impl;
+
+import com.billyyccc.database.BookDatabaseService;
+import com.billyyccc.database.cache.BookCache;
+import com.billyyccc.entity.Book;
+import com.billyyccc.entity.BookFilter;
+import com.billyyccc.entity.BookPage;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+
+import java.util.List;
+
+/**
+ * A read-through cache in front of another {@link BookDatabaseService}.
+ * Books are cached by id, the writes invalidate the cached entry of the book they touch.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class CachedBookDatabaseService implements BookDatabaseService {
+  private final BookDatabaseService delegate;
+  private final BookCache bookCache;
+
+  public CachedBookDatabaseService(BookDatabaseService delegate, BookCache bookCache) {
+    this.delegate = delegate;
+    this.bookCache = bookCache;
+  }
+
+  @Override
+  public BookDatabaseService addNewBook(Book book, Handler<AsyncResult<Void>> resultHandler) {
+    delegate.addNewBook(book, invalidateOnCompletion(book.getId(), resultHandler));
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService addNewBooks(List<Book> books, Handler<AsyncResult<JsonArray>> resultHandler) {
+    delegate.addNewBooks(books, ar -> {
+      books.forEach(book -> bookCache.invalidate(book.getId()));
+      resultHandler.handle(ar);
+    });
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService deleteBookById(int id, Handler<AsyncResult<Void>> resultHandler) {
+    delegate.deleteBookById(id, invalidateOnCompletion(id, resultHandler));
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService getBookById(int id, long writtenAt, Handler<AsyncResult<BookPage>> resultHandler) {
+    BookPage cachedBook = bookCache.get(id);
+    if (cachedBook != null) {
+      resultHandler.handle(Future.succeededFuture(cachedBook));
+      return this;
+    }
+
+    BookCache.LoadToken loadToken = bookCache.startLoad(id);
+    long loadStart = System.nanoTime();
+    delegate.getBookById(id, writtenAt, ar -> {
+      if (ar.succeeded() && !ar.result().isEmpty()) {
+        bookCache.put(id, ar.result(), loadToken, System.nanoTime() - loadStart);
+      }
+      resultHandler.handle(ar);
+    });
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService getBooks(BookFilter filter, Handler<AsyncResult<BookPage>> resultHandler) {
+    delegate.getBooks(filter, resultHandler);
+    return this;
+  }
+
+  // the rows read while the load runs are cached with their previous values, so the books are flushed again
+  // once the load is committed, see BookLoader#BOOKS_LOADED_ADDRESS
+  @Override
+  public BookDatabaseService loadBooks(String address, Handler<AsyncResult<Void>> resultHandler) {
+    bookCache.invalidateAll();
+    delegate.loadBooks(address, resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService streamBooks(BookFilter filter, String format, int fetchSize, String address, Handler<AsyncResult<Void>> resultHandler) {
+    delegate.streamBooks(filter, format, fetchSize, address, resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService upsertBookById(int id, Book book, Handler<AsyncResult<Void>> resultHandler) {
+    delegate.upsertBookById(id, book, invalidateOnCompletion(id, resultHandler));
+    return this;
+  }
+
+  // the entry is dropped even if the write failed as the state of the row is unknown then
+  private Handler<AsyncResult<Void>> invalidateOnCompletion(int id, Handler<AsyncResult<Void>> resultHandler) {
+    bookCache.invalidate(id);
+    return ar -> {
+      bookCache.invalidate(id);
+      resultHandler.handle(ar);
+    };
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.impl;
+
+import com.billyyccc.database.BookDatabaseService;
+import com.billyyccc.entity.Book;
+import com.billyyccc.entity.BookFilter;
+import com.billyyccc.entity.BookPage;
+import com.billyyccc.tracing.Trace;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A {@link BookDatabaseService} which is called in the same JVM without going through the event bus.
+ * <p>
+ * Each call is run on the context of the service and its result is handed back on the context of the caller,
+ * so the threading is the same as with the event bus proxy but nothing is encoded or copied.
+ * The arguments and the results are passed by reference, neither side must modify them once they are handed over.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class LocalBookDatabaseService implements BookDatabaseService, Shareable {
+  /**
+   * The local map the services are bound to, keyed by the event bus address they are registered at as well
+   * followed by an id of the instance.
+   */
+  public static final String LOCAL_SERVICES_MAP = "library.db.local.services";
+
+  // spreads the callers over the instances of the service
+  private static final AtomicInteger NEXT_INSTANCE = new AtomicInteger();
+
+  private final BookDatabaseService delegate;
+  private final Context serviceContext;
+
+  public LocalBookDatabaseService(BookDatabaseService delegate, Context serviceContext) {
+    this.delegate = delegate;
+    this.serviceContext = serviceContext;
+  }
+
+  /**
+   * @return one of the services bound to the address in this JVM, taken in turn, or {@code null} if there is none
+   */
+  public static BookDatabaseService lookup(Vertx vertx, String address) {
+    String keyPrefix = address + "#";
+    List<LocalBookDatabaseService> services = new ArrayList<>();
+    vertx.sharedData().<String, LocalBookDatabaseService>getLocalMap(LOCAL_SERVICES_MAP).forEach((key, service) -> {
+      if (key.startsWith(keyPrefix)) {
+        services.add(service);
+      }
+    });
+    if (services.isEmpty()) {
+      return null;
+    }
+    return services.get(Math.floorMod(NEXT_INSTANCE.getAndIncrement(), services.size()));
+  }
+
+  public void bind(Vertx vertx, String address) {
+    vertx.sharedData().<String, LocalBookDatabaseService>getLocalMap(LOCAL_SERVICES_MAP).put(keyOf(address), this);
+  }
+
+  public void unbind(Vertx vertx, String address) {
+    vertx.sharedData().<String, LocalBookDatabaseService>getLocalMap(LOCAL_SERVICES_MAP).removeIfPresent(keyOf(address), this);
+  }
+
+  private String keyOf(String address) {
+    return address + "#" + Integer.toHexString(System.identityHashCode(this));
+  }
+
+  @Override
+  public BookDatabaseService addNewBook(Book book, Handler<AsyncResult<Void>> resultHandler) {
+    dispatch(handler -> delegate.addNewBook(book, handler), resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService addNewBooks(List<Book> books, Handler<AsyncResult<JsonArray>> resultHandler) {
+    dispatch(handler -> delegate.addNewBooks(books, handler), resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService deleteBookById(int id, Handler<AsyncResult<Void>> resultHandler) {
+    dispatch(handler -> delegate.deleteBookById(id, handler), resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService getBookById(int id, long writtenAt, Handler<AsyncResult<BookPage>> resultHandler) {
+    dispatch(handler -> delegate.getBookById(id, writtenAt, handler), resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService getBooks(BookFilter filter, Handler<AsyncResult<BookPage>> resultHandler) {
+    dispatch(handler -> delegate.getBooks(filter, handler), resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService loadBooks(String address, Handler<AsyncResult<Void>> resultHandler) {
+    dispatch(handler -> delegate.loadBooks(address, handler), resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService streamBooks(BookFilter filter, String format, int fetchSize, String address, Handler<AsyncResult<Void>> resultHandler) {
+    dispatch(handler -> delegate.streamBooks(filter, format, fetchSize, address, handler), resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService upsertBookById(int id, Book book, Handler<AsyncResult<Void>> resultHandler) {
+    dispatch(handler -> delegate.upsertBookById(id, book, handler), resultHandler);
+    return this;
+  }
+
+  private <T> void dispatch(Consumer<Handler<AsyncResult<T>>> call, Handler<AsyncResult<T>> resultHandler) {
+    Context callerContext = Vertx.currentContext();
+    if (callerContext == serviceContext) {
+      invoke(call, resultHandler);
+      return;
+    }
+    // the trace of the caller goes along with the call, as the event bus header would
+    Trace trace = Trace.current();
+    serviceContext.runOnContext(v -> Trace.runWith(trace, () -> invoke(call, ar -> {
+      if (callerContext == null) {
+        resultHandler.handle(ar);
+      } else {
+        callerContext.runOnContext(x -> resultHandler.handle(ar));
+      }
+    })));
+  }
+
+  // a call which throws fails its result as the proxy handler does, otherwise the caller would never get one
+  private static <T> void invoke(Consumer<Handler<AsyncResult<T>>> call, Handler<AsyncResult<T>> resultHandler) {
+    try {
+      call.accept(resultHandler);
+    } catch (Throwable throwable) {
+      resultHandler.handle(Future.failedFuture(throwable));
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.impl;
+
+import com.billyyccc.database.BookDatabaseService;
+import com.billyyccc.entity.Book;
+import com.billyyccc.entity.BookFilter;
+import com.billyyccc.entity.BookPage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time each call to another {@link BookDatabaseService} until its result is handled, by method and outcome.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class MeteredBookDatabaseService implements BookDatabaseService {
+  private static final String[] METHODS = {"addNewBook", "addNewBooks", "deleteBookById", "getBookById", "getBooks",
+    "loadBooks", "streamBooks", "upsertBookById"};
+
+  private final BookDatabaseService delegate;
+  private final Map<String, Timer> successTimers = new HashMap<>();
+  private final Map<String, Timer> failureTimers = new HashMap<>();
+
+  public MeteredBookDatabaseService(BookDatabaseService delegate, MeterRegistry meterRegistry) {
+    this.delegate = delegate;
+    for (String method : METHODS) {
+      successTimers.put(method, timer(meterRegistry, method, "success"));
+      failureTimers.put(method, timer(meterRegistry, method, "failure"));
+    }
+  }
+
+  @Override
+  public BookDatabaseService addNewBook(Book book, Handler<AsyncResult<Void>> resultHandler) {
+    delegate.addNewBook(book, timed("addNewBook", resultHandler));
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService addNewBooks(List<Book> books, Handler<AsyncResult<JsonArray>> resultHandler) {
+    delegate.addNewBooks(books, timed("addNewBooks", resultHandler));
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService deleteBookById(int id, Handler<AsyncResult<Void>> resultHandler) {
+    delegate.deleteBookById(id, timed("deleteBookById", resultHandler));
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService getBookById(int id, long writtenAt, Handler<AsyncResult<BookPage>> resultHandler) {
+    delegate.getBookById(id, writtenAt, timed("getBookById", resultHandler));
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService getBooks(BookFilter filter, Handler<AsyncResult<BookPage>> resultHandler) {
+    delegate.getBooks(filter, timed("getBooks", resultHandler));
+    return this;
+  }
+
+  // the streaming calls complete once they have started, the time of the whole transfer is not part of it
+  @Override
+  public BookDatabaseService loadBooks(String address, Handler<AsyncResult<Void>> resultHandler) {
+    delegate.loadBooks(address, timed("loadBooks", resultHandler));
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService streamBooks(BookFilter filter, String format, int fetchSize, String address,
+                                         Handler<AsyncResult<Void>> resultHandler) {
+    delegate.streamBooks(filter, format, fetchSize, address, timed("streamBooks", resultHandler));
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService upsertBookById(int id, Book book, Handler<AsyncResult<Void>> resultHandler) {
+    delegate.upsertBookById(id, book, timed("upsertBookById", resultHandler));
+    return this;
+  }
+
+  private <T> Handler<AsyncResult<T>> timed(String method, Handler<AsyncResult<T>> resultHandler) {
+    long startTime = System.nanoTime();
+    return ar -> {
+      (ar.succeeded() ? successTimers : failureTimers).get(method).record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+      resultHandler.handle(ar);
+    };
+  }
+
+  private static Timer timer(MeterRegistry meterRegistry, String method, String outcome) {
+    return Timer.builder("library.db.service.calls")
+      .description("Calls to the book database service")
+      .tag("method", method)
+      .tag("outcome", outcome)
+      .publishPercentileHistogram()
+      .register(meterRegistry);
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.impl;
+
+import com.billyyccc.database.BookDatabaseService;
+import com.billyyccc.entity.Book;
+import com.billyyccc.entity.BookFilter;
+import com.billyyccc.entity.BookPage;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Route the reads to the services of the read replicas in turn and the writes to the service of the primary.
+ * <p>
+ * A replica lags behind the primary, so with read your writes the reads of a caller go to the primary as well for
+ * a while after its last write. The caller tells the time of its last write with each read, so the other callers
+ * keep reading from the replicas. A time of write later than now by more than the skew allowed between the clocks
+ * is ignored, it would otherwise pin the reads of its caller to the primary until that time.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class ReplicatedBookDatabaseService implements BookDatabaseService {
+  private static final long CLOCK_SKEW_MILLIS = 1000L;
+
+  private final BookDatabaseService primary;
+  private final List<BookDatabaseService> replicas;
+  private final long readYourWritesMillis;
+  private final AtomicInteger nextReplica = new AtomicInteger();
+
+  public ReplicatedBookDatabaseService(BookDatabaseService primary, List<BookDatabaseService> replicas,
+                                       long readYourWritesMillis) {
+    if (replicas.isEmpty()) {
+      throw new IllegalArgumentException("At least one replica is needed to route the reads to");
+    }
+    this.primary = primary;
+    this.replicas = new ArrayList<>(replicas);
+    this.readYourWritesMillis = readYourWritesMillis;
+  }
+
+  @Override
+  public BookDatabaseService addNewBook(Book book, Handler<AsyncResult<Void>> resultHandler) {
+    primary.addNewBook(book, resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService addNewBooks(List<Book> books, Handler<AsyncResult<JsonArray>> resultHandler) {
+    primary.addNewBooks(books, resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService deleteBookById(int id, Handler<AsyncResult<Void>> resultHandler) {
+    primary.deleteBookById(id, resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService getBookById(int id, long writtenAt, Handler<AsyncResult<BookPage>> resultHandler) {
+    reader(writtenAt).getBookById(id, writtenAt, resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService getBooks(BookFilter filter, Handler<AsyncResult<BookPage>> resultHandler) {
+    reader(filter.getWrittenAt()).getBooks(filter, resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService loadBooks(String address, Handler<AsyncResult<Void>> resultHandler) {
+    primary.loadBooks(address, resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService streamBooks(BookFilter filter, String format, int fetchSize, String address, Handler<AsyncResult<Void>> resultHandler) {
+    reader(filter.getWrittenAt()).streamBooks(filter, format, fetchSize, address, resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService upsertBookById(int id, Book book, Handler<AsyncResult<Void>> resultHandler) {
+    primary.upsertBookById(id, book, resultHandler);
+    return this;
+  }
+
+  // the clocks of the nodes are assumed to be in sync within a small fraction of the read your writes period
+  private BookDatabaseService reader(Long writtenAt) {
+    if (writtenAt == null || writtenAt <= 0) {
+      return replica();
+    }
+    long writeAge = System.currentTimeMillis() - writtenAt;
+    if (writeAge > -CLOCK_SKEW_MILLIS && writeAge < readYourWritesMillis) {
+      return primary;
+    }
+    return replica();
+  }
+
+  private BookDatabaseService replica() {
+    return replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+  }
+}
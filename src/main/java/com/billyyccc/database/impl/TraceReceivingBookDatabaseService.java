@@ -0,0 +1,125 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.impl;
+
+import com.billyyccc.database.BookDatabaseService;
+import com.billyyccc.entity.Book;
+import com.billyyccc.entity.BookFilter;
+import com.billyyccc.entity.BookPage;
+import com.billyyccc.tracing.Span;
+import com.billyyccc.tracing.SpanExporter;
+import com.billyyccc.tracing.Trace;
+import com.billyyccc.tracing.TraceInterceptor;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Continue the trace of the caller in the database service registered on the event bus, the trace is picked up
+ * from the message by a {@link TraceInterceptor}. The spans of this side are exported on their own once the
+ * result of the call is handed back, they belong to the trace of the caller by their ids.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class TraceReceivingBookDatabaseService implements BookDatabaseService {
+  private final BookDatabaseService delegate;
+  private final SpanExporter spanExporter;
+
+  public TraceReceivingBookDatabaseService(BookDatabaseService delegate, SpanExporter spanExporter) {
+    this.delegate = delegate;
+    this.spanExporter = spanExporter;
+  }
+
+  @Override
+  public BookDatabaseService addNewBook(Book book, Handler<AsyncResult<Void>> resultHandler) {
+    receive("addNewBook", handler -> delegate.addNewBook(book, handler), resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService addNewBooks(List<Book> books, Handler<AsyncResult<JsonArray>> resultHandler) {
+    receive("addNewBooks", handler -> delegate.addNewBooks(books, handler), resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService deleteBookById(int id, Handler<AsyncResult<Void>> resultHandler) {
+    receive("deleteBookById", handler -> delegate.deleteBookById(id, handler), resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService getBookById(int id, long writtenAt, Handler<AsyncResult<BookPage>> resultHandler) {
+    receive("getBookById", handler -> delegate.getBookById(id, writtenAt, handler), resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService getBooks(BookFilter filter, Handler<AsyncResult<BookPage>> resultHandler) {
+    receive("getBooks", handler -> delegate.getBooks(filter, handler), resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService loadBooks(String address, Handler<AsyncResult<Void>> resultHandler) {
+    receive("loadBooks", handler -> delegate.loadBooks(address, handler), resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService streamBooks(BookFilter filter, String format, int fetchSize, String address, Handler<AsyncResult<Void>> resultHandler) {
+    receive("streamBooks", handler -> delegate.streamBooks(filter, format, fetchSize, address, handler), resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService upsertBookById(int id, Book book, Handler<AsyncResult<Void>> resultHandler) {
+    receive("upsertBookById", handler -> delegate.upsertBookById(id, book, handler), resultHandler);
+    return this;
+  }
+
+  private <T> void receive(String method, Consumer<Handler<AsyncResult<T>>> call, Handler<AsyncResult<T>> resultHandler) {
+    Trace trace = Trace.takeIncoming();
+    if (trace == null) {
+      call.accept(resultHandler);
+      return;
+    }
+    Span span = trace.startSpan("service." + method);
+    Trace.runWith(trace, () -> call.accept(ar -> {
+      if (ar.failed()) {
+        span.put("error", true);
+      }
+      span.end();
+      if (trace.isSampled()) {
+        spanExporter.export(trace.spans());
+      }
+      resultHandler.handle(ar);
+    }));
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.impl;
+
+import com.billyyccc.database.BookDatabaseService;
+import com.billyyccc.database.BookDatabaseServiceVertxEBProxy;
+import com.billyyccc.entity.Book;
+import com.billyyccc.entity.BookFilter;
+import com.billyyccc.entity.BookPage;
+import com.billyyccc.tracing.Span;
+import com.billyyccc.tracing.Trace;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Trace the calls made to the database service while a traced request is handled.
+ * <p>
+ * A call is a phase of the trace, which lasts until its result is handed back, the phase following it is the
+ * serialization of the response. The trace is passed to the service in the {@code traceparent} header of the
+ * event bus message, or as the current trace when the service is bound locally.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class TracingBookDatabaseService implements BookDatabaseService {
+  private static final String RESPONSE_PHASE = "serialize";
+
+  private final Vertx vertx;
+  private final String address;
+  private final BookDatabaseService delegate;
+
+  public TracingBookDatabaseService(Vertx vertx, String address, BookDatabaseService delegate) {
+    this.vertx = vertx;
+    this.address = address;
+    this.delegate = delegate;
+  }
+
+  @Override
+  public BookDatabaseService addNewBook(Book book, Handler<AsyncResult<Void>> resultHandler) {
+    trace("addNewBook", (service, handler) -> service.addNewBook(book, handler), resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService addNewBooks(List<Book> books, Handler<AsyncResult<JsonArray>> resultHandler) {
+    trace("addNewBooks", (service, handler) -> service.addNewBooks(books, handler), resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService deleteBookById(int id, Handler<AsyncResult<Void>> resultHandler) {
+    trace("deleteBookById", (service, handler) -> service.deleteBookById(id, handler), resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService getBookById(int id, long writtenAt, Handler<AsyncResult<BookPage>> resultHandler) {
+    trace("getBookById", (service, handler) -> service.getBookById(id, writtenAt, handler), resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService getBooks(BookFilter filter, Handler<AsyncResult<BookPage>> resultHandler) {
+    trace("getBooks", (service, handler) -> service.getBooks(filter, handler), resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService loadBooks(String address, Handler<AsyncResult<Void>> resultHandler) {
+    trace("loadBooks", (service, handler) -> service.loadBooks(address, handler), resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService streamBooks(BookFilter filter, String format, int fetchSize, String address, Handler<AsyncResult<Void>> resultHandler) {
+    trace("streamBooks", (service, handler) -> service.streamBooks(filter, format, fetchSize, address, handler), resultHandler);
+    return this;
+  }
+
+  @Override
+  public BookDatabaseService upsertBookById(int id, Book book, Handler<AsyncResult<Void>> resultHandler) {
+    trace("upsertBookById", (service, handler) -> service.upsertBookById(id, book, handler), resultHandler);
+    return this;
+  }
+
+  private <T> void trace(String method, BiConsumer<BookDatabaseService, Handler<AsyncResult<T>>> call,
+                         Handler<AsyncResult<T>> resultHandler) {
+    Trace trace = Trace.current();
+    if (trace == null) {
+      call.accept(delegate, resultHandler);
+      return;
+    }
+    Span span = trace.phase("db." + method).put("messaging.destination", address);
+    // the options of a proxy are copied for each message, so a proxy per call is the way to add a header to it
+    BookDatabaseService service = delegate instanceof LocalBookDatabaseService
+      ? delegate
+      : new BookDatabaseServiceVertxEBProxy(vertx, address,
+      new DeliveryOptions().addHeader(Trace.TRACEPARENT_HEADER, trace.traceparent(span)));
+    call.accept(service, ar -> {
+      if (ar.failed()) {
+        span.put("error", true);
+      }
+      trace.phase(RESPONSE_PHASE);
+      resultHandler.handle(ar);
+    });
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.metrics;
+
+import io.reactiverse.pgclient.PgConnection;
+import io.reactiverse.pgclient.PgNotification;
+import io.reactiverse.pgclient.PgPreparedQuery;
+import io.reactiverse.pgclient.PgResult;
+import io.reactiverse.pgclient.PgRowSet;
+import io.reactiverse.pgclient.PgTransaction;
+import io.reactiverse.pgclient.Row;
+import io.reactiverse.pgclient.Tuple;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collector;
+
+/**
+ * A connection handed out by {@link MeteredPgPool}, which counts as active in {@link PgPoolMetrics} until it is
+ * closed for the first time. The fluent calls answer this connection so that a later close is still counted, each
+ * statement prepared or executed on it is counted as an execution.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+class MeteredPgConnection implements PgConnection {
+  private final PgConnection pgConnection;
+  private final PgPoolMetrics metrics;
+  private final AtomicBoolean released = new AtomicBoolean();
+
+  MeteredPgConnection(PgConnection pgConnection, PgPoolMetrics metrics) {
+    this.pgConnection = pgConnection;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public PgConnection prepare(String sql, Handler<AsyncResult<PgPreparedQuery>> handler) {
+    metrics.statementExecuted();
+    pgConnection.prepare(sql, handler);
+    return this;
+  }
+
+  @Override
+  public PgConnection exceptionHandler(Handler<Throwable> handler) {
+    pgConnection.exceptionHandler(handler);
+    return this;
+  }
+
+  @Override
+  public PgConnection closeHandler(Handler<Void> handler) {
+    pgConnection.closeHandler(handler);
+    return this;
+  }
+
+  @Override
+  public PgTransaction begin() {
+    return pgConnection.begin();
+  }
+
+  @Override
+  public PgConnection notificationHandler(Handler<PgNotification> handler) {
+    pgConnection.notificationHandler(handler);
+    return this;
+  }
+
+  @Override
+  public int processId() {
+    return pgConnection.processId();
+  }
+
+  @Override
+  public int secretKey() {
+    return pgConnection.secretKey();
+  }
+
+  @Override
+  public PgConnection cancelRequest(Handler<AsyncResult<Void>> handler) {
+    pgConnection.cancelRequest(handler);
+    return this;
+  }
+
+  @Override
+  public boolean isSSL() {
+    return pgConnection.isSSL();
+  }
+
+  @Override
+  public void close() {
+    if (released.compareAndSet(false, true)) {
+      metrics.release(pgConnection);
+    } else {
+      pgConnection.close();
+    }
+  }
+
+  @Override
+  public PgConnection query(String sql, Handler<AsyncResult<PgRowSet>> handler) {
+    pgConnection.query(sql, handler);
+    return this;
+  }
+
+  @Override
+  public <R> PgConnection query(String sql, Collector<Row, ?, R> collector, Handler<AsyncResult<PgResult<R>>> handler) {
+    pgConnection.query(sql, collector, handler);
+    return this;
+  }
+
+  @Override
+  public PgConnection preparedQuery(String sql, Handler<AsyncResult<PgRowSet>> handler) {
+    metrics.statementExecuted();
+    pgConnection.preparedQuery(sql, handler);
+    return this;
+  }
+
+  @Override
+  public <R> PgConnection preparedQuery(String sql, Collector<Row, ?, R> collector,
+                                        Handler<AsyncResult<PgResult<R>>> handler) {
+    metrics.statementExecuted();
+    pgConnection.preparedQuery(sql, collector, handler);
+    return this;
+  }
+
+  @Override
+  public PgConnection preparedQuery(String sql, Tuple arguments, Handler<AsyncResult<PgRowSet>> handler) {
+    metrics.statementExecuted();
+    pgConnection.preparedQuery(sql, arguments, handler);
+    return this;
+  }
+
+  @Override
+  public <R> PgConnection preparedQuery(String sql, Tuple arguments, Collector<Row, ?, R> collector,
+                                        Handler<AsyncResult<PgResult<R>>> handler) {
+    metrics.statementExecuted();
+    pgConnection.preparedQuery(sql, arguments, collector, handler);
+    return this;
+  }
+
+  @Override
+  public PgConnection preparedBatch(String sql, List<Tuple> batch, Handler<AsyncResult<PgRowSet>> handler) {
+    metrics.statementExecuted();
+    pgConnection.preparedBatch(sql, batch, handler);
+    return this;
+  }
+
+  @Override
+  public <R> PgConnection preparedBatch(String sql, List<Tuple> batch, Collector<Row, ?, R> collector,
+                                        Handler<AsyncResult<PgResult<R>>> handler) {
+    metrics.statementExecuted();
+    pgConnection.preparedBatch(sql, batch, collector, handler);
+    return this;
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.metrics;
+
+import com.billyyccc.tracing.Span;
+import com.billyyccc.tracing.Trace;
+import io.reactiverse.pgclient.PgConnection;
+import io.reactiverse.pgclient.PgPool;
+import io.reactiverse.pgclient.PgResult;
+import io.reactiverse.pgclient.PgRowSet;
+import io.reactiverse.pgclient.PgTransaction;
+import io.reactiverse.pgclient.Row;
+import io.reactiverse.pgclient.Tuple;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.stream.Collector;
+
+/**
+ * A {@link PgPool} recording its use in {@link PgPoolMetrics}, each query of the pool runs on a connection of its own
+ * which is given back once the result is handled.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+class MeteredPgPool implements PgPool {
+  private final PgPool pgPool;
+  private final PgPoolMetrics metrics;
+
+  MeteredPgPool(PgPool pgPool, PgPoolMetrics metrics) {
+    this.pgPool = pgPool;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public PgPool query(String sql, Handler<AsyncResult<PgRowSet>> handler) {
+    runOnConnection("query", sql, handler, (pgConnection, resultHandler) -> pgConnection.query(sql, resultHandler));
+    return this;
+  }
+
+  @Override
+  public <R> PgPool query(String sql, Collector<Row, ?, R> collector, Handler<AsyncResult<PgResult<R>>> handler) {
+    runOnConnection("query", sql, handler,
+      (pgConnection, resultHandler) -> pgConnection.query(sql, collector, resultHandler));
+    return this;
+  }
+
+  @Override
+  public PgPool preparedQuery(String sql, Handler<AsyncResult<PgRowSet>> handler) {
+    runOnConnection("preparedQuery", sql, handler,
+      (pgConnection, resultHandler) -> pgConnection.preparedQuery(sql, resultHandler));
+    return this;
+  }
+
+  @Override
+  public <R> PgPool preparedQuery(String sql, Collector<Row, ?, R> collector,
+                                  Handler<AsyncResult<PgResult<R>>> handler) {
+    runOnConnection("preparedQuery", sql, handler,
+      (pgConnection, resultHandler) -> pgConnection.preparedQuery(sql, collector, resultHandler));
+    return this;
+  }
+
+  @Override
+  public PgPool preparedQuery(String sql, Tuple arguments, Handler<AsyncResult<PgRowSet>> handler) {
+    runOnConnection("preparedQuery", sql, handler,
+      (pgConnection, resultHandler) -> pgConnection.preparedQuery(sql, arguments, resultHandler));
+    return this;
+  }
+
+  @Override
+  public <R> PgPool preparedQuery(String sql, Tuple arguments, Collector<Row, ?, R> collector,
+                                  Handler<AsyncResult<PgResult<R>>> handler) {
+    runOnConnection("preparedQuery", sql, handler,
+      (pgConnection, resultHandler) -> pgConnection.preparedQuery(sql, arguments, collector, resultHandler));
+    return this;
+  }
+
+  @Override
+  public PgPool preparedBatch(String sql, List<Tuple> batch, Handler<AsyncResult<PgRowSet>> handler) {
+    runOnConnection("preparedBatch", sql, handler,
+      (pgConnection, resultHandler) -> pgConnection.preparedBatch(sql, batch, resultHandler));
+    return this;
+  }
+
+  @Override
+  public <R> PgPool preparedBatch(String sql, List<Tuple> batch, Collector<Row, ?, R> collector,
+                                  Handler<AsyncResult<PgResult<R>>> handler) {
+    runOnConnection("preparedBatch", sql, handler,
+      (pgConnection, resultHandler) -> pgConnection.preparedBatch(sql, batch, collector, resultHandler));
+    return this;
+  }
+
+  @Override
+  public void getConnection(Handler<AsyncResult<PgConnection>> handler) {
+    acquire(ar -> {
+      if (ar.succeeded()) {
+        handler.handle(Future.succeededFuture(new MeteredPgConnection(ar.result(), metrics)));
+      } else {
+        handler.handle(Future.failedFuture(ar.cause()));
+      }
+    });
+  }
+
+  @Override
+  public void begin(Handler<AsyncResult<PgTransaction>> handler) {
+    pgPool.begin(handler);
+  }
+
+  @Override
+  public void close() {
+    pgPool.close();
+  }
+
+  private void acquire(Handler<AsyncResult<PgConnection>> handler) {
+    long startTime = System.nanoTime();
+    Trace trace = Trace.current();
+    Span acquireSpan = trace == null ? null : trace.startSpan("pool.acquire");
+    metrics.acquireStarted();
+    pgPool.getConnection(ar -> {
+      metrics.acquireEnded(startTime, ar.succeeded());
+      if (acquireSpan != null) {
+        acquireSpan.end();
+      }
+      handler.handle(ar);
+    });
+  }
+
+  private <T> void runOnConnection(String operation, String sql, Handler<AsyncResult<T>> handler,
+                                   BiConsumer<PgConnection, Handler<AsyncResult<T>>> query) {
+    Trace trace = Trace.current();
+    acquire(ar -> {
+      if (ar.failed()) {
+        handler.handle(Future.failedFuture(ar.cause()));
+        return;
+      }
+      PgConnection pgConnection = ar.result();
+      Span querySpan = trace == null ? null : trace.startSpan("sql")
+        .put("db.operation", operation)
+        .put("db.statement", sql);
+      if (!"query".equals(operation)) {
+        metrics.statementExecuted();
+      }
+      try {
+        query.accept(pgConnection, result -> {
+          if (querySpan != null) {
+            querySpan.end();
+          }
+          metrics.release(pgConnection);
+          handler.handle(result);
+        });
+      } catch (RuntimeException e) {
+        if (querySpan != null) {
+          querySpan.end();
+        }
+        metrics.release(pgConnection);
+        handler.handle(Future.failedFuture(e));
+      }
+    });
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.reactiverse.pgclient.PgConnection;
+import io.reactiverse.pgclient.PgPool;
+import io.reactiverse.pgclient.PgPoolOptions;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measure how a {@link PgPool} is used: the time spent waiting for a connection, the connections in use and
+ * the callers waiting, so that the exhaustion of the pool shows before the requests start to time out.
+ * <p>
+ * The pool is decorated by {@link MeteredPgPool}, which runs the queries of the pool on a connection taken through
+ * {@link PgPool#getConnection} so that every use of a connection is counted, and hands out its connections as
+ * {@link MeteredPgConnection} to count their release. A transaction started by {@link PgPool#begin} is not counted,
+ * the services take a connection and begin the transaction on it instead.
+ * <p>
+ * When a connection is requested while a traced call is handled, the wait and the query run on behalf of the pool
+ * are added to the trace as the {@code pool.acquire} and {@code sql} spans.
+ * <p>
+ * The statements prepared or executed on the pool and its connections are counted along with the statements the
+ * server prepared for them, the ratio of both tells whether the statements are planned once per connection or on every
+ * execution. The statement cache of a connection is not exposed by the client, so the named statements of its session
+ * are counted in {@code pg_prepared_statements} when the connection is released, at most once per sample interval, and
+ * their growth since the last sample of the session is added to the prepares. Without the statement cache the queries
+ * run unnamed statements, which the server does not list and parses on every execution, so each execution is counted
+ * as a prepare.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class PgPoolMetrics {
+  private static final String SQL_COUNT_PREPARED_STATEMENTS =
+    "SELECT count(*) FROM pg_prepared_statements WHERE NOT from_sql";
+
+  private final boolean cachePreparedStatements;
+  private final long sampleIntervalNanos;
+  private final Timer waitTimer;
+  private final Counter acquireFailures;
+  private final Counter statementExecutions;
+  private final Counter statementPrepares;
+  // the last sample of each session by its backend process id, the oldest ones belong to connections closed since
+  private final Map<Integer, PreparedStatementsSample> samples;
+  private final AtomicInteger activeConnections = new AtomicInteger();
+  private final AtomicInteger pendingRequests = new AtomicInteger();
+
+  private PgPoolMetrics(MeterRegistry meterRegistry, String poolName, PgPoolOptions pgPoolOptions,
+                        long sampleInterval, TimeUnit sampleIntervalUnit) {
+    this.cachePreparedStatements = pgPoolOptions.getCachePreparedStatements();
+    this.sampleIntervalNanos = sampleIntervalUnit.toNanos(sampleInterval);
+    int maxSamples = 2 * pgPoolOptions.getMaxSize();
+    this.samples = new LinkedHashMap<Integer, PreparedStatementsSample>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, PreparedStatementsSample> eldest) {
+        return size() > maxSamples;
+      }
+    };
+    Tags tags = Tags.of("pool", poolName);
+    this.waitTimer = Timer.builder("library.db.pool.wait")
+      .description("Time spent waiting for a connection of the pool")
+      .tags(tags)
+      .publishPercentileHistogram()
+      .register(meterRegistry);
+    this.acquireFailures = Counter.builder("library.db.pool.acquire.failures")
+      .description("Requests for a connection which failed")
+      .tags(tags)
+      .register(meterRegistry);
+    Gauge.builder("library.db.pool.active", activeConnections, AtomicInteger::get)
+      .description("Connections of the pool in use")
+      .tags(tags)
+      .register(meterRegistry);
+    Gauge.builder("library.db.pool.pending", pendingRequests, AtomicInteger::get)
+      .description("Requests waiting for a connection of the pool")
+      .tags(tags)
+      .register(meterRegistry);
+    this.statementExecutions = Counter.builder("library.db.statements.executions")
+      .description("Prepared queries and batches executed on the pool and its connections")
+      .tags(tags)
+      .register(meterRegistry);
+    this.statementPrepares = Counter.builder("library.db.statements.prepares")
+      .description("Statements prepared by the server for the prepared queries and batches")
+      .tags(tags)
+      .register(meterRegistry);
+    int maxSize = pgPoolOptions.getMaxSize();
+    Gauge.builder("library.db.pool.max", () -> maxSize)
+      .description("Maximum number of connections of the pool")
+      .tags(tags)
+      .register(meterRegistry);
+  }
+
+  /**
+   * @param sampleInterval the minimum interval between two samples of the statements prepared in the session of a
+   *                       connection, the statements are not sampled when it is 0
+   * @return a pool measuring the use of the given one
+   */
+  public static PgPool instrument(PgPool pgPool, MeterRegistry meterRegistry, String poolName,
+                                  PgPoolOptions pgPoolOptions, long sampleInterval, TimeUnit sampleIntervalUnit) {
+    return new MeteredPgPool(pgPool,
+      new PgPoolMetrics(meterRegistry, poolName, pgPoolOptions, sampleInterval, sampleIntervalUnit));
+  }
+
+  void acquireStarted() {
+    pendingRequests.incrementAndGet();
+  }
+
+  // the connection counts as active until it is released
+  void acquireEnded(long startTime, boolean succeeded) {
+    pendingRequests.decrementAndGet();
+    waitTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    if (succeeded) {
+      activeConnections.incrementAndGet();
+    } else {
+      acquireFailures.increment();
+    }
+  }
+
+  // gives the connection back to the pool, once the statements of its session are sampled when a sample is due
+  void release(PgConnection pgConnection) {
+    activeConnections.decrementAndGet();
+    int processId = pgConnection.processId();
+    if (!cachePreparedStatements || !isSampleDue(processId)) {
+      pgConnection.close();
+      return;
+    }
+    pgConnection.query(SQL_COUNT_PREPARED_STATEMENTS, ar -> {
+      if (ar.succeeded()) {
+        recordPreparedStatements(processId, ar.result().iterator().next().getLong(0));
+      }
+      pgConnection.close();
+    });
+  }
+
+  void statementExecuted() {
+    statementExecutions.increment();
+    if (!cachePreparedStatements) {
+      statementPrepares.increment();
+    }
+  }
+
+  private boolean isSampleDue(int processId) {
+    if (sampleIntervalNanos <= 0) {
+      return false;
+    }
+    long now = System.nanoTime();
+    synchronized (samples) {
+      PreparedStatementsSample sample = samples.get(processId);
+      if (sample == null) {
+        samples.put(processId, new PreparedStatementsSample(now));
+        return true;
+      }
+      if (now - sample.sampledAt < sampleIntervalNanos) {
+        return false;
+      }
+      // taken at once so that the session is not sampled again by a release meanwhile
+      sample.sampledAt = now;
+      return true;
+    }
+  }
+
+  private void recordPreparedStatements(int processId, long count) {
+    long prepared;
+    synchronized (samples) {
+      PreparedStatementsSample sample = samples.computeIfAbsent(processId,
+        id -> new PreparedStatementsSample(System.nanoTime()));
+      prepared = count - sample.preparedStatements;
+      sample.preparedStatements = count;
+    }
+    // the count only drops when statements are closed, the ones prepared again since are not seen then
+    if (prepared > 0) {
+      statementPrepares.increment(prepared);
+    }
+  }
+
+  private static final class PreparedStatementsSample {
+    private long sampledAt;
+    private long preparedStatements;
+
+    private PreparedStatementsSample(long sampledAt) {
+      this.sampledAt = sampledAt;
+    }
+  }
+}
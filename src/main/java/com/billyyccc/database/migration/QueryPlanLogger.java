@@ -0,0 +1,107 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.migration;
+
+import com.billyyccc.database.utils.BookQuery;
+import com.billyyccc.entity.BookFilter;
+import io.reactiverse.pgclient.PgPool;
+import io.reactiverse.pgclient.Row;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Log the plans of the canonical book queries, one of each filter shape {@code GET /books} is expected to serve from
+ * an index, so that a sequential scan shows up at startup rather than under load.
+ * <p>
+ * The plans are those of sample values, a small table is still scanned whatever its indexes.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class QueryPlanLogger {
+  private static final int PAGE_SIZE = 20;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(QueryPlanLogger.class);
+
+  private QueryPlanLogger() {
+  }
+
+  /**
+   * @return the canonical queries by name
+   */
+  public static Map<String, BookFilter> canonicalFilters() {
+    Map<String, BookFilter> filters = new LinkedHashMap<>();
+    filters.put("page", new BookFilter().setAfterId(0).setLimit(PAGE_SIZE));
+    filters.put("title", new BookFilter().setTitle("Effective java"));
+    filters.put("title prefix", new BookFilter().setTitlePrefix("Java").setLimit(PAGE_SIZE));
+    filters.put("category page", new BookFilter().setCategory("java").setAfterId(0).setLimit(PAGE_SIZE));
+    filters.put("categories", new BookFilter().setCategories(Arrays.asList("java", "design")).setLimit(PAGE_SIZE));
+    filters.put("publication date range", new BookFilter()
+      .setPublicationDateFrom("2003-01-01").setPublicationDateTo("2009-12-31").setLimit(PAGE_SIZE));
+    filters.put("categories and publication date range", new BookFilter()
+      .setCategories(Arrays.asList("java", "design"))
+      .setPublicationDateFrom("2003-01-01").setPublicationDateTo("2009-12-31"));
+    filters.put("search", new BookFilter().setSearch("java concurrency").setLimit(PAGE_SIZE));
+    return filters;
+  }
+
+  /**
+   * Explain the canonical queries one after the other, the result handler is called once they are all logged.
+   */
+  public static void logPlans(PgPool pgPool, Handler<AsyncResult<Void>> resultHandler) {
+    logPlans(pgPool, canonicalFilters().entrySet().iterator(), resultHandler);
+  }
+
+  private static void logPlans(PgPool pgPool, Iterator<Map.Entry<String, BookFilter>> filters,
+                               Handler<AsyncResult<Void>> resultHandler) {
+    if (!filters.hasNext()) {
+      resultHandler.handle(Future.succeededFuture());
+      return;
+    }
+    Map.Entry<String, BookFilter> filter = filters.next();
+    String statement = BookQuery.statementOf(filter.getValue());
+    pgPool.preparedQuery("EXPLAIN " + statement, BookQuery.paramsOf(filter.getValue()), ar -> {
+      if (ar.failed()) {
+        resultHandler.handle(Future.failedFuture(ar.cause()));
+        return;
+      }
+      StringBuilder plan = new StringBuilder("Plan of the ").append(filter.getKey()).append(" query ")
+        .append(statement);
+      for (Row row : ar.result()) {
+        plan.append("\n  ").append(row.getString(0));
+      }
+      LOGGER.info(plan);
+      logPlans(pgPool, filters, resultHandler);
+    });
+  }
+}
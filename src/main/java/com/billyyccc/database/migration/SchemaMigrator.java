@@ -0,0 +1,316 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.migration;
+
+import io.reactiverse.pgclient.PgClient;
+import io.reactiverse.pgclient.PgConnectOptions;
+import io.reactiverse.pgclient.PgConnection;
+import io.reactiverse.pgclient.PgTransaction;
+import io.reactiverse.pgclient.Row;
+import io.reactiverse.pgclient.Tuple;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Apply the versioned migrations of the schema which have not been applied yet, in the order of their versions.
+ * The applied versions are recorded in the {@code schema_version} table.
+ * <p>
+ * The nodes starting together are serialized by a session advisory lock of a dedicated connection. The lock is polled
+ * rather than waited for, as a backend waiting for it holds a snapshot which a concurrent index build would wait for.
+ * <p>
+ * A migration runs in one transaction unless it builds its indexes {@code CONCURRENTLY}, which is not allowed in a
+ * transaction, then its statements run one at a time and have to be safe to run again after a failure.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class SchemaMigrator {
+  public static final List<Migration> MIGRATIONS = Arrays.asList(
+    new Migration(1, "book filter indexes", "database/migration/V1__book_filter_indexes.sql"),
+    new Migration(2, "book title search", "database/migration/V2__book_title_search.sql"),
+    new Migration(3, "book change notifications", "database/migration/V3__book_change_notifications.sql"));
+
+  // any key will do as long as nothing else of the database takes the same advisory lock
+  private static final long MIGRATION_LOCK_KEY = 0x6C69627261727931L;
+  private static final long LOCK_RETRY_DELAY_MILLIS = 500;
+
+  private static final String SQL_TRY_LOCK = "SELECT pg_try_advisory_lock($1)";
+  private static final String SQL_UNLOCK = "SELECT pg_advisory_unlock($1)";
+  private static final String SQL_CREATE_SCHEMA_VERSION_TABLE = "CREATE TABLE IF NOT EXISTS schema_version (" +
+    "version INT4 NOT NULL PRIMARY KEY, description VARCHAR(200) NOT NULL, " +
+    "installed_on TIMESTAMPTZ NOT NULL DEFAULT now(), execution_millis INT8 NOT NULL)";
+  private static final String SQL_FIND_APPLIED_VERSIONS = "SELECT version FROM schema_version";
+  private static final String SQL_ADD_APPLIED_VERSION =
+    "INSERT INTO schema_version (version, description, execution_millis) VALUES ($1, $2, $3)";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SchemaMigrator.class);
+
+  private final Vertx vertx;
+  private final PgConnectOptions pgConnectOptions;
+  private final List<Migration> migrations;
+
+  public SchemaMigrator(Vertx vertx, PgConnectOptions pgConnectOptions) {
+    this(vertx, pgConnectOptions, MIGRATIONS);
+  }
+
+  public SchemaMigrator(Vertx vertx, PgConnectOptions pgConnectOptions, List<Migration> migrations) {
+    this.vertx = vertx;
+    this.pgConnectOptions = pgConnectOptions;
+    this.migrations = migrations;
+  }
+
+  /**
+   * Migrate the schema, the result is the number of migrations applied by this call.
+   */
+  public void migrate(Handler<AsyncResult<Integer>> resultHandler) {
+    PgClient.connect(vertx, pgConnectOptions, ar -> {
+      if (ar.failed()) {
+        resultHandler.handle(Future.failedFuture(ar.cause()));
+        return;
+      }
+      PgConnection pgConnection = ar.result();
+      // closing the dedicated connection ends its session, which releases the lock whatever happened
+      Handler<AsyncResult<Integer>> releasingHandler = migrateResult -> pgConnection
+        .preparedQuery(SQL_UNLOCK, Tuple.of(MIGRATION_LOCK_KEY), unlockResult -> {
+          pgConnection.close();
+          resultHandler.handle(migrateResult);
+        });
+      lock(pgConnection, false, lockResult -> {
+        if (lockResult.failed()) {
+          pgConnection.close();
+          resultHandler.handle(Future.failedFuture(lockResult.cause()));
+          return;
+        }
+        applyPendingMigrations(pgConnection, releasingHandler);
+      });
+    });
+  }
+
+  private void lock(PgConnection pgConnection, boolean waiting, Handler<AsyncResult<Void>> resultHandler) {
+    pgConnection.preparedQuery(SQL_TRY_LOCK, Tuple.of(MIGRATION_LOCK_KEY), ar -> {
+      if (ar.failed()) {
+        resultHandler.handle(Future.failedFuture(ar.cause()));
+      } else if (ar.result().iterator().next().getBoolean(0)) {
+        resultHandler.handle(Future.succeededFuture());
+      } else {
+        if (!waiting) {
+          LOGGER.info("Waiting for the schema to be migrated by another node");
+        }
+        vertx.setTimer(LOCK_RETRY_DELAY_MILLIS, timerId -> lock(pgConnection, true, resultHandler));
+      }
+    });
+  }
+
+  // the applied versions are read once the lock is held, a node which waited finds the work done
+  private void applyPendingMigrations(PgConnection pgConnection, Handler<AsyncResult<Integer>> resultHandler) {
+    pgConnection.query(SQL_CREATE_SCHEMA_VERSION_TABLE, createResult -> {
+      if (createResult.failed()) {
+        resultHandler.handle(Future.failedFuture(createResult.cause()));
+        return;
+      }
+      pgConnection.query(SQL_FIND_APPLIED_VERSIONS, findResult -> {
+        if (findResult.failed()) {
+          resultHandler.handle(Future.failedFuture(findResult.cause()));
+          return;
+        }
+        Set<Integer> appliedVersions = new HashSet<>();
+        for (Row row : findResult.result()) {
+          appliedVersions.add(row.getInteger(0));
+        }
+        List<Migration> pendingMigrations = new ArrayList<>();
+        for (Migration migration : migrations) {
+          if (!appliedVersions.contains(migration.getVersion())) {
+            pendingMigrations.add(migration);
+          }
+        }
+        pendingMigrations.sort((m1, m2) -> Integer.compare(m1.getVersion(), m2.getVersion()));
+        applyMigrations(pgConnection, pendingMigrations.iterator(), 0, resultHandler);
+      });
+    });
+  }
+
+  private void applyMigrations(PgConnection pgConnection, Iterator<Migration> pendingMigrations, int appliedCount,
+                               Handler<AsyncResult<Integer>> resultHandler) {
+    if (!pendingMigrations.hasNext()) {
+      resultHandler.handle(Future.succeededFuture(appliedCount));
+      return;
+    }
+    Migration migration = pendingMigrations.next();
+    vertx.fileSystem().readFile(migration.getResource(), readResult -> {
+      if (readResult.failed()) {
+        resultHandler.handle(Future.failedFuture(readResult.cause()));
+        return;
+      }
+      String sql = readResult.result().toString("UTF-8");
+      List<String> statements = statementsOf(sql);
+      long startTime = System.nanoTime();
+      Handler<AsyncResult<Void>> appliedHandler = ar -> {
+        if (ar.failed()) {
+          LOGGER.error("Failed to apply the migration " + migration, ar.cause());
+          resultHandler.handle(Future.failedFuture(ar.cause()));
+          return;
+        }
+        LOGGER.info("Applied the migration " + migration + " in " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+        applyMigrations(pgConnection, pendingMigrations, appliedCount + 1, resultHandler);
+      };
+      if (isConcurrent(sql)) {
+        applyStatements(pgConnection, statements.iterator(),
+          recordVersionOnSuccess(pgConnection, migration, startTime, appliedHandler));
+      } else {
+        applyInTransaction(pgConnection, migration, statements, startTime, appliedHandler);
+      }
+    });
+  }
+
+  private void applyInTransaction(PgConnection pgConnection, Migration migration, List<String> statements,
+                                  long startTime, Handler<AsyncResult<Void>> resultHandler) {
+    PgTransaction pgTransaction = pgConnection.begin();
+    Handler<AsyncResult<Void>> completionHandler = ar -> {
+      if (ar.failed()) {
+        pgTransaction.rollback(rollbackResult -> resultHandler.handle(ar));
+      } else {
+        pgTransaction.commit(resultHandler);
+      }
+    };
+    applyStatements(pgTransaction, statements.iterator(),
+      recordVersionOnSuccess(pgTransaction, migration, startTime, completionHandler));
+  }
+
+  private Handler<AsyncResult<Void>> recordVersionOnSuccess(PgClient pgClient, Migration migration, long startTime,
+                                                            Handler<AsyncResult<Void>> resultHandler) {
+    return ar -> {
+      if (ar.failed()) {
+        resultHandler.handle(ar);
+        return;
+      }
+      Tuple params = Tuple.of(migration.getVersion(), migration.getDescription(), (System.nanoTime() - startTime) / 1_000_000);
+      pgClient.preparedQuery(SQL_ADD_APPLIED_VERSION, params, insertResult -> resultHandler.handle(
+        insertResult.succeeded() ? Future.succeededFuture() : Future.failedFuture(insertResult.cause())));
+    };
+  }
+
+  private void applyStatements(PgClient pgClient, Iterator<String> statements, Handler<AsyncResult<Void>> resultHandler) {
+    if (!statements.hasNext()) {
+      resultHandler.handle(Future.succeededFuture());
+      return;
+    }
+    pgClient.query(statements.next(), ar -> {
+      if (ar.succeeded()) {
+        applyStatements(pgClient, statements, resultHandler);
+      } else {
+        resultHandler.handle(Future.failedFuture(ar.cause()));
+      }
+    });
+  }
+
+  static boolean isConcurrent(String sql) {
+    for (String statement : statementsOf(sql)) {
+      if (statement.toUpperCase().contains(" CONCURRENTLY ")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Split a script into its statements, a statement ends with a semicolon at the end of a line
+   * which is not in a dollar quoted body. The comment lines are left out.
+   */
+  static List<String> statementsOf(String sql) {
+    List<String> statements = new ArrayList<>();
+    StringBuilder statement = new StringBuilder();
+    boolean dollarQuoted = false;
+    for (String line : sql.split("\r?\n")) {
+      String trimmedLine = line.trim();
+      if (!dollarQuoted && (trimmedLine.isEmpty() || trimmedLine.startsWith("--"))) {
+        continue;
+      }
+      if (statement.length() > 0) {
+        statement.append('\n');
+      }
+      statement.append(line);
+      // an odd number of $$ opens or closes a body
+      int dollarQuotes = 0;
+      for (int i = line.indexOf("$$"); i >= 0; i = line.indexOf("$$", i + 2)) {
+        dollarQuotes++;
+      }
+      if (dollarQuotes % 2 == 1) {
+        dollarQuoted = !dollarQuoted;
+      }
+      if (!dollarQuoted && trimmedLine.endsWith(";")) {
+        statement.setLength(statement.lastIndexOf(";"));
+        statements.add(statement.toString().trim());
+        statement.setLength(0);
+      }
+    }
+    if (statement.toString().trim().length() > 0) {
+      statements.add(statement.toString().trim());
+    }
+    return statements;
+  }
+
+  /**
+   * A versioned migration, a script of the classpath.
+   */
+  public static class Migration {
+    private final int version;
+    private final String description;
+    private final String resource;
+
+    public Migration(int version, String description, String resource) {
+      this.version = version;
+      this.description = description;
+      this.resource = resource;
+    }
+
+    public int getVersion() {
+      return version;
+    }
+
+    public String getDescription() {
+      return description;
+    }
+
+    public String getResource() {
+      return resource;
+    }
+
+    @Override
+    public String toString() {
+      return "V" + version + " (" + description + ")";
+    }
+  }
+}
@@ -0,0 +1,266 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.utils;
+
+import com.billyyccc.entity.BookFilter;
+import io.reactiverse.pgclient.Tuple;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The query of the books matching a {@link BookFilter}.
+ * <p>
+ * The shape of a filter is the bitmask of the conditions it has, each shape resolves to an interned statement
+ * which is built the first time the shape is seen, so the same text is sent for a shape and the statement cache of
+ * the connections is hit. Finding the statement of a filter and binding its parameters allocate nothing but the
+ * tuple and the values which have to be converted.
+ * <p>
+ * The conditions are equalities on the title, the category and the publication date, a prefix of the title, a list
+ * of categories, a range of publication dates, both bounds included, and a full-text search of the titles.
+ * The books found by a search are ranked by relevance unless a sort is asked for, the ranked pages are addressed
+ * by an offset as the rank is no key. Any other page is ordered by id, an offset is only stable over an order.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public final class BookQuery {
+  public static final String SQL_FIND_BOOKS = "SELECT id, title, category, publication_date FROM book WHERE TRUE";
+
+  private static final String SQL_CONDITION_BY_TITLE = " AND title = $";
+  private static final String SQL_CONDITION_BY_TITLE_PREFIX = " AND title LIKE $";
+  // served by the GIN index of the title_tsv column, which is generated with the same text search configuration
+  private static final String SQL_CONDITION_BY_SEARCH = " AND title_tsv @@ websearch_to_tsquery('english', $";
+  private static final String SQL_CONDITION_BY_CATEGORY = " AND category = $";
+  private static final String SQL_CONDITION_BY_CATEGORIES = " AND category = ANY($";
+  private static final String SQL_CONDITION_BY_PUBLICATION_DATE = " AND publication_date = $";
+  private static final String SQL_CONDITION_FROM_PUBLICATION_DATE = " AND publication_date >= $";
+  private static final String SQL_CONDITION_TO_PUBLICATION_DATE = " AND publication_date <= $";
+  private static final String SQL_CONDITION_AFTER_ID = " AND id > $";
+  private static final String SQL_CONDITION_BEFORE_ID = " AND id < $";
+  private static final String SQL_ORDER_BY_ID_ASC = " ORDER BY id ASC";
+  private static final String SQL_ORDER_BY_ID_DESC = " ORDER BY id DESC";
+  private static final String SQL_ORDER_BY_RANK = " ORDER BY ts_rank(title_tsv, websearch_to_tsquery('english', $";
+  private static final String SQL_ORDER_BY_RANK_END = ")) DESC, id ASC";
+  private static final String SQL_LIMIT = " LIMIT $";
+  private static final String SQL_OFFSET = " OFFSET $";
+
+  private static final int BY_TITLE = 1;
+  private static final int BY_TITLE_PREFIX = 1 << 1;
+  private static final int BY_CATEGORY = 1 << 2;
+  private static final int BY_CATEGORIES = 1 << 3;
+  private static final int BY_PUBLICATION_DATE = 1 << 4;
+  private static final int FROM_PUBLICATION_DATE = 1 << 5;
+  private static final int TO_PUBLICATION_DATE = 1 << 6;
+  private static final int AFTER_ID = 1 << 7;
+  private static final int ORDERED = 1 << 8;
+  private static final int DESCENDING = 1 << 9;
+  private static final int LIMITED = 1 << 10;
+  private static final int BY_SEARCH = 1 << 11;
+  private static final int RANKED = 1 << 12;
+  private static final int OFFSET = 1 << 13;
+  private static final int SHAPE_COUNT = 1 << 14;
+
+  private static final AtomicReferenceArray<String> STATEMENTS = new AtomicReferenceArray<>(SHAPE_COUNT);
+
+  private BookQuery() {
+    // No instance of this class allowed
+  }
+
+  /**
+   * @return the statement of the shape of the filter
+   */
+  public static String statementOf(BookFilter filter) {
+    return statementOf(shapeOf(filter));
+  }
+
+  /**
+   * @return the parameters of the filter, in the order the statement of its shape numbers them
+   * @throws java.time.format.DateTimeParseException if a publication date is not an ISO date
+   */
+  public static Tuple paramsOf(BookFilter filter) {
+    Tuple params = Tuple.tuple();
+    if (filter.getTitle() != null) {
+      params.addString(filter.getTitle());
+    }
+    if (filter.getTitlePrefix() != null) {
+      params.addString(likePatternOf(filter.getTitlePrefix()));
+    }
+    if (filter.getSearch() != null) {
+      params.addString(filter.getSearch());
+    }
+    if (filter.getCategory() != null) {
+      params.addString(filter.getCategory());
+    }
+    if (hasCategories(filter)) {
+      List<String> categories = filter.getCategories();
+      params.addStringArray(categories.toArray(new String[categories.size()]));
+    }
+    if (filter.getPublicationDate() != null) {
+      params.addLocalDate(LocalDate.parse(filter.getPublicationDate()));
+    }
+    if (filter.getPublicationDateFrom() != null) {
+      params.addLocalDate(LocalDate.parse(filter.getPublicationDateFrom()));
+    }
+    if (filter.getPublicationDateTo() != null) {
+      params.addLocalDate(LocalDate.parse(filter.getPublicationDateTo()));
+    }
+    if (filter.getAfterId() != null) {
+      params.addInteger(filter.getAfterId());
+    }
+    if (filter.getLimit() != null) {
+      params.addLong(filter.getLimit().longValue());
+    }
+    if (filter.getOffset() != null) {
+      params.addLong(filter.getOffset().longValue());
+    }
+    return params;
+  }
+
+  // a statement may be built twice by racing threads, both are the same interned text
+  static String statementOf(int shape) {
+    String statement = STATEMENTS.get(shape);
+    if (statement == null) {
+      statement = buildStatement(shape).intern();
+      STATEMENTS.set(shape, statement);
+    }
+    return statement;
+  }
+
+  static int shapeOf(BookFilter filter) {
+    int shape = 0;
+    if (filter.getTitle() != null) {
+      shape |= BY_TITLE;
+    }
+    if (filter.getTitlePrefix() != null) {
+      shape |= BY_TITLE_PREFIX;
+    }
+    if (filter.getSearch() != null) {
+      shape |= BY_SEARCH;
+    }
+    if (filter.getCategory() != null) {
+      shape |= BY_CATEGORY;
+    }
+    if (hasCategories(filter)) {
+      shape |= BY_CATEGORIES;
+    }
+    if (filter.getPublicationDate() != null) {
+      shape |= BY_PUBLICATION_DATE;
+    }
+    if (filter.getPublicationDateFrom() != null) {
+      shape |= FROM_PUBLICATION_DATE;
+    }
+    if (filter.getPublicationDateTo() != null) {
+      shape |= TO_PUBLICATION_DATE;
+    }
+    if (filter.getAfterId() != null) {
+      shape |= AFTER_ID;
+    }
+    if (filter.getLimit() != null) {
+      shape |= LIMITED;
+    }
+    if (filter.getOffset() != null) {
+      shape |= OFFSET;
+    }
+    if (filter.getSearch() != null && filter.getSort() == null) {
+      shape |= RANKED;
+    } else if (filter.getAfterId() != null || filter.getLimit() != null || filter.getOffset() != null
+      || filter.getSort() != null) {
+      shape |= ORDERED;
+      if (BookFilter.SORT_BY_ID_DESC.equals(filter.getSort())) {
+        shape |= DESCENDING;
+      }
+    }
+    return shape;
+  }
+
+  // the parameters are numbered in the order of the conditions, which paramsOf binds them in
+  private static String buildStatement(int shape) {
+    boolean descending = (shape & DESCENDING) != 0;
+    StringBuilder sql = new StringBuilder(SQL_FIND_BOOKS);
+    int count = 0;
+    if ((shape & BY_TITLE) != 0) {
+      sql.append(SQL_CONDITION_BY_TITLE).append(++count);
+    }
+    if ((shape & BY_TITLE_PREFIX) != 0) {
+      sql.append(SQL_CONDITION_BY_TITLE_PREFIX).append(++count);
+    }
+    int searchParam = 0;
+    if ((shape & BY_SEARCH) != 0) {
+      searchParam = ++count;
+      sql.append(SQL_CONDITION_BY_SEARCH).append(searchParam).append(')');
+    }
+    if ((shape & BY_CATEGORY) != 0) {
+      sql.append(SQL_CONDITION_BY_CATEGORY).append(++count);
+    }
+    if ((shape & BY_CATEGORIES) != 0) {
+      sql.append(SQL_CONDITION_BY_CATEGORIES).append(++count).append(')');
+    }
+    if ((shape & BY_PUBLICATION_DATE) != 0) {
+      sql.append(SQL_CONDITION_BY_PUBLICATION_DATE).append(++count);
+    }
+    if ((shape & FROM_PUBLICATION_DATE) != 0) {
+      sql.append(SQL_CONDITION_FROM_PUBLICATION_DATE).append(++count);
+    }
+    if ((shape & TO_PUBLICATION_DATE) != 0) {
+      sql.append(SQL_CONDITION_TO_PUBLICATION_DATE).append(++count);
+    }
+
+    // Keyset pagination on the primary key, the cost of a page does not grow with its depth
+    if ((shape & AFTER_ID) != 0) {
+      sql.append(descending ? SQL_CONDITION_BEFORE_ID : SQL_CONDITION_AFTER_ID).append(++count);
+    }
+    if ((shape & RANKED) != 0 && searchParam != 0) {
+      sql.append(SQL_ORDER_BY_RANK).append(searchParam).append(SQL_ORDER_BY_RANK_END);
+    } else if ((shape & ORDERED) != 0) {
+      sql.append(descending ? SQL_ORDER_BY_ID_DESC : SQL_ORDER_BY_ID_ASC);
+    }
+    if ((shape & LIMITED) != 0) {
+      sql.append(SQL_LIMIT).append(++count);
+    }
+    if ((shape & OFFSET) != 0) {
+      sql.append(SQL_OFFSET).append(++count);
+    }
+    return sql.toString();
+  }
+
+  private static boolean hasCategories(BookFilter filter) {
+    return filter.getCategories() != null && !filter.getCategories().isEmpty();
+  }
+
+  // the wildcards of LIKE in the prefix are matched literally, backslash being the default escape character
+  private static String likePatternOf(String prefix) {
+    StringBuilder pattern = new StringBuilder(prefix.length() + 2);
+    for (int i = 0; i < prefix.length(); i++) {
+      char c = prefix.charAt(i);
+      if (c == '%' || c == '_' || c == '\\') {
+        pattern.append('\\');
+      }
+      pattern.append(c);
+    }
+    return pattern.append('%').toString();
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.utils;
+
+import com.billyyccc.entity.codec.JsonBytes;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.reactiverse.pgclient.Row;
+import io.vertx.core.buffer.Buffer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.function.BiConsumer;
+import java.util.stream.Collector;
+
+/**
+ * The formats book rows can be streamed in, rows are written straight to bytes without building a JSON object first.
+ * <p>
+ * A stream is framed by {@link #prefix()} and {@link #suffix()}, the batches and the rows in a batch are separated
+ * by {@link #separator()}.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public enum BookRowFormat {
+  JSON("application/json; charset=utf-8", "[", ",", "]", BookRowFormat::writeJson),
+  NDJSON("application/x-ndjson; charset=utf-8", "", "", "", (out, row) -> {
+    writeJson(out, row);
+    out.writeByte('\n');
+  }),
+  CSV("text/csv; charset=utf-8", "id,title,category,publicationDate\n", "", "", BookRowFormat::writeCsv);
+
+  private static final byte[] JSON_ID = "{\"id\":".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] JSON_TITLE = ",\"title\":".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] JSON_CATEGORY = ",\"category\":".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] JSON_PUBLICATION_DATE = ",\"publicationDate\":".getBytes(StandardCharsets.US_ASCII);
+
+  private final String contentType;
+  private final Buffer prefix;
+  private final Buffer separator;
+  private final Buffer suffix;
+  private final BiConsumer<ByteBuf, Row> rowWriter;
+  private final Collector<Row, ?, Buffer> batchCollector;
+
+  BookRowFormat(String contentType, String prefix, String separator, String suffix, BiConsumer<ByteBuf, Row> rowWriter) {
+    this.contentType = contentType;
+    this.rowWriter = rowWriter;
+    this.prefix = Buffer.buffer(prefix);
+    this.separator = Buffer.buffer(separator);
+    this.suffix = Buffer.buffer(suffix);
+    this.batchCollector = RowCollectors.bufferCollector(rowWriter, this.separator);
+  }
+
+  public static BookRowFormat of(String name) {
+    return valueOf(name.toUpperCase());
+  }
+
+  public String contentType() {
+    return contentType;
+  }
+
+  public Buffer prefix() {
+    return prefix;
+  }
+
+  public Buffer separator() {
+    return separator;
+  }
+
+  public Buffer suffix() {
+    return suffix;
+  }
+
+  public Collector<Row, ?, Buffer> batchCollector() {
+    return batchCollector;
+  }
+
+  /**
+   * Write one row without any separator.
+   */
+  public void writeRow(ByteBuf out, Row row) {
+    rowWriter.accept(out, row);
+  }
+
+  private static void writeJson(ByteBuf out, Row row) {
+    out.writeBytes(JSON_ID);
+    JsonBytes.writeInt(out, row.getInteger("id"));
+    out.writeBytes(JSON_TITLE);
+    JsonBytes.writeString(out, row.getString("title"));
+    out.writeBytes(JSON_CATEGORY);
+    JsonBytes.writeString(out, row.getString("category"));
+    out.writeBytes(JSON_PUBLICATION_DATE);
+    JsonBytes.writeIsoDate(out, row.getLocalDate("publication_date"));
+    out.writeByte('}');
+  }
+
+  private static void writeCsv(ByteBuf out, Row row) {
+    JsonBytes.writeInt(out, row.getInteger("id"));
+    out.writeByte(',');
+    writeCsvField(out, row.getString("title"));
+    out.writeByte(',');
+    writeCsvField(out, row.getString("category"));
+    out.writeByte(',');
+    LocalDate publicationDate = row.getLocalDate("publication_date");
+    if (publicationDate != null) {
+      ByteBufUtil.writeAscii(out, publicationDate.toString());
+    }
+    out.writeByte('\n');
+  }
+
+  private static void writeCsvField(ByteBuf out, String value) {
+    if (value == null) {
+      return;
+    }
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+      ByteBufUtil.writeUtf8(out, value);
+    } else {
+      out.writeByte('"');
+      ByteBufUtil.writeUtf8(out, value.replace("\"", "\"\""));
+      out.writeByte('"');
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.utils;
+
+import io.reactiverse.pgclient.PgStream;
+import io.reactiverse.pgclient.Row;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+
+import java.util.stream.Collector;
+
+import static com.billyyccc.database.utils.RowStreamMessages.*;
+
+/**
+ * Send the rows of a {@link PgStream} to an event bus address in batches, see {@link RowStreamMessages}.
+ * Each batch is gathered by a collector and the result of the collector is the body of a message.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class EventBusRowSender {
+  private final EventBus eventBus;
+  private final String address;
+  private final int batchSize;
+  private final long sendTimeout;
+  private final Collector<Row, Object, ?> batchCollector;
+
+  private PgStream<Row> rowStream;
+  private Handler<AsyncResult<Void>> completionHandler;
+
+  private Object batch;
+  private int batchRowCount;
+  private boolean inFlight;
+  private boolean ended;
+  private boolean completed;
+
+  /**
+   * @param sendTimeout the milliseconds the receiver has to acknowledge a batch before the stream is closed
+   */
+  @SuppressWarnings("unchecked")
+  public EventBusRowSender(EventBus eventBus, String address, int batchSize, long sendTimeout,
+                           Collector<Row, ?, ?> batchCollector) {
+    this.eventBus = eventBus;
+    this.address = address;
+    this.batchSize = batchSize;
+    this.sendTimeout = sendTimeout;
+    this.batchCollector = (Collector<Row, Object, ?>) batchCollector;
+    this.batch = this.batchCollector.supplier().get();
+  }
+
+  /**
+   * Start sending the rows, the completion handler is called once the stream is terminated or cancelled by the receiver.
+   */
+  public void send(PgStream<Row> rowStream, Handler<AsyncResult<Void>> completionHandler) {
+    this.rowStream = rowStream;
+    this.completionHandler = completionHandler;
+    rowStream.exceptionHandler(this::fail);
+    rowStream.endHandler(v -> {
+      ended = true;
+      if (!inFlight) {
+        flush();
+      }
+    });
+    rowStream.handler(this::handleRow);
+  }
+
+  private void handleRow(Row row) {
+    batchCollector.accumulator().accept(batch, row);
+    batchRowCount++;
+    if (batchRowCount >= batchSize && !inFlight) {
+      rowStream.pause();
+      sendBatch();
+    }
+  }
+
+  private void sendBatch() {
+    Object rows = batchCollector.finisher().apply(batch);
+    batch = batchCollector.supplier().get();
+    batchRowCount = 0;
+    inFlight = true;
+    eventBus.send(address, rows, actionOf(ACTION_ROWS).setSendTimeout(sendTimeout), reply -> {
+      inFlight = false;
+      if (reply.failed()) {
+        // the receiver is gone or too slow, there is nobody to send the remaining rows to
+        rowStream.close();
+        complete(Future.failedFuture(reply.cause()));
+      } else if (ended) {
+        flush();
+      } else {
+        rowStream.resume();
+      }
+    });
+  }
+
+  private void flush() {
+    if (batchRowCount > 0) {
+      sendBatch();
+    } else {
+      eventBus.send(address, null, actionOf(ACTION_END));
+      complete(Future.succeededFuture());
+    }
+  }
+
+  private void fail(Throwable throwable) {
+    if (completed) {
+      return;
+    }
+    eventBus.send(address, throwable.getMessage(), actionOf(ACTION_ERROR));
+    complete(Future.failedFuture(throwable));
+  }
+
+  private void complete(AsyncResult<Void> result) {
+    if (!completed) {
+      completed = true;
+      completionHandler.handle(result);
+    }
+  }
+
+  private static DeliveryOptions actionOf(String action) {
+    return new DeliveryOptions().addHeader(HEADER_ACTION, action);
+  }
+}
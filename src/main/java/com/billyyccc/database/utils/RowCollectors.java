@@ -1,10 +1,14 @@
 package com.billyyccc.database.utils;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.reactiverse.pgclient.Row;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonArray;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collector;
@@ -57,4 +61,30 @@ public final class RowCollectors {
       }, Collector.Characteristics.IDENTITY_FINISH);
   }
 
+  /**
+   * Build a collector for writing rows straight into a {@link io.vertx.core.buffer.Buffer}, the rows are written into
+   * the underlying {@link ByteBuf} which is only wrapped once they have all been written.
+   *
+   * @param rowWriter    writer to append a row to the buffer
+   * @param rowSeparator bytes put between two rows
+   * @return the collector
+   */
+  public static Collector<Row, ?, Buffer> bufferCollector(BiConsumer<ByteBuf, Row> rowWriter, Buffer rowSeparator) {
+    byte[] separator = rowSeparator.getBytes();
+    return Collector.<Row, ByteBuf, Buffer>of(Unpooled::buffer,
+      (byteBuf, row) -> {
+        if (byteBuf.isReadable()) {
+          byteBuf.writeBytes(separator);
+        }
+        rowWriter.accept(byteBuf, row);
+      },
+      (left, right) -> {
+        if (left.isReadable() && right.isReadable()) {
+          left.writeBytes(separator);
+        }
+        return left.writeBytes(right);
+      },
+      Buffer::buffer);
+  }
+
 }
@@ -0,0 +1,51 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.utils;
+
+/**
+ * The headers of the messages which stream the rows of a query to an event bus address.
+ * <p>
+ * The database side sends one message per batch of rows and waits for the reply before it fetches the next batch,
+ * so a slow consumer holds back the cursor instead of piling rows up in memory.
+ * The stream is terminated by exactly one {@link #ACTION_END} or {@link #ACTION_ERROR} message.
+ * <p>
+ * Rows flow the other way round when the database side loads them, it sends a {@link #ACTION_PULL} message whenever it
+ * is ready for the next batch and the reply carries the batch, an empty batch tells the end of the input.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public final class RowStreamMessages {
+  public static final String HEADER_ACTION = "action";
+
+  public static final String ACTION_ROWS = "rows";
+  public static final String ACTION_END = "end";
+  public static final String ACTION_ERROR = "error";
+  public static final String ACTION_PULL = "pull";
+
+  private RowStreamMessages() {
+    // No instance of this class allowed
+  }
+}
@@ -24,6 +24,7 @@
 
 package com.billyyccc.entity;
 
+import com.billyyccc.entity.codec.BookJsonWriter;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import io.vertx.codegen.annotations.DataObject;
@@ -124,8 +125,7 @@ public class Book {
 
   @Override
   public int hashCode() {
-    int result = super.hashCode();
-    result = 31 * result + id;
+    int result = id;
     result = 31 * result + (title != null ? title.hashCode() : 0);
     result = 31 * result + (category != null ? category.hashCode() : 0);
     result = 31 * result + (publicationDate != null ? publicationDate.hashCode() : 0);
@@ -134,11 +134,6 @@ public class Book {
 
   @Override
   public String toString() {
-    return "{\n" +
-      "    \"id\": " + this.id + ",\n" +
-      "    \"title\": \"" + this.title + "\",\n" +
-      "    \"category\": \"" + this.category + "\",\n" +
-      "    \"publicationDate\": \"" + this.publicationDate + "\"\n" +
-      "}";
+    return BookJsonWriter.encodeToString(this);
   }
 }
@@ -0,0 +1,243 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.entity;
+
+import io.vertx.codegen.annotations.DataObject;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The conditions and the page to look up books with.
+ * <p>
+ * Pages are addressed with a keyset on the id, {@code afterId} is the id of the last book of the previous page.
+ * The publication dates are ISO dates, the range from {@code publicationDateFrom} to {@code publicationDateTo}
+ * includes both bounds. {@code search} is a full-text search of the titles, its results are ranked by relevance
+ * unless a sort is given and their pages are addressed with {@code offset}. {@code writtenAt} is the time in milliseconds
+ * since the epoch of the last write of the caller, the books read then reflect that write.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+@DataObject(generateConverter = true)
+public class BookFilter {
+  public static final String SORT_BY_ID_ASC = "id";
+  public static final String SORT_BY_ID_DESC = "-id";
+
+  private String title;
+  private String titlePrefix;
+  private String search;
+  private String category;
+  private List<String> categories;
+  private String publicationDate;
+  private String publicationDateFrom;
+  private String publicationDateTo;
+  private Integer afterId;
+  private Integer limit;
+  private Integer offset;
+  private String sort;
+  private Long writtenAt;
+
+  public BookFilter() {
+  }
+
+  public BookFilter(BookFilter other) {
+    this.title = other.title;
+    this.titlePrefix = other.titlePrefix;
+    this.search = other.search;
+    this.category = other.category;
+    this.categories = other.categories == null ? null : new ArrayList<>(other.categories);
+    this.publicationDate = other.publicationDate;
+    this.publicationDateFrom = other.publicationDateFrom;
+    this.publicationDateTo = other.publicationDateTo;
+    this.afterId = other.afterId;
+    this.limit = other.limit;
+    this.offset = other.offset;
+    this.sort = other.sort;
+    this.writtenAt = other.writtenAt;
+  }
+
+  public BookFilter(JsonObject jsonObject) {
+    BookFilterConverter.fromJson(jsonObject, this);
+  }
+
+  public JsonObject toJson() {
+    JsonObject jsonObject = new JsonObject();
+    BookFilterConverter.toJson(this, jsonObject);
+    return jsonObject;
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  public BookFilter setTitle(String title) {
+    this.title = title;
+    return this;
+  }
+
+  public String getTitlePrefix() {
+    return titlePrefix;
+  }
+
+  public BookFilter setTitlePrefix(String titlePrefix) {
+    this.titlePrefix = titlePrefix;
+    return this;
+  }
+
+  public String getSearch() {
+    return search;
+  }
+
+  public BookFilter setSearch(String search) {
+    this.search = search;
+    return this;
+  }
+
+  public String getCategory() {
+    return category;
+  }
+
+  public BookFilter setCategory(String category) {
+    this.category = category;
+    return this;
+  }
+
+  public List<String> getCategories() {
+    return categories;
+  }
+
+  public BookFilter setCategories(List<String> categories) {
+    this.categories = categories;
+    return this;
+  }
+
+  public String getPublicationDate() {
+    return publicationDate;
+  }
+
+  public BookFilter setPublicationDate(String publicationDate) {
+    this.publicationDate = publicationDate;
+    return this;
+  }
+
+  public String getPublicationDateFrom() {
+    return publicationDateFrom;
+  }
+
+  public BookFilter setPublicationDateFrom(String publicationDateFrom) {
+    this.publicationDateFrom = publicationDateFrom;
+    return this;
+  }
+
+  public String getPublicationDateTo() {
+    return publicationDateTo;
+  }
+
+  public BookFilter setPublicationDateTo(String publicationDateTo) {
+    this.publicationDateTo = publicationDateTo;
+    return this;
+  }
+
+  public Integer getAfterId() {
+    return afterId;
+  }
+
+  public BookFilter setAfterId(Integer afterId) {
+    this.afterId = afterId;
+    return this;
+  }
+
+  public Integer getLimit() {
+    return limit;
+  }
+
+  public BookFilter setLimit(Integer limit) {
+    this.limit = limit;
+    return this;
+  }
+
+  public Integer getOffset() {
+    return offset;
+  }
+
+  public BookFilter setOffset(Integer offset) {
+    this.offset = offset;
+    return this;
+  }
+
+  public String getSort() {
+    return sort;
+  }
+
+  public BookFilter setSort(String sort) {
+    this.sort = sort;
+    return this;
+  }
+
+  public Long getWrittenAt() {
+    return writtenAt;
+  }
+
+  public BookFilter setWrittenAt(Long writtenAt) {
+    this.writtenAt = writtenAt;
+    return this;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) return true;
+    if (obj == null || getClass() != obj.getClass()) return false;
+
+    BookFilter filter = (BookFilter) obj;
+
+    return Objects.equals(title, filter.title)
+      && Objects.equals(titlePrefix, filter.titlePrefix)
+      && Objects.equals(search, filter.search)
+      && Objects.equals(category, filter.category)
+      && Objects.equals(categories, filter.categories)
+      && Objects.equals(publicationDate, filter.publicationDate)
+      && Objects.equals(publicationDateFrom, filter.publicationDateFrom)
+      && Objects.equals(publicationDateTo, filter.publicationDateTo)
+      && Objects.equals(afterId, filter.afterId)
+      && Objects.equals(limit, filter.limit)
+      && Objects.equals(offset, filter.offset)
+      && Objects.equals(sort, filter.sort)
+      && Objects.equals(writtenAt, filter.writtenAt);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(title, titlePrefix, search, category, categories, publicationDate, publicationDateFrom,
+      publicationDateTo, afterId, limit, offset, sort, writtenAt);
+  }
+
+  @Override
+  public String toString() {
+    return toJson().encode();
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.entity;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A batch of books sent over the event bus as it is, see {@link com.billyyccc.entity.codec.BookListMessageCodec}.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class BookList implements Iterable<Book> {
+  private final List<Book> books;
+
+  public BookList() {
+    this(new ArrayList<>());
+  }
+
+  public BookList(int initialCapacity) {
+    this(new ArrayList<>(initialCapacity));
+  }
+
+  public BookList(List<Book> books) {
+    this.books = books;
+  }
+
+  public BookList add(Book book) {
+    books.add(book);
+    return this;
+  }
+
+  public Book get(int index) {
+    return books.get(index);
+  }
+
+  public int size() {
+    return books.size();
+  }
+
+  public boolean isEmpty() {
+    return books.isEmpty();
+  }
+
+  public List<Book> getBooks() {
+    return books;
+  }
+
+  @Override
+  public Iterator<Book> iterator() {
+    return books.iterator();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) return true;
+    if (obj == null || getClass() != obj.getClass()) return false;
+
+    return books.equals(((BookList) obj).books);
+  }
+
+  @Override
+  public int hashCode() {
+    return books.hashCode();
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.entity;
+
+import io.vertx.codegen.annotations.DataObject;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * A page of books already encoded as a JSON array, so that it is written to a response without being mapped
+ * to JSON objects and encoded again.
+ * <p>
+ * The page keeps its number of books and the id of its last book, which is all a response needs to know of it.
+ * A page bound locally is handed over as it is, on the event bus the encoded books are sent as binary.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+@DataObject
+public class BookPage {
+  private static final String JSON_BOOKS = "books";
+  private static final String JSON_SIZE = "size";
+  private static final String JSON_LAST_ID = "lastId";
+
+  private final Buffer books;
+  private final int size;
+  private final Integer lastId;
+
+  public BookPage(Buffer books, int size, Integer lastId) {
+    this.books = books;
+    this.size = size;
+    this.lastId = lastId;
+  }
+
+  public BookPage(JsonObject jsonObject) {
+    this(Buffer.buffer(jsonObject.getBinary(JSON_BOOKS)), jsonObject.getInteger(JSON_SIZE),
+      jsonObject.getInteger(JSON_LAST_ID));
+  }
+
+  /**
+   * Encode a page of books mapped to JSON objects.
+   */
+  public static BookPage of(JsonArray books) {
+    Integer lastId = books.isEmpty() ? null : books.getJsonObject(books.size() - 1).getInteger("id");
+    return new BookPage(books.toBuffer(), books.size(), lastId);
+  }
+
+  public JsonObject toJson() {
+    return new JsonObject()
+      .put(JSON_BOOKS, books.getBytes())
+      .put(JSON_SIZE, size)
+      .put(JSON_LAST_ID, lastId);
+  }
+
+  /**
+   * @return the books as a JSON array
+   */
+  public Buffer getBooks() {
+    return books;
+  }
+
+  /**
+   * @return the only book of the page as a JSON object, the page must hold one book
+   */
+  public Buffer getSingleBook() {
+    // the array is written without any whitespace around its only element
+    return books.slice(1, books.length() - 1);
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public Integer getLastId() {
+    return lastId;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public String toString() {
+    return books.toString();
+  }
+}
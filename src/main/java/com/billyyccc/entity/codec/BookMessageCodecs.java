@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.entity.codec;
+
+import com.billyyccc.entity.BookList;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.MessageCodec;
+
+/**
+ * Register the message codecs of the book entities, so that they can be sent over the event bus as they are.
+ * <p>
+ * Only the batches of books pulled by a bulk load are sent as a {@link BookList}. The calls of the service proxies
+ * keep their JSON messages, since the generated proxies put the arguments of a call in one {@code JsonObject}; they
+ * skip the event bus altogether when the database service is local, see {@code library.db.local}.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public final class BookMessageCodecs {
+
+  private BookMessageCodecs() {
+    // No instance of this class allowed
+  }
+
+  /**
+   * Register the codecs as the default ones of their types, every verticle using them may call this.
+   */
+  public static void registerDefaultCodecs(EventBus eventBus) {
+    registerDefaultCodec(eventBus, BookList.class, new BookListMessageCodec());
+  }
+
+  private static <T> void registerDefaultCodec(EventBus eventBus, Class<T> type, MessageCodec<T, ?> codec) {
+    try {
+      eventBus.registerDefaultCodec(type, codec);
+    } catch (IllegalStateException e) {
+      // registered already by another verticle of this Vert.x instance
+    }
+  }
+}
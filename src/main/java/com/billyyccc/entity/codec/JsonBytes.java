@@ -0,0 +1,168 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.entity.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+
+import java.time.LocalDate;
+
+/**
+ * Write JSON values straight into a Netty {@link ByteBuf}, the strings are encoded to UTF-8 in place and the numbers
+ * and the dates are written digit by digit, so that no intermediate string or byte array is allocated.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public final class JsonBytes {
+  private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+  private static final byte[] HEX_DIGITS = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+  // the ASCII of the two digits of 0 to 99, so that a day, a month or a half of a year takes a single lookup
+  private static final byte[] DIGIT_PAIRS = new byte[200];
+
+  static {
+    for (int i = 0; i < 100; i++) {
+      DIGIT_PAIRS[2 * i] = (byte) ('0' + i / 10);
+      DIGIT_PAIRS[2 * i + 1] = (byte) ('0' + i % 10);
+    }
+  }
+
+  private JsonBytes() {
+    // No instance of this class allowed
+  }
+
+  public static void writeNull(ByteBuf out) {
+    out.writeBytes(NULL);
+  }
+
+  /**
+   * Write a JSON string, quoted and escaped, or {@code null}.
+   */
+  public static void writeString(ByteBuf out, String value) {
+    if (value == null) {
+      writeNull(out);
+      return;
+    }
+    out.writeByte('"');
+    int length = value.length();
+    int start = 0;
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c >= 0x20 && c != '"' && c != '\\') {
+        continue;
+      }
+      // the characters which need no escape are written as one run
+      if (i > start) {
+        ByteBufUtil.writeUtf8(out, value.subSequence(start, i));
+      }
+      writeEscaped(out, c);
+      start = i + 1;
+    }
+    if (start == 0) {
+      ByteBufUtil.writeUtf8(out, value);
+    } else if (start < length) {
+      ByteBufUtil.writeUtf8(out, value.subSequence(start, length));
+    }
+    out.writeByte('"');
+  }
+
+  private static void writeEscaped(ByteBuf out, char c) {
+    out.writeByte('\\');
+    switch (c) {
+      case '"':
+        out.writeByte('"');
+        break;
+      case '\\':
+        out.writeByte('\\');
+        break;
+      case '\n':
+        out.writeByte('n');
+        break;
+      case '\r':
+        out.writeByte('r');
+        break;
+      case '\t':
+        out.writeByte('t');
+        break;
+      case '\b':
+        out.writeByte('b');
+        break;
+      case '\f':
+        out.writeByte('f');
+        break;
+      default:
+        out.writeByte('u').writeByte('0').writeByte('0')
+          .writeByte(HEX_DIGITS[c >> 4]).writeByte(HEX_DIGITS[c & 0xF]);
+    }
+  }
+
+  public static void writeInt(ByteBuf out, int value) {
+    long remaining = value;
+    if (remaining < 0) {
+      out.writeByte('-');
+      remaining = -remaining;
+    }
+    int digitCount = 1;
+    for (long bound = 10; bound <= remaining; bound *= 10) {
+      digitCount++;
+    }
+    out.ensureWritable(digitCount);
+    int end = out.writerIndex() + digitCount;
+    for (int index = end - 1; index >= out.writerIndex(); index--) {
+      out.setByte(index, (int) ('0' + remaining % 10));
+      remaining /= 10;
+    }
+    out.writerIndex(end);
+  }
+
+  /**
+   * Write a date as a quoted ISO local date, {@code "2009-01-01"}, or {@code null}.
+   */
+  public static void writeIsoDate(ByteBuf out, LocalDate date) {
+    if (date == null) {
+      writeNull(out);
+      return;
+    }
+    int year = date.getYear();
+    if (year < 0 || year > 9999) {
+      // the years out of four digits are signed and padded by the ISO format
+      writeString(out, date.toString());
+      return;
+    }
+    out.writeByte('"');
+    writeDigitPair(out, year / 100);
+    writeDigitPair(out, year % 100);
+    out.writeByte('-');
+    writeDigitPair(out, date.getMonthValue());
+    out.writeByte('-');
+    writeDigitPair(out, date.getDayOfMonth());
+    out.writeByte('"');
+  }
+
+  private static void writeDigitPair(ByteBuf out, int value) {
+    out.writeBytes(DIGIT_PAIRS, 2 * value, 2);
+  }
+}
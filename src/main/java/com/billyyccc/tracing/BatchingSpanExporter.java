@@ -0,0 +1,100 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.tracing;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue the spans and hand them over in batches at a fixed interval, so that a request never waits for its
+ * spans to be exported. The spans are dropped rather than queued without a bound when the export can not keep up.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+abstract class BatchingSpanExporter implements SpanExporter {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BatchingSpanExporter.class);
+
+  private final Vertx vertx;
+  private final int maxQueueSize;
+  private final Queue<JsonObject> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger queueSize = new AtomicInteger();
+  private final AtomicLong droppedSpans = new AtomicLong();
+  private final long timerId;
+
+  BatchingSpanExporter(Vertx vertx, long flushInterval, int maxQueueSize) {
+    this.vertx = vertx;
+    this.maxQueueSize = maxQueueSize;
+    this.timerId = vertx.setPeriodic(flushInterval, id -> flush());
+  }
+
+  @Override
+  public void export(List<Span> spans) {
+    for (Span span : spans) {
+      if (queueSize.incrementAndGet() > maxQueueSize) {
+        queueSize.decrementAndGet();
+        droppedSpans.incrementAndGet();
+      } else {
+        queue.add(span.toJson());
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    vertx.cancelTimer(timerId);
+    flush();
+  }
+
+  /**
+   * Export a batch of spans in their JSON form, the batch is never empty.
+   */
+  abstract void exportBatch(List<JsonObject> spans);
+
+  private void flush() {
+    long dropped = droppedSpans.getAndSet(0);
+    if (dropped > 0) {
+      LOGGER.warn(dropped + " spans have been dropped as the export could not keep up");
+    }
+    List<JsonObject> batch = new ArrayList<>();
+    JsonObject span;
+    while ((span = queue.poll()) != null) {
+      queueSize.decrementAndGet();
+      batch.add(span);
+    }
+    if (!batch.isEmpty()) {
+      exportBatch(batch);
+    }
+  }
+}
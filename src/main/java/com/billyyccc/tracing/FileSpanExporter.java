@@ -0,0 +1,68 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.tracing;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.json.JsonObject;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Append the spans to a local file, one JSON object per line.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+class FileSpanExporter extends BatchingSpanExporter {
+  private final AsyncFile file;
+
+  FileSpanExporter(Vertx vertx, String path, long flushInterval, int maxQueueSize) {
+    super(vertx, flushInterval, maxQueueSize);
+    File parent = new File(path).getAbsoluteFile().getParentFile();
+    if (parent != null) {
+      vertx.fileSystem().mkdirsBlocking(parent.getPath());
+    }
+    this.file = vertx.fileSystem().openBlocking(path, new OpenOptions().setCreate(true).setAppend(true));
+  }
+
+  @Override
+  void exportBatch(List<JsonObject> spans) {
+    Buffer lines = Buffer.buffer(spans.size() * 256);
+    for (JsonObject span : spans) {
+      lines.appendBuffer(span.toBuffer()).appendByte((byte) '\n');
+    }
+    file.write(lines);
+  }
+
+  @Override
+  public void close() {
+    super.close();
+    file.close();
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.tracing;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.web.client.WebClient;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Post the spans to a collector which accepts the OTLP JSON encoding over HTTP, usually at {@code /v1/traces}.
+ * A failed export is logged and the batch is dropped.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+class OtlpSpanExporter extends BatchingSpanExporter {
+  private static final Logger LOGGER = LoggerFactory.getLogger(OtlpSpanExporter.class);
+
+  private final WebClient webClient;
+  private final String endpoint;
+  private final JsonObject resource;
+
+  OtlpSpanExporter(Vertx vertx, String endpoint, String serviceName, long flushInterval, int maxQueueSize) {
+    super(vertx, flushInterval, maxQueueSize);
+    this.webClient = WebClient.create(vertx);
+    this.endpoint = endpoint;
+    this.resource = new JsonObject().put("attributes", new JsonArray().add(attribute("service.name", serviceName)));
+  }
+
+  @Override
+  void exportBatch(List<JsonObject> spans) {
+    JsonArray otlpSpans = new JsonArray();
+    spans.forEach(span -> otlpSpans.add(toOtlpSpan(span)));
+    JsonObject request = new JsonObject().put("resourceSpans", new JsonArray().add(new JsonObject()
+      .put("resource", resource)
+      .put("scopeSpans", new JsonArray().add(new JsonObject()
+        .put("scope", new JsonObject().put("name", "com.billyyccc.tracing"))
+        .put("spans", otlpSpans)))));
+
+    webClient.postAbs(endpoint).sendJsonObject(request, ar -> {
+      if (ar.failed()) {
+        LOGGER.warn("Failed to export " + spans.size() + " spans to " + endpoint, ar.cause());
+      } else if (ar.result().statusCode() >= 300) {
+        LOGGER.warn("Failed to export " + spans.size() + " spans to " + endpoint + ", status " + ar.result().statusCode());
+      }
+    });
+  }
+
+  @Override
+  public void close() {
+    super.close();
+    webClient.close();
+  }
+
+  // the 64 bit integers are encoded as strings and the attributes as a list of typed values
+  private static JsonObject toOtlpSpan(JsonObject span) {
+    JsonArray attributes = new JsonArray();
+    for (Map.Entry<String, Object> attribute : span.getJsonObject("attributes")) {
+      attributes.add(attribute(attribute.getKey(), attribute.getValue()));
+    }
+    return span.copy()
+      .put("startTimeUnixNano", String.valueOf(span.getLong("startTimeUnixNano")))
+      .put("endTimeUnixNano", String.valueOf(span.getLong("endTimeUnixNano")))
+      .put("attributes", attributes);
+  }
+
+  private static JsonObject attribute(String key, Object value) {
+    JsonObject typedValue = new JsonObject();
+    if (value instanceof Boolean) {
+      typedValue.put("boolValue", value);
+    } else if (value instanceof Integer || value instanceof Long) {
+      typedValue.put("intValue", String.valueOf(value));
+    } else if (value instanceof Number) {
+      typedValue.put("doubleValue", value);
+    } else {
+      typedValue.put("stringValue", String.valueOf(value));
+    }
+    return new JsonObject().put("key", key).put("value", typedValue);
+  }
+}
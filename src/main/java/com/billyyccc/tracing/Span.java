@@ -0,0 +1,105 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.tracing;
+
+import io.vertx.core.json.JsonObject;
+
+/**
+ * A timed operation of a {@link Trace}, it is recorded by the trace once it has ended.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class Span {
+  private final Trace trace;
+  private final String spanId;
+  private final String parentSpanId;
+  private final String name;
+  private final long startNanos;
+  private final JsonObject attributes = new JsonObject();
+  private long endNanos;
+
+  Span(Trace trace, String spanId, String parentSpanId, String name) {
+    this.trace = trace;
+    this.spanId = spanId;
+    this.parentSpanId = parentSpanId;
+    this.name = name;
+    this.startNanos = System.nanoTime();
+  }
+
+  public Trace trace() {
+    return trace;
+  }
+
+  public String spanId() {
+    return spanId;
+  }
+
+  public String name() {
+    return name;
+  }
+
+  public synchronized Span put(String key, Object value) {
+    attributes.put(key, value);
+    return this;
+  }
+
+  /**
+   * End the span and record it in its trace, ending it again has no effect.
+   */
+  public void end() {
+    synchronized (this) {
+      if (endNanos != 0) {
+        return;
+      }
+      endNanos = System.nanoTime();
+    }
+    trace.record(this);
+  }
+
+  /**
+   * @return the duration of the span, up to now if it has not ended yet
+   */
+  public synchronized long durationNanos() {
+    return (endNanos == 0 ? System.nanoTime() : endNanos) - startNanos;
+  }
+
+  /**
+   * @return the span with the field names of the OTLP JSON encoding, the attributes are kept as an object
+   */
+  public synchronized JsonObject toJson() {
+    JsonObject json = new JsonObject()
+      .put("traceId", trace.traceId())
+      .put("spanId", spanId)
+      .put("name", name)
+      .put("startTimeUnixNano", trace.epochNanosOf(startNanos))
+      .put("endTimeUnixNano", trace.epochNanosOf(endNanos == 0 ? System.nanoTime() : endNanos))
+      .put("attributes", attributes.copy());
+    if (parentSpanId != null) {
+      json.put("parentSpanId", parentSpanId);
+    }
+    return json;
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.tracing;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.LocalMap;
+import io.vertx.core.shareddata.Shareable;
+
+/**
+ * The exporter shared by the verticles of one Vert.x instance, so that the spans of both sides of the event bus
+ * end up in the same file or batches. It is closed once the last verticle using it has released it.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public final class SpanExporters {
+  public static final String CONFIG_TRACING_ENABLED = "tracing.enabled";
+  public static final String CONFIG_TRACING_SAMPLE_RATIO = "tracing.sample.ratio";
+  private static final String CONFIG_TRACING_EXPORTER = "tracing.exporter";
+  private static final String CONFIG_TRACING_FILE_PATH = "tracing.file.path";
+  private static final String CONFIG_TRACING_OTLP_ENDPOINT = "tracing.otlp.endpoint";
+  private static final String CONFIG_TRACING_SERVICE_NAME = "tracing.service.name";
+  private static final String CONFIG_TRACING_FLUSH_INTERVAL = "tracing.flush.interval";
+  private static final String CONFIG_TRACING_MAX_QUEUE_SIZE = "tracing.max.queue.size";
+
+  private static final String SHARED_EXPORTER_MAP = "library.tracing.exporter";
+  private static final String SHARED_EXPORTER_KEY = "default";
+
+  private SpanExporters() {
+    // No instance of this class allowed
+  }
+
+  /**
+   * @return the shared exporter, created from the configuration by the first caller
+   */
+  public static synchronized SpanExporter acquire(Vertx vertx, JsonObject config) {
+    LocalMap<String, SharedSpanExporter> sharedExporters = vertx.sharedData().getLocalMap(SHARED_EXPORTER_MAP);
+    SharedSpanExporter sharedExporter = sharedExporters.get(SHARED_EXPORTER_KEY);
+    if (sharedExporter == null) {
+      sharedExporter = new SharedSpanExporter(create(vertx, config));
+      sharedExporters.put(SHARED_EXPORTER_KEY, sharedExporter);
+    }
+    sharedExporter.refCount++;
+    return sharedExporter.spanExporter;
+  }
+
+  public static synchronized void release(Vertx vertx) {
+    LocalMap<String, SharedSpanExporter> sharedExporters = vertx.sharedData().getLocalMap(SHARED_EXPORTER_MAP);
+    SharedSpanExporter sharedExporter = sharedExporters.get(SHARED_EXPORTER_KEY);
+    if (sharedExporter != null && --sharedExporter.refCount == 0) {
+      sharedExporters.remove(SHARED_EXPORTER_KEY);
+      sharedExporter.spanExporter.close();
+    }
+  }
+
+  private static SpanExporter create(Vertx vertx, JsonObject config) {
+    long flushInterval = config.getLong(CONFIG_TRACING_FLUSH_INTERVAL, 1000L);
+    int maxQueueSize = config.getInteger(CONFIG_TRACING_MAX_QUEUE_SIZE, 10000);
+    String exporter = config.getString(CONFIG_TRACING_EXPORTER, "none");
+    switch (exporter) {
+      case "file":
+        return new FileSpanExporter(vertx, config.getString(CONFIG_TRACING_FILE_PATH, "traces/spans.ndjson"),
+          flushInterval, maxQueueSize);
+      case "otlp":
+        return new OtlpSpanExporter(vertx, config.getString(CONFIG_TRACING_OTLP_ENDPOINT, "http://localhost:4318/v1/traces"),
+          config.getString(CONFIG_TRACING_SERVICE_NAME, "library"), flushInterval, maxQueueSize);
+      case "none":
+        return SpanExporter.NONE;
+      default:
+        throw new IllegalArgumentException("Unknown span exporter " + exporter);
+    }
+  }
+
+  private static class SharedSpanExporter implements Shareable {
+    private final SpanExporter spanExporter;
+    private int refCount;
+
+    private SharedSpanExporter(SpanExporter spanExporter) {
+      this.spanExporter = spanExporter;
+    }
+  }
+}
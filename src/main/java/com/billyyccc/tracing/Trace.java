@@ -0,0 +1,235 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.tracing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The spans of one request, identified the same way as a W3C trace context so that it can be carried in a
+ * {@code traceparent} header over HTTP and the event bus.
+ * <p>
+ * A trace is split into phases which follow each other, a phase ends when the next one starts. The phases and
+ * the other spans ended so far are what the {@code Server-Timing} header of the response is made of.
+ * <p>
+ * The trace of the request being handled is kept per thread by {@link #runWith}, so that the code called
+ * synchronously by a handler, down to the pool, can add its spans without the trace being passed around.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class Trace {
+  public static final String TRACEPARENT_HEADER = "traceparent";
+
+  private static final Pattern TRACEPARENT_PATTERN = Pattern.compile("00-([0-9a-f]{32})-([0-9a-f]{16})-([0-9a-f]{2})");
+  private static final String INVALID_TRACE_ID = "00000000000000000000000000000000";
+  private static final String INVALID_SPAN_ID = "0000000000000000";
+
+  private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<>();
+  // set by the event bus interceptor just before the service method is invoked
+  private static final ThreadLocal<Trace> INCOMING = new ThreadLocal<>();
+
+  private final String traceId;
+  private final boolean sampled;
+  private final long epochNanosAtStart = System.currentTimeMillis() * 1_000_000L;
+  private final long nanosAtStart = System.nanoTime();
+  private final List<Span> endedSpans = new ArrayList<>();
+  private final String parentSpanId;
+  private Span rootSpan;
+  private Span currentPhase;
+
+  private Trace(String traceId, String parentSpanId, boolean sampled) {
+    this.traceId = traceId;
+    this.parentSpanId = parentSpanId;
+    this.sampled = sampled;
+  }
+
+  /**
+   * Start the trace of a request with a root span, which continues the trace of the caller if its
+   * {@code traceparent} is valid.
+   */
+  public static Trace start(String rootSpanName, String traceparent, double sampleRatio) {
+    Matcher matcher = traceparent == null ? null : TRACEPARENT_PATTERN.matcher(traceparent);
+    Trace trace;
+    if (matcher != null && matcher.matches() && isValid(matcher)) {
+      trace = new Trace(matcher.group(1), matcher.group(2), isSampled(matcher));
+    } else {
+      trace = new Trace(randomId(2), null, ThreadLocalRandom.current().nextDouble() < sampleRatio);
+    }
+    trace.rootSpan = new Span(trace, randomId(1), trace.parentSpanId, rootSpanName);
+    return trace;
+  }
+
+  /**
+   * @return the trace of the caller without a root span, or {@code null} if the {@code traceparent} is absent or invalid
+   */
+  public static Trace continueFrom(String traceparent) {
+    if (traceparent == null) {
+      return null;
+    }
+    Matcher matcher = TRACEPARENT_PATTERN.matcher(traceparent);
+    if (!matcher.matches() || !isValid(matcher)) {
+      return null;
+    }
+    return new Trace(matcher.group(1), matcher.group(2), isSampled(matcher));
+  }
+
+  /**
+   * @return the trace of the request handled by the current thread, or {@code null} if it is not traced
+   */
+  public static Trace current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Run the code with the trace as the current one, the previous one is restored afterwards.
+   */
+  public static void runWith(Trace trace, Runnable runnable) {
+    Trace previous = CURRENT.get();
+    CURRENT.set(trace);
+    try {
+      runnable.run();
+    } finally {
+      CURRENT.set(previous);
+    }
+  }
+
+  static void setIncoming(Trace trace) {
+    INCOMING.set(trace);
+  }
+
+  /**
+   * @return the trace received with the event bus message being handled, it can only be taken once
+   */
+  public static Trace takeIncoming() {
+    Trace trace = INCOMING.get();
+    INCOMING.remove();
+    return trace;
+  }
+
+  public String traceId() {
+    return traceId;
+  }
+
+  public boolean isSampled() {
+    return sampled;
+  }
+
+  /**
+   * @return the span of the whole request, or {@code null} for a trace continued from a caller
+   */
+  public Span rootSpan() {
+    return rootSpan;
+  }
+
+  /**
+   * Start a span, as a child of the root span or of the span of the caller.
+   */
+  public Span startSpan(String name) {
+    return new Span(this, randomId(1), rootSpan == null ? parentSpanId : rootSpan.spanId(), name);
+  }
+
+  /**
+   * End the current phase and start the next one.
+   */
+  public synchronized Span phase(String name) {
+    if (currentPhase != null) {
+      currentPhase.end();
+    }
+    currentPhase = startSpan(name);
+    return currentPhase;
+  }
+
+  /**
+   * @return the {@code traceparent} header value which makes the given span the parent of the callee
+   */
+  public String traceparent(Span span) {
+    return "00-" + traceId + "-" + span.spanId() + (sampled ? "-01" : "-00");
+  }
+
+  /**
+   * End the current phase and tell the duration of each span ended so far, followed by the total.
+   *
+   * @return the value of a {@code Server-Timing} header, the durations are in milliseconds
+   */
+  public synchronized String serverTiming() {
+    if (currentPhase != null) {
+      currentPhase.end();
+      currentPhase = null;
+    }
+    StringBuilder serverTiming = new StringBuilder();
+    for (Span span : endedSpans) {
+      if (span == rootSpan) {
+        continue;
+      }
+      appendTiming(serverTiming, span.name(), span.durationNanos()).append(", ");
+    }
+    long totalNanos = rootSpan == null ? System.nanoTime() - nanosAtStart : rootSpan.durationNanos();
+    return appendTiming(serverTiming, "total", totalNanos).toString();
+  }
+
+  /**
+   * @return the spans ended so far
+   */
+  public synchronized List<Span> spans() {
+    return new ArrayList<>(endedSpans);
+  }
+
+  synchronized void record(Span span) {
+    endedSpans.add(span);
+  }
+
+  long epochNanosOf(long nanoTime) {
+    return epochNanosAtStart + (nanoTime - nanosAtStart);
+  }
+
+  private static StringBuilder appendTiming(StringBuilder serverTiming, String name, long nanos) {
+    return serverTiming.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0));
+  }
+
+  private static boolean isValid(Matcher matcher) {
+    return !INVALID_TRACE_ID.equals(matcher.group(1)) && !INVALID_SPAN_ID.equals(matcher.group(2));
+  }
+
+  private static boolean isSampled(Matcher matcher) {
+    return (Integer.parseInt(matcher.group(3), 16) & 1) == 1;
+  }
+
+  private static String randomId(int longs) {
+    StringBuilder id = new StringBuilder(longs * 16);
+    for (int i = 0; i < longs; i++) {
+      String hex = Long.toHexString(ThreadLocalRandom.current().nextLong());
+      for (int padding = hex.length(); padding < 16; padding++) {
+        id.append('0');
+      }
+      id.append(hex);
+    }
+    return id.toString();
+  }
+}
@@ -3,5 +3,30 @@ CREATE TABLE book(
     id SERIAL4 NOT NULL PRIMARY KEY,
     title VARCHAR(100),
     category VARCHAR(50),
-    publication_date DATE
-);
\ No newline at end of file
+    publication_date DATE,
+    -- the full-text search vector of the title, kept last so that the positional inserts still line up
+    title_tsv TSVECTOR GENERATED ALWAYS AS (to_tsvector('english', coalesce(title, ''))) STORED
+);
+CREATE INDEX book_title_tsv_idx ON book USING GIN (title_tsv);
+
+-- Notify the id of every changed book so that each node can evict it from its cache,
+-- on the channel BookChangeListener.CHANNEL listens to.
+-- A bulk load sets library.book_notify to 'off' in its transaction and notifies '*' once instead.
+CREATE OR REPLACE FUNCTION notify_book_change() RETURNS TRIGGER AS $$
+BEGIN
+    IF current_setting('library.book_notify', TRUE) = 'off' THEN
+        RETURN NULL;
+    END IF;
+    IF TG_OP = 'INSERT' OR TG_OP = 'UPDATE' THEN
+        PERFORM pg_notify('book_changes', NEW.id::TEXT);
+    END IF;
+    IF TG_OP = 'DELETE' OR (TG_OP = 'UPDATE' AND OLD.id <> NEW.id) THEN
+        PERFORM pg_notify('book_changes', OLD.id::TEXT);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER book_changes
+    AFTER INSERT OR UPDATE OR DELETE ON book
+    FOR EACH ROW EXECUTE PROCEDURE notify_book_change();
@@ -0,0 +1,22 @@
+-- The indexes of the filters accepted by GET /books, each of them is ordered by id after its filtered column so that
+-- the keyset pages are read from the index in order.
+-- They are partial as every condition of the filters rejects NULL, which keeps the books without a value out of them.
+-- A concurrent build might leave an invalid index behind when it fails, so each index is dropped before it is built.
+
+-- title = $n and title LIKE 'prefix%', the pattern operator class is needed by LIKE under any collation but C
+DROP INDEX CONCURRENTLY IF EXISTS book_title_pattern_idx;
+CREATE INDEX CONCURRENTLY book_title_pattern_idx ON book (title varchar_pattern_ops, id) WHERE title IS NOT NULL;
+
+-- category = $n and category = ANY($n), paged by id
+DROP INDEX CONCURRENTLY IF EXISTS book_category_id_idx;
+CREATE INDEX CONCURRENTLY book_category_id_idx ON book (category, id) WHERE category IS NOT NULL;
+
+-- publication_date = $n and the ranges of publication dates
+DROP INDEX CONCURRENTLY IF EXISTS book_publication_date_id_idx;
+CREATE INDEX CONCURRENTLY book_publication_date_id_idx ON book (publication_date, id)
+    WHERE publication_date IS NOT NULL;
+
+-- the categories combined with a range of publication dates
+DROP INDEX CONCURRENTLY IF EXISTS book_category_publication_date_idx;
+CREATE INDEX CONCURRENTLY book_category_publication_date_idx ON book (category, publication_date)
+    WHERE category IS NOT NULL AND publication_date IS NOT NULL;
@@ -0,0 +1,9 @@
+-- The full-text search vector of the title matched by q, for the databases created before create_table.sql had it.
+-- Adding the stored column computes it for every book and rewrites the table, the books are locked meanwhile.
+-- The column is kept last so that the positional inserts still line up.
+ALTER TABLE book ADD COLUMN IF NOT EXISTS title_tsv TSVECTOR
+    GENERATED ALWAYS AS (to_tsvector('english', coalesce(title, ''))) STORED;
+
+-- title_tsv @@ websearch_to_tsquery('english', $n), rebuilt like the indexes of the filters
+DROP INDEX CONCURRENTLY IF EXISTS book_title_tsv_idx;
+CREATE INDEX CONCURRENTLY book_title_tsv_idx ON book USING GIN (title_tsv);
@@ -0,0 +1,22 @@
+-- The notifications of the book changes followed by the caches, for the databases created before create_table.sql
+-- had them. The channel is BookChangeListener.CHANNEL.
+-- A bulk load sets library.book_notify to 'off' in its transaction and notifies '*' once instead.
+CREATE OR REPLACE FUNCTION notify_book_change() RETURNS TRIGGER AS $$
+BEGIN
+    IF current_setting('library.book_notify', TRUE) = 'off' THEN
+        RETURN NULL;
+    END IF;
+    IF TG_OP = 'INSERT' OR TG_OP = 'UPDATE' THEN
+        PERFORM pg_notify('book_changes', NEW.id::TEXT);
+    END IF;
+    IF TG_OP = 'DELETE' OR (TG_OP = 'UPDATE' AND OLD.id <> NEW.id) THEN
+        PERFORM pg_notify('book_changes', OLD.id::TEXT);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS book_changes ON book;
+CREATE TRIGGER book_changes
+    AFTER INSERT OR UPDATE OR DELETE ON book
+    FOR EACH ROW EXECUTE PROCEDURE notify_book_change();
@@ -0,0 +1,91 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.api;
+
+import com.billyyccc.api.handler.CompressionThresholdHandler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.web.Router;
+import io.vertx.reactivex.ext.web.client.WebClient;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static io.vertx.core.http.HttpMethod.*;
+
+/**
+ * This test Class is to perform unit tests for the compression of the responses over the size threshold.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+@RunWith(VertxUnitRunner.class)
+public class CompressionThresholdHandlerTest extends RestApiTestBase {
+  @Before
+  public void setUp(TestContext testContext) {
+    vertx = new Vertx(rule.vertx());
+    router = Router.router(vertx);
+
+    char[] largeBody = new char[4096];
+    Arrays.fill(largeBody, 'a');
+
+    router.route().handler(new CompressionThresholdHandler(1024));
+    router.get("/small").handler(routingContext -> routingContext.response().end("[]"));
+    router.get("/large").handler(routingContext -> routingContext.response().end(new String(largeBody)));
+
+    vertx.createHttpServer(HttpServerVerticle.httpServerOptions(new JsonObject()))
+      .requestHandler(router::accept).listen(1234, testContext.asyncAssertSuccess());
+
+    // the raw responses are checked, they must not be decompressed by the client
+    webClient = WebClient.create(vertx, new WebClientOptions().setTryUseCompression(false));
+  }
+
+  @Test
+  public void restApiSmallResponseTest(TestContext testContext) {
+    webClient.request(GET, 1234, "localhost", "/small")
+      .putHeader("Accept-Encoding", "gzip")
+      .send(testContext.asyncAssertSuccess(resp -> {
+        testContext.assertEquals(200, resp.statusCode());
+        testContext.assertEquals("identity", resp.getHeader("Content-Encoding"));
+        testContext.assertEquals("[]", resp.bodyAsString());
+      }));
+  }
+
+  @Test
+  public void restApiLargeResponseTest(TestContext testContext) {
+    webClient.request(GET, 1234, "localhost", "/large")
+      .putHeader("Accept-Encoding", "gzip")
+      .send(testContext.asyncAssertSuccess(resp -> {
+        testContext.assertEquals(200, resp.statusCode());
+        testContext.assertEquals("gzip", resp.getHeader("Content-Encoding"));
+        testContext.assertTrue(resp.body().length() < 4096);
+      }));
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.api.book;
+
+import com.billyyccc.api.EndPoints;
+import com.billyyccc.api.RestApiTestBase;
+import com.billyyccc.api.handler.BookApis;
+import com.billyyccc.api.handler.FailureHandler;
+import com.billyyccc.database.reactivex.BookDatabaseService;
+import com.billyyccc.entity.Book;
+import io.reactivex.Single;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.web.Router;
+import io.vertx.reactivex.ext.web.client.WebClient;
+import io.vertx.reactivex.ext.web.codec.BodyCodec;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+
+import static io.vertx.core.http.HttpMethod.*;
+
+/**
+ * This test Class is to perform unit tests for AddBooksHandler of books.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+@RunWith(VertxUnitRunner.class)
+public class AddBooksHandlerTest extends RestApiTestBase {
+  @Before
+  public void setUp(TestContext testContext) {
+    BookDatabaseService mockBookDatabaseService = Mockito.mock(BookDatabaseService.class);
+
+    Book designPatterns = new Book(3, "Design Patterns", "design", "1995-01-15");
+    Book refactoring = new Book(8, "Refactoring", "programming", "1999-07-08");
+
+    JsonArray mockDbResponse = new JsonArray()
+      .add(new JsonObject().put("id", 3).put("status", "created"))
+      .add(new JsonObject().put("id", 8).put("status", "created"));
+
+    Mockito.when(mockBookDatabaseService.rxAddNewBooks(Arrays.asList(designPatterns, refactoring)))
+      .thenReturn(Single.just(mockDbResponse));
+
+    // the body must reach the handler unbuffered
+    vertx = new Vertx(rule.vertx());
+    router = Router.router(vertx);
+    router.post(EndPoints.ADD_NEW_BOOKS).handler(BookApis.addBooksHandler(mockBookDatabaseService, 1024));
+    router.route().failureHandler(new FailureHandler());
+    vertx.createHttpServer().requestHandler(router::accept).listen(1234, testContext.asyncAssertSuccess());
+
+    webClient = WebClient.create(vertx);
+  }
+
+  @Test
+  public void restApiTest(TestContext testContext) {
+    expectedResponseStatusCode = 200;
+
+    JsonArray expectedResponseBody = new JsonArray()
+      .add(new JsonObject().put("id", 3).put("status", "created"))
+      .add(new JsonObject().put("id", 8).put("status", "created"));
+
+    JsonArray requestBody = new JsonArray()
+      .add(new JsonObject()
+        .put("id", 3)
+        .put("title", "Design Patterns")
+        .put("category", "design")
+        .put("publicationDate", "1995-01-15"))
+      .add(new JsonObject()
+        .put("id", 8)
+        .put("title", "Refactoring")
+        .put("category", "programming")
+        .put("publicationDate", "1999-07-08"));
+
+    webClient.request(POST, 1234, "localhost", "/books/_bulk")
+      .putHeader("Content-Type", "application/json; charset=utf-8")
+      .as(BodyCodec.jsonArray())
+      .sendJson(requestBody, testContext.asyncAssertSuccess(resp -> {
+        testContext.assertEquals(expectedResponseStatusCode, resp.statusCode());
+        testContext.assertEquals(expectedResponseBody, resp.body());
+      }));
+  }
+
+  @Test
+  public void restApiNotAnArrayTest(TestContext testContext) {
+    expectedResponseStatusCode = 400;
+
+    JsonObject requestBody = new JsonObject()
+      .put("id", 3)
+      .put("title", "Design Patterns");
+
+    webClient.request(POST, 1234, "localhost", "/books/_bulk")
+      .putHeader("Content-Type", "application/json; charset=utf-8")
+      .sendJson(requestBody, testContext.asyncAssertSuccess(resp ->
+        testContext.assertEquals(expectedResponseStatusCode, resp.statusCode())));
+  }
+
+  @Test
+  public void restApiBodyOverLimitTest(TestContext testContext) {
+    expectedResponseStatusCode = 413;
+
+    JsonArray requestBody = new JsonArray();
+    for (int i = 0; i < 100; i++) {
+      requestBody.add(new JsonObject()
+        .put("id", i)
+        .put("title", "Design Patterns")
+        .put("category", "design")
+        .put("publicationDate", "1995-01-15"));
+    }
+
+    webClient.request(POST, 1234, "localhost", "/books/_bulk")
+      .putHeader("Content-Type", "application/json; charset=utf-8")
+      .sendJson(requestBody, testContext.asyncAssertSuccess(resp ->
+        testContext.assertEquals(expectedResponseStatusCode, resp.statusCode())));
+  }
+
+}
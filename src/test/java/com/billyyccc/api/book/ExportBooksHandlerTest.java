@@ -0,0 +1,105 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.api.book;
+
+import com.billyyccc.api.EndPoints;
+import com.billyyccc.api.RestApiTestBase;
+import com.billyyccc.api.handler.BookApis;
+import com.billyyccc.database.reactivex.BookDatabaseService;
+import com.billyyccc.entity.BookFilter;
+import io.reactivex.Completable;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.reactivex.ext.web.client.WebClient;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+import static com.billyyccc.database.utils.RowStreamMessages.*;
+import static io.vertx.core.http.HttpMethod.*;
+
+/**
+ * This test Class is to perform unit tests for ExportBooksHandler of books.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+@RunWith(VertxUnitRunner.class)
+public class ExportBooksHandlerTest extends RestApiTestBase {
+  @Before
+  public void setUp(TestContext testContext) {
+    BookDatabaseService mockBookDatabaseService = Mockito.mock(BookDatabaseService.class);
+
+    Mockito.when(mockBookDatabaseService.rxStreamBooks(Mockito.any(BookFilter.class), Mockito.eq("CSV"), Mockito.eq(2),
+      Mockito.anyString()))
+      .thenAnswer(invocation -> {
+        String address = invocation.getArgument(3);
+        EventBus eventBus = vertx.eventBus().getDelegate();
+        eventBus.send(address, Buffer.buffer("1,Effective Java,java,2009-01-01\n2,\"Java, 4th Edition\",java,2006-02-20\n"),
+          action(ACTION_ROWS),
+          testContext.asyncAssertSuccess(ack -> eventBus.send(address, null, action(ACTION_END))));
+        return Completable.complete();
+      });
+
+    mockServer(1234, GET, EndPoints.EXPORT_BOOKS, BookApis.exportBooksHandler(mockBookDatabaseService, 2), testContext);
+
+    webClient = WebClient.create(vertx);
+  }
+
+  @Test
+  public void restApiTest(TestContext testContext) {
+    expectedResponseStatusCode = 200;
+
+    String expectedResponseBody = "id,title,category,publicationDate\n"
+      + "1,Effective Java,java,2009-01-01\n"
+      + "2,\"Java, 4th Edition\",java,2006-02-20\n";
+
+    webClient.request(GET, 1234, "localhost", "/books/_export?format=csv")
+      .putHeader("Content-Type", "application/json; charset=utf-8")
+      .send(testContext.asyncAssertSuccess(resp -> {
+        testContext.assertEquals(expectedResponseStatusCode, resp.statusCode());
+        testContext.assertEquals("text/csv; charset=utf-8", resp.getHeader("Content-Type"));
+        testContext.assertEquals("attachment; filename=\"books.csv\"", resp.getHeader("Content-Disposition"));
+        testContext.assertEquals(expectedResponseBody, resp.bodyAsString());
+      }));
+  }
+
+  @Test
+  public void testRankedExportAfterIdIsRejected(TestContext testContext) {
+    webClient.request(GET, 1234, "localhost", "/books/_export?format=csv&q=java&afterId=3")
+      .send(testContext.asyncAssertSuccess(resp -> {
+        testContext.assertEquals(400, resp.statusCode());
+        testContext.assertNull(resp.getHeader("Content-Disposition"));
+      }));
+  }
+
+  private static DeliveryOptions action(String action) {
+    return new DeliveryOptions().addHeader(HEADER_ACTION, action);
+  }
+}
@@ -28,7 +28,9 @@ import com.billyyccc.api.EndPoints;
 import com.billyyccc.api.RestApiTestBase;
 import com.billyyccc.api.handler.BookApis;
 import com.billyyccc.database.reactivex.BookDatabaseService;
+import com.billyyccc.entity.BookPage;
 import io.reactivex.Single;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
@@ -60,7 +62,8 @@ public class GetBookByIdHandlerTest extends RestApiTestBase {
       .put("publicationDate", "2009-01-01");
 
 
-    Mockito.when(mockBookDatabaseService.rxGetBookById(1)).thenReturn(Single.just(mockDbResponse));
+    Mockito.when(mockBookDatabaseService.rxGetBookById(1, 0L))
+      .thenReturn(Single.just(BookPage.of(new JsonArray().add(mockDbResponse))));
 
     mockServer(1234, GET, EndPoints.GET_BOOK_BY_ID, BookApis.getBookByIdHandler(mockBookDatabaseService), testContext);
 
@@ -28,7 +28,8 @@ import com.billyyccc.api.EndPoints;
 import com.billyyccc.api.RestApiTestBase;
 import com.billyyccc.api.handler.BookApis;
 import com.billyyccc.database.reactivex.BookDatabaseService;
-import com.billyyccc.entity.Book;
+import com.billyyccc.entity.BookFilter;
+import com.billyyccc.entity.BookPage;
 import io.reactivex.Single;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -68,7 +69,7 @@ public class GetBooksHandlerTest extends RestApiTestBase {
         .put("publicationDate", "2006-02-20"));
 
 
-    Mockito.when(mockBookDatabaseService.rxGetBooks(new Book())).thenReturn(Single.just(mockDbResponse));
+    Mockito.when(mockBookDatabaseService.rxGetBooks(new BookFilter())).thenReturn(Single.just(BookPage.of(mockDbResponse)));
 
     mockServer(1234, GET, EndPoints.GET_BOOKS, BookApis.getBooksHandler(mockBookDatabaseService), testContext);
 
@@ -0,0 +1,107 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.api.book;
+
+import com.billyyccc.api.EndPoints;
+import com.billyyccc.api.RestApiTestBase;
+import com.billyyccc.api.handler.BookApis;
+import com.billyyccc.database.reactivex.BookDatabaseService;
+import com.billyyccc.entity.BookFilter;
+import io.reactivex.Completable;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.reactivex.ext.web.client.WebClient;
+import io.vertx.reactivex.ext.web.codec.BodyCodec;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+import static com.billyyccc.database.utils.RowStreamMessages.*;
+import static io.vertx.core.http.HttpMethod.*;
+
+/**
+ * This test Class is to perform unit tests for GetBooksHandler of books in the streaming mode.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+@RunWith(VertxUnitRunner.class)
+public class GetBooksStreamHandlerTest extends RestApiTestBase {
+  @Before
+  public void setUp(TestContext testContext) {
+    BookDatabaseService mockBookDatabaseService = Mockito.mock(BookDatabaseService.class);
+
+    // send each book in its own encoded batch and wait for the acknowledgement as the database service does
+    Mockito.when(mockBookDatabaseService.rxStreamBooks(Mockito.any(BookFilter.class), Mockito.eq("JSON"), Mockito.eq(1),
+      Mockito.anyString()))
+      .thenAnswer(invocation -> {
+        String address = invocation.getArgument(3);
+        EventBus eventBus = vertx.eventBus().getDelegate();
+        eventBus.send(address, book(1, "Effective Java", "2009-01-01").toBuffer(), action(ACTION_ROWS),
+          testContext.asyncAssertSuccess(firstAck ->
+            eventBus.send(address, book(2, "Thinking in Java", "2006-02-20").toBuffer(), action(ACTION_ROWS),
+              testContext.asyncAssertSuccess(secondAck -> eventBus.send(address, null, action(ACTION_END))))));
+        return Completable.complete();
+      });
+
+    mockServer(1234, GET, EndPoints.GET_BOOKS, BookApis.getBooksHandler(mockBookDatabaseService, 1), testContext);
+
+    webClient = WebClient.create(vertx);
+  }
+
+  @Test
+  public void restApiTest(TestContext testContext) {
+    expectedResponseStatusCode = 200;
+
+    JsonArray expectedResponseBody = new JsonArray()
+      .add(book(1, "Effective Java", "2009-01-01"))
+      .add(book(2, "Thinking in Java", "2006-02-20"));
+
+    webClient.request(GET, 1234, "localhost", "/books?stream=true")
+      .putHeader("Content-Type", "application/json; charset=utf-8")
+      .as(BodyCodec.jsonArray())
+      .send(testContext.asyncAssertSuccess(resp -> {
+        testContext.assertEquals(expectedResponseStatusCode, resp.statusCode());
+        testContext.assertEquals(expectedResponseBody, resp.body());
+      }));
+  }
+
+  private static JsonObject book(int id, String title, String publicationDate) {
+    return new JsonObject()
+      .put("id", id)
+      .put("title", title)
+      .put("category", "java")
+      .put("publicationDate", publicationDate);
+  }
+
+  private static DeliveryOptions action(String action) {
+    return new DeliveryOptions().addHeader(HEADER_ACTION, action);
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.api.book;
+
+import com.billyyccc.api.EndPoints;
+import com.billyyccc.api.RestApiTestBase;
+import com.billyyccc.api.handler.BookApis;
+import com.billyyccc.database.reactivex.BookDatabaseService;
+import com.billyyccc.database.utils.BookRowFormat;
+import com.billyyccc.entity.Book;
+import com.billyyccc.entity.BookList;
+import com.billyyccc.entity.codec.BookMessageCodecs;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.reactiverse.pgclient.Row;
+import io.reactivex.Completable;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.core.buffer.Buffer;
+import io.vertx.reactivex.ext.web.Router;
+import io.vertx.reactivex.ext.web.client.WebClient;
+import io.vertx.reactivex.ext.web.codec.BodyCodec;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+import java.time.LocalDate;
+
+import static com.billyyccc.database.utils.RowStreamMessages.*;
+import static io.vertx.core.http.HttpMethod.*;
+
+/**
+ * This test Class is to perform unit tests for LoadBooksHandler of books.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+@RunWith(VertxUnitRunner.class)
+public class LoadBooksHandlerTest extends RestApiTestBase {
+  private final BookList loadedBooks = new BookList();
+
+  @Before
+  public void setUp(TestContext testContext) {
+    BookDatabaseService mockBookDatabaseService = Mockito.mock(BookDatabaseService.class);
+
+    Mockito.when(mockBookDatabaseService.rxLoadBooks(Mockito.anyString()))
+      .thenAnswer(invocation -> {
+        pull(invocation.getArgument(0));
+        return Completable.complete();
+      });
+
+    // the body must reach the handler unbuffered
+    vertx = new Vertx(rule.vertx());
+    BookMessageCodecs.registerDefaultCodecs(vertx.eventBus().getDelegate());
+    router = Router.router(vertx);
+    router.post(EndPoints.LOAD_BOOKS).handler(BookApis.loadBooksHandler(mockBookDatabaseService, 2));
+    vertx.createHttpServer().requestHandler(router::accept).listen(1234, testContext.asyncAssertSuccess());
+
+    webClient = WebClient.create(vertx);
+  }
+
+  @Test
+  public void restApiTest(TestContext testContext) {
+    expectedResponseStatusCode = 200;
+
+    BookList expectedBooks = new BookList()
+      .add(new Book(1, "Effective java", "java", "2009-01-01"))
+      .add(new Book(3, "Design Patterns, 1st edition", "design", "1995-01-15"))
+      .add(new Book(8, "Refactoring", "programming", null));
+
+    String requestBody = "id,title,category,publicationDate\n" +
+      "1,Effective java,java,2009-01-01\n" +
+      "3,\"Design Patterns, 1st edition\",design,1995-01-15\r\n" +
+      "8,Refactoring,programming,\n";
+
+    webClient.request(POST, 1234, "localhost", "/books/_load?format=csv")
+      .putHeader("Content-Type", "text/csv; charset=utf-8")
+      .as(BodyCodec.jsonObject())
+      .sendBuffer(Buffer.buffer(requestBody), testContext.asyncAssertSuccess(resp -> {
+        testContext.assertEquals(expectedResponseStatusCode, resp.statusCode());
+        testContext.assertEquals(new JsonObject().put("rows", 3), resp.body());
+        testContext.assertEquals(expectedBooks, loadedBooks);
+      }));
+  }
+
+  @Test
+  public void testLastRecordWithoutNewLine(TestContext testContext) {
+    BookList expectedBooks = new BookList()
+      .add(new Book(1, "Effective java", "java", "2009-01-01"))
+      .add(new Book(2, "Refactoring", "programming", null));
+
+    String requestBody = "{\"id\":1,\"title\":\"Effective java\",\"category\":\"java\",\"publicationDate\":\"2009-01-01\"}\n" +
+      "{\"id\":2,\"title\":\"Refactoring\",\"category\":\"programming\",\"publicationDate\":null}";
+
+    webClient.request(POST, 1234, "localhost", "/books/_load?format=ndjson")
+      .putHeader("Content-Type", "application/x-ndjson; charset=utf-8")
+      .as(BodyCodec.jsonObject())
+      .sendBuffer(Buffer.buffer(requestBody), testContext.asyncAssertSuccess(resp -> {
+        testContext.assertEquals(200, resp.statusCode());
+        testContext.assertEquals(new JsonObject().put("rows", 2), resp.body());
+        testContext.assertEquals(expectedBooks, loadedBooks);
+      }));
+  }
+
+  @Test
+  public void testExportedCsvLoadsBack(TestContext testContext) {
+    BookList expectedBooks = new BookList()
+      .add(new Book(1, "Effective java,\nthird edition", "java", "2009-01-01"))
+      .add(new Book(2, "The \"Gang of Four\"\r\nbook", "design", "1994-10-31"))
+      .add(new Book(3, "Refactoring", "programming", null));
+
+    // the body is written as /books/_export writes it
+    ByteBuf exported = Unpooled.buffer();
+    exported.writeBytes(BookRowFormat.CSV.prefix().getByteBuf());
+    for (Book book : expectedBooks) {
+      BookRowFormat.CSV.writeRow(exported, rowOf(book));
+    }
+
+    webClient.request(POST, 1234, "localhost", "/books/_load?format=csv")
+      .putHeader("Content-Type", "text/csv; charset=utf-8")
+      .as(BodyCodec.jsonObject())
+      .sendBuffer(new Buffer(io.vertx.core.buffer.Buffer.buffer(exported)), testContext.asyncAssertSuccess(resp -> {
+        testContext.assertEquals(200, resp.statusCode());
+        testContext.assertEquals(new JsonObject().put("rows", 3), resp.body());
+        testContext.assertEquals(expectedBooks, loadedBooks);
+      }));
+  }
+
+  private static Row rowOf(Book book) {
+    Row row = Mockito.mock(Row.class);
+    Mockito.when(row.getInteger("id")).thenReturn(book.getId());
+    Mockito.when(row.getString("title")).thenReturn(book.getTitle());
+    Mockito.when(row.getString("category")).thenReturn(book.getCategory());
+    Mockito.when(row.getLocalDate("publication_date"))
+      .thenReturn(book.getPublicationDate() == null ? null : LocalDate.parse(book.getPublicationDate()));
+    return row;
+  }
+
+  // pull the books as the database service does until the upload is drained
+  private void pull(String address) {
+    EventBus eventBus = vertx.eventBus().getDelegate();
+    eventBus.<BookList>send(address, null, new DeliveryOptions().addHeader(HEADER_ACTION, ACTION_PULL), reply -> {
+      BookList books = reply.result().body();
+      if (books.isEmpty()) {
+        eventBus.send(address, new JsonObject().put("rows", loadedBooks.size()),
+          new DeliveryOptions().addHeader(HEADER_ACTION, ACTION_END));
+      } else {
+        loadedBooks.getBooks().addAll(books.getBooks());
+        pull(address);
+      }
+    });
+  }
+}
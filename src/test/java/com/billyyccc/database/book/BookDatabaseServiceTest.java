@@ -32,6 +32,7 @@ import io.reactiverse.pgclient.PgPool;
 import io.reactiverse.pgclient.PgPoolOptions;
 import io.reactiverse.pgclient.Row;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.RunTestOnContext;
@@ -47,6 +48,7 @@ import org.testcontainers.containers.GenericContainer;
 
 import java.time.Duration;
 import java.time.LocalDate;
+import java.util.Arrays;
 
 /**
  * This class is for testing {@link BookDatabaseServiceImpl} service implementation.
@@ -61,7 +63,7 @@ public class BookDatabaseServiceTest {
   private static final String TEST_DB = "test-db";
 
   @ClassRule
-  public static GenericContainer postgres = new GenericContainer("postgres:alpine")
+  public static GenericContainer postgres = new GenericContainer("postgres:12-alpine")
     .withEnv("POSTGRES_USER", TEST_USER)
     .withEnv("POSTGRES_PASSWORD", TEST_PASSWORD)
     .withEnv("POSTGRES_DB", TEST_DB)
@@ -85,7 +87,7 @@ public class BookDatabaseServiceTest {
       .setUser(TEST_USER)
       .setPassword(TEST_PASSWORD)
       .setDatabase(TEST_DB));
-    bookDatabaseService = new BookDatabaseServiceImpl(pgPool, testContext.asyncAssertSuccess());
+    bookDatabaseService = new BookDatabaseServiceImpl(vertx, pgPool, new JsonObject(), testContext.asyncAssertSuccess());
   }
 
   @After
@@ -99,23 +101,55 @@ public class BookDatabaseServiceTest {
     Book book = new Book(3, "test", "test_category", "2000-01-01");
 
     bookDatabaseService.addNewBook(book, testContext.asyncAssertSuccess(res -> {
-      pgPool.query("SELECT * FROM book WHERE id = 3", testContext.asyncAssertSuccess(pgResult -> {
+      pgPool.query("SELECT id, title, category, publication_date FROM book WHERE id = 3", testContext.asyncAssertSuccess(pgResult -> {
         Row row = pgResult.iterator().next();
         checkBook(testContext, 3, "test", "test_category", LocalDate.of(2000, 1, 1), row);
       }));
     }));
   }
 
+  @Test
+  public void testAddNewBooks(TestContext testContext) {
+    Book firstBook = new Book(20, "first", "bulk_category", "2001-01-01");
+    Book secondBook = new Book(21, "second", "bulk_category", "2002-02-02");
+    Book existingBook = new Book(1, "existing", "bulk_category", null);
+
+    bookDatabaseService.addNewBooks(Arrays.asList(firstBook, existingBook, secondBook), testContext.asyncAssertSuccess(res -> {
+      JsonArray expectedResults = new JsonArray()
+        .add(new JsonObject().put("id", 20).put("status", "created"))
+        .add(new JsonObject().put("id", 1).put("status", "conflict"))
+        .add(new JsonObject().put("id", 21).put("status", "created"));
+      testContext.assertEquals(expectedResults, res);
+      pgPool.query("SELECT id, title, category, publication_date FROM book WHERE id = 21", testContext.asyncAssertSuccess(pgResult -> {
+        Row row = pgResult.iterator().next();
+        checkBook(testContext, 21, "second", "bulk_category", LocalDate.of(2002, 2, 2), row);
+      }));
+    }));
+  }
+
+  @Test
+  public void testAddNewBooksWithInvalidDate(TestContext testContext) {
+    Book validBook = new Book(22, "valid", "bulk_category", "2001-01-01");
+    Book invalidBook = new Book(23, "invalid", "bulk_category", "2001-13-01");
+
+    bookDatabaseService.addNewBooks(Arrays.asList(validBook, invalidBook), testContext.asyncAssertFailure(throwable -> {
+      testContext.assertTrue(throwable.getMessage().contains("at index 1"));
+      pgPool.query("SELECT id FROM book WHERE id = 22", testContext.asyncAssertSuccess(pgResult ->
+        testContext.assertEquals(0, pgResult.size())));
+    }));
+  }
+
   @Test
   public void testGetBookById(TestContext testContext) {
-    bookDatabaseService.getBookById(1, testContext.asyncAssertSuccess(res -> {
+    bookDatabaseService.getBookById(1, 0, testContext.asyncAssertSuccess(res -> {
       JsonObject expectedJson = new JsonObject()
         .put("id", 1)
         .put("title", "Effective java")
         .put("category", "java")
         .put("publicationDate", "2009-01-01");
-      testContext.assertEquals(expectedJson, res);
-      pgPool.query("SELECT * FROM book WHERE id = 1", testContext.asyncAssertSuccess(pgResult -> {
+      testContext.assertEquals(1, res.getSize());
+      testContext.assertEquals(expectedJson, new JsonObject(res.getSingleBook()));
+      pgPool.query("SELECT id, title, category, publication_date FROM book WHERE id = 1", testContext.asyncAssertSuccess(pgResult -> {
         Row row = pgResult.iterator().next();
         checkBook(testContext, 1, "Effective java", "java", LocalDate.of(2009, 1, 1), row);
       }));
@@ -0,0 +1,126 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.cache;
+
+import com.billyyccc.entity.BookPage;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is for testing the eviction and invalidation of {@link BookCache}.
+ *
+ * @author Billy Yuan
+ */
+
+public class BookCacheTest {
+
+  @Test
+  public void testLeastRecentlyUsedEviction() {
+    BookCache bookCache = new BookCache(2, 1, TimeUnit.HOURS);
+    bookCache.put(1, book(1), bookCache.startLoad(1), 0);
+    bookCache.put(2, book(2), bookCache.startLoad(2), 0);
+
+    // touch the first book so that the second one is the eldest
+    assertCached(bookCache, 1);
+    bookCache.put(3, book(3), bookCache.startLoad(3), 0);
+
+    Assert.assertNull(bookCache.get(2));
+    assertCached(bookCache, 1);
+    assertCached(bookCache, 3);
+    Assert.assertEquals(1L, bookCache.stats().getLong("evictionCount").longValue());
+  }
+
+  @Test
+  public void testSizeIsBoundedOverTheSegments() {
+    BookCache bookCache = new BookCache(1000, 1, TimeUnit.HOURS);
+    for (int id = 1; id <= 2000; id++) {
+      bookCache.put(id, book(id), bookCache.startLoad(id), 0);
+    }
+
+    int size = bookCache.size();
+    Assert.assertTrue(size <= 1000);
+    Assert.assertEquals(2000L - size, bookCache.stats().getLong("evictionCount").longValue());
+    assertCached(bookCache, 2000);
+  }
+
+  @Test
+  public void testExpiredEntry() {
+    BookCache bookCache = new BookCache(2, 0, TimeUnit.SECONDS);
+    bookCache.put(1, book(1), bookCache.startLoad(1), 0);
+
+    Assert.assertNull(bookCache.get(1));
+    Assert.assertEquals(0, bookCache.size());
+  }
+
+  @Test
+  public void testStaleLoadIsDiscarded() {
+    BookCache bookCache = new BookCache(2, 1, TimeUnit.HOURS);
+    BookCache.LoadToken loadToken = bookCache.startLoad(1);
+    bookCache.invalidate(1);
+    bookCache.put(1, book(1), loadToken, 0);
+
+    Assert.assertNull(bookCache.get(1));
+    Assert.assertEquals(0.0, bookCache.stats().getDouble("hitRatio"), 0.0);
+  }
+
+  @Test
+  public void testLoadIsKeptWhenAnotherBookIsInvalidated() {
+    BookCache bookCache = new BookCache(2, 1, TimeUnit.HOURS);
+    BookCache.LoadToken loadToken = bookCache.startLoad(1);
+    bookCache.invalidate(2);
+    bookCache.put(1, book(1), loadToken, 0);
+
+    assertCached(bookCache, 1);
+  }
+
+  @Test
+  public void testInvalidatedBookIsNotCachedDuringTheRecacheDelay() throws InterruptedException {
+    BookCache bookCache = new BookCache(2, 1, TimeUnit.HOURS, 200, TimeUnit.MILLISECONDS);
+    bookCache.put(1, book(1), bookCache.startLoad(1), 0);
+    bookCache.invalidate(1);
+
+    // a load started after the invalidation may still read the previous row from a replica
+    bookCache.put(1, book(1), bookCache.startLoad(1), 0);
+    Assert.assertNull(bookCache.get(1));
+
+    Thread.sleep(300);
+    bookCache.put(1, book(1), bookCache.startLoad(1), 0);
+    assertCached(bookCache, 1);
+  }
+
+  private static void assertCached(BookCache bookCache, int id) {
+    BookPage cachedBook = bookCache.get(id);
+    Assert.assertNotNull(cachedBook);
+    Assert.assertEquals(book(id).getBooks(), cachedBook.getBooks());
+  }
+
+  private static BookPage book(int id) {
+    return BookPage.of(new JsonArray().add(new JsonObject().put("id", id).put("title", "book " + id)));
+  }
+}
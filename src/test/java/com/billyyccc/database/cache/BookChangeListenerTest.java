@@ -0,0 +1,177 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.cache;
+
+import com.billyyccc.database.migration.SchemaMigrator;
+import com.billyyccc.entity.BookPage;
+import io.reactiverse.pgclient.PgClient;
+import io.reactiverse.pgclient.PgPool;
+import io.reactiverse.pgclient.PgPoolOptions;
+import io.reactiverse.pgclient.Tuple;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.testcontainers.containers.BindMode;
+import org.testcontainers.containers.GenericContainer;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * This class is for testing that {@link BookChangeListener} evicts the books changed in the database.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+@RunWith(VertxUnitRunner.class)
+public class BookChangeListenerTest {
+  private static final String TEST_USER = "test";
+  private static final String TEST_PASSWORD = "test-password";
+  private static final String TEST_DB = "test-db";
+  private static final String SQL_TERMINATE_LISTENER = "SELECT pid, pg_terminate_backend(pid) FROM pg_stat_activity " +
+    "WHERE query = 'LISTEN " + BookChangeListener.CHANNEL + "'";
+  private static final String SQL_COUNT_OTHER_LISTENERS = "SELECT count(*) FROM pg_stat_activity " +
+    "WHERE query = 'LISTEN " + BookChangeListener.CHANNEL + "' AND pid <> $1";
+
+  @ClassRule
+  public static GenericContainer postgres = new GenericContainer("postgres:12-alpine")
+    .withEnv("POSTGRES_USER", TEST_USER)
+    .withEnv("POSTGRES_PASSWORD", TEST_PASSWORD)
+    .withEnv("POSTGRES_DB", TEST_DB)
+    .withClasspathResourceMapping("/init_testdb.sql", "/docker-entrypoint-initdb.d/v10init_testdb.sql", BindMode.READ_ONLY)
+    .withExposedPorts(5432)
+    .withMinimumRunningDuration(Duration.ofSeconds(2));
+
+  @Rule
+  public RunTestOnContext rule = new RunTestOnContext();
+
+  private Vertx vertx;
+  private PgPoolOptions pgPoolOptions;
+  private PgPool pgPool;
+  private BookCache bookCache;
+  private BookChangeListener bookChangeListener;
+
+  @Before
+  public void setup(TestContext testContext) {
+    vertx = rule.vertx();
+    pgPoolOptions = new PgPoolOptions()
+      .setPort(postgres.getMappedPort(5432))
+      .setUser(TEST_USER)
+      .setPassword(TEST_PASSWORD)
+      .setDatabase(TEST_DB);
+    pgPool = PgClient.pool(vertx, pgPoolOptions);
+    bookCache = new BookCache(10, 1, TimeUnit.HOURS);
+    bookChangeListener = new BookChangeListener(vertx, pgPoolOptions, bookCache);
+    // the test database is created without the trigger notifying the changes
+    new SchemaMigrator(vertx, pgPoolOptions, Collections.singletonList(SchemaMigrator.MIGRATIONS.get(2)))
+      .migrate(testContext.asyncAssertSuccess(appliedCount ->
+        bookChangeListener.listen(testContext.asyncAssertSuccess())));
+  }
+
+  @After
+  public void tearDown(TestContext testContext) {
+    bookChangeListener.close();
+    pgPool.close();
+    vertx.close(testContext.asyncAssertSuccess());
+  }
+
+  @Test
+  public void testChangedBookIsEvicted(TestContext testContext) {
+    Async async = testContext.async();
+    cache(1);
+    cache(2);
+
+    pgPool.query("UPDATE book SET category = 'java' WHERE id = 1", testContext.asyncAssertSuccess(rows ->
+      waitUntil(() -> bookCache.get(1) == null, () -> {
+        testContext.assertNotNull(bookCache.get(2));
+        async.complete();
+      })));
+  }
+
+  @Test
+  public void testAllBooksChangedFlushesTheCache(TestContext testContext) {
+    Async async = testContext.async();
+    cache(1);
+    cache(2);
+
+    pgPool.query("SELECT pg_notify('" + BookChangeListener.CHANNEL + "', '*')", testContext.asyncAssertSuccess(rows ->
+      waitUntil(() -> bookCache.size() == 0, async::complete)));
+  }
+
+  @Test
+  public void testListensAgainAfterTheConnectionIsLost(TestContext testContext) {
+    Async async = testContext.async();
+    cache(1);
+
+    pgPool.query(SQL_TERMINATE_LISTENER, testContext.asyncAssertSuccess(terminated -> {
+      testContext.assertEquals(1, terminated.size());
+      int terminatedPid = terminated.iterator().next().getInteger("pid");
+      // the notifications sent while disconnected are lost, so the cache is flushed at once
+      waitUntil(() -> bookCache.size() == 0, () -> waitForListener(testContext, terminatedPid, () ->
+        // leave the time to flush the cache once more on reconnection before caching a book again
+        vertx.setTimer(500, timerId -> {
+          cache(2);
+          pgPool.query("UPDATE book SET category = 'java' WHERE id = 2", testContext.asyncAssertSuccess(rows ->
+            waitUntil(() -> bookCache.get(2) == null, async::complete)));
+        })));
+    }));
+  }
+
+  private void cache(int id) {
+    BookPage book = BookPage.of(new JsonArray().add(new JsonObject().put("id", id)));
+    bookCache.put(id, book, bookCache.startLoad(id), 0);
+  }
+
+  // the notifications are delivered asynchronously, the test times out if the condition is never met
+  private void waitUntil(BooleanSupplier condition, Runnable then) {
+    if (condition.getAsBoolean()) {
+      then.run();
+    } else {
+      vertx.setTimer(50, timerId -> waitUntil(condition, then));
+    }
+  }
+
+  private void waitForListener(TestContext testContext, int terminatedPid, Runnable then) {
+    pgPool.preparedQuery(SQL_COUNT_OTHER_LISTENERS, Tuple.of(terminatedPid), testContext.asyncAssertSuccess(count -> {
+      if (count.iterator().next().getLong(0) == 1L) {
+        then.run();
+      } else {
+        vertx.setTimer(100, timerId -> waitForListener(testContext, terminatedPid, then));
+      }
+    }));
+  }
+}
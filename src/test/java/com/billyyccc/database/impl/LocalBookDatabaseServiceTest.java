@@ -0,0 +1,115 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.impl;
+
+import com.billyyccc.database.BookDatabaseService;
+import com.billyyccc.entity.Book;
+import com.billyyccc.entity.BookPage;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+import java.time.format.DateTimeParseException;
+
+/**
+ * This class is for testing that {@link LocalBookDatabaseService} runs the calls on the right contexts.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+@RunWith(VertxUnitRunner.class)
+public class LocalBookDatabaseServiceTest {
+  private Vertx vertx;
+
+  @Before
+  public void setUp() {
+    vertx = Vertx.vertx();
+  }
+
+  @After
+  public void tearDown(TestContext testContext) {
+    vertx.close(testContext.asyncAssertSuccess());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testCallIsRunOnTheServiceContext(TestContext testContext) {
+    Context serviceContext = vertx.getOrCreateContext();
+    Context callerContext = vertx.getOrCreateContext();
+    BookPage book = BookPage.of(new JsonArray().add(new JsonObject().put("id", 1).put("title", "Effective Java")));
+
+    BookDatabaseService mockBookDatabaseService = Mockito.mock(BookDatabaseService.class);
+    Mockito.when(mockBookDatabaseService.getBookById(Mockito.eq(1), Mockito.anyLong(), Mockito.any()))
+      .thenAnswer(invocation -> {
+        testContext.assertEquals(serviceContext, Vertx.currentContext());
+        Handler<AsyncResult<BookPage>> resultHandler = invocation.getArgument(2);
+        resultHandler.handle(Future.succeededFuture(book));
+        return mockBookDatabaseService;
+      });
+
+    LocalBookDatabaseService localBookDatabaseService = new LocalBookDatabaseService(mockBookDatabaseService, serviceContext);
+    localBookDatabaseService.bind(vertx, "library.db.queue");
+    testContext.assertEquals(localBookDatabaseService, LocalBookDatabaseService.lookup(vertx, "library.db.queue"));
+
+    Async async = testContext.async();
+    callerContext.runOnContext(v -> localBookDatabaseService.getBookById(1, 0, testContext.asyncAssertSuccess(result -> {
+      testContext.assertEquals(callerContext, Vertx.currentContext());
+      // the result is handed over as it is without being copied
+      testContext.assertTrue(book == result);
+      async.complete();
+    })));
+  }
+
+  @Test
+  public void testThrowingCallFailsTheResult(TestContext testContext) {
+    Context serviceContext = vertx.getOrCreateContext();
+    Context callerContext = vertx.getOrCreateContext();
+
+    BookDatabaseService mockBookDatabaseService = Mockito.mock(BookDatabaseService.class);
+    Mockito.when(mockBookDatabaseService.addNewBook(Mockito.any(), Mockito.any()))
+      .thenThrow(new DateTimeParseException("Text 'not a date' could not be parsed", "not a date", 0));
+
+    LocalBookDatabaseService localBookDatabaseService = new LocalBookDatabaseService(mockBookDatabaseService, serviceContext);
+
+    Async async = testContext.async();
+    callerContext.runOnContext(v -> localBookDatabaseService.addNewBook(new Book(), testContext.asyncAssertFailure(throwable -> {
+      testContext.assertEquals(callerContext, Vertx.currentContext());
+      testContext.assertTrue(throwable instanceof DateTimeParseException);
+      async.complete();
+    })));
+  }
+}
@@ -0,0 +1,139 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.impl;
+
+import com.billyyccc.database.BookDatabaseService;
+import com.billyyccc.entity.BookFilter;
+import com.billyyccc.entity.BookPage;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is for testing that {@link ReplicatedBookDatabaseService} routes the reads and the writes.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class ReplicatedBookDatabaseServiceTest {
+
+  @Test
+  public void testReadsAreBalancedOverTheReplicas() {
+    BookDatabaseService primary = mockService();
+    BookDatabaseService replica1 = mockService();
+    BookDatabaseService replica2 = mockService();
+    ReplicatedBookDatabaseService service = new ReplicatedBookDatabaseService(primary, Arrays.asList(replica1, replica2), 0);
+
+    for (int i = 0; i < 4; i++) {
+      service.getBookById(1, 0, ar -> Assert.assertTrue(ar.succeeded()));
+    }
+    service.getBooks(new BookFilter(), ar -> Assert.assertTrue(ar.succeeded()));
+    service.deleteBookById(1, ar -> Assert.assertTrue(ar.succeeded()));
+
+    Mockito.verify(replica1, Mockito.times(2)).getBookById(Mockito.eq(1), Mockito.anyLong(), Mockito.any());
+    Mockito.verify(replica2, Mockito.times(2)).getBookById(Mockito.eq(1), Mockito.anyLong(), Mockito.any());
+    Mockito.verify(replica1).getBooks(Mockito.any(), Mockito.any());
+    Mockito.verify(primary).deleteBookById(Mockito.eq(1), Mockito.any());
+    // without read your writes even the reads of the writer are served by the replicas
+    service.getBookById(1, System.currentTimeMillis(), ar -> Assert.assertTrue(ar.succeeded()));
+    Mockito.verify(primary, Mockito.never()).getBookById(Mockito.anyInt(), Mockito.anyLong(), Mockito.any());
+  }
+
+  @Test
+  public void testReadsOfTheWriterGoToThePrimary() throws InterruptedException {
+    BookDatabaseService primary = mockService();
+    BookDatabaseService replica = mockService();
+    ReplicatedBookDatabaseService service = new ReplicatedBookDatabaseService(primary, Arrays.asList(replica), 200);
+
+    service.deleteBookById(1, ar -> Assert.assertTrue(ar.succeeded()));
+    long writtenAt = System.currentTimeMillis();
+
+    // the other callers keep reading from the replicas
+    service.getBookById(1, 0, ar -> Assert.assertTrue(ar.succeeded()));
+    service.getBooks(new BookFilter(), ar -> Assert.assertTrue(ar.succeeded()));
+    Mockito.verify(replica).getBookById(Mockito.eq(1), Mockito.anyLong(), Mockito.any());
+    Mockito.verify(replica).getBooks(Mockito.any(), Mockito.any());
+
+    service.getBookById(1, writtenAt, ar -> Assert.assertTrue(ar.succeeded()));
+    service.getBooks(new BookFilter().setWrittenAt(writtenAt), ar -> Assert.assertTrue(ar.succeeded()));
+    Mockito.verify(primary).getBookById(Mockito.eq(1), Mockito.eq(writtenAt), Mockito.any());
+    Mockito.verify(primary).getBooks(Mockito.any(), Mockito.any());
+
+    Thread.sleep(300);
+    service.getBookById(1, writtenAt, ar -> Assert.assertTrue(ar.succeeded()));
+    Mockito.verify(replica, Mockito.times(2)).getBookById(Mockito.eq(1), Mockito.anyLong(), Mockito.any());
+  }
+
+  @Test
+  public void testWritesInTheFutureAreIgnored() {
+    BookDatabaseService primary = mockService();
+    BookDatabaseService replica = mockService();
+    ReplicatedBookDatabaseService service = new ReplicatedBookDatabaseService(primary, Arrays.asList(replica), 200);
+
+    // a time of write a little ahead is within the skew of the clocks
+    long writtenAt = System.currentTimeMillis() + 100;
+    service.getBookById(1, writtenAt, ar -> Assert.assertTrue(ar.succeeded()));
+    Mockito.verify(primary).getBookById(Mockito.eq(1), Mockito.eq(writtenAt), Mockito.any());
+
+    long farAhead = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+    service.getBookById(1, farAhead, ar -> Assert.assertTrue(ar.succeeded()));
+    service.getBooks(new BookFilter().setWrittenAt(farAhead), ar -> Assert.assertTrue(ar.succeeded()));
+    Mockito.verify(replica).getBookById(Mockito.eq(1), Mockito.eq(farAhead), Mockito.any());
+    Mockito.verify(replica).getBooks(Mockito.any(), Mockito.any());
+    Mockito.verify(primary, Mockito.never()).getBooks(Mockito.any(), Mockito.any());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static BookDatabaseService mockService() {
+    BookDatabaseService mockBookDatabaseService = Mockito.mock(BookDatabaseService.class);
+    Mockito.when(mockBookDatabaseService.getBookById(Mockito.anyInt(), Mockito.anyLong(), Mockito.any()))
+      .thenAnswer(invocation -> {
+        Handler<AsyncResult<BookPage>> resultHandler = invocation.getArgument(2);
+        resultHandler.handle(Future.succeededFuture(BookPage.of(new JsonArray().add(new JsonObject().put("id", 1)))));
+        return mockBookDatabaseService;
+      });
+    Mockito.when(mockBookDatabaseService.getBooks(Mockito.any(), Mockito.any()))
+      .thenAnswer(invocation -> {
+        Handler<AsyncResult<BookPage>> resultHandler = invocation.getArgument(1);
+        resultHandler.handle(Future.succeededFuture(BookPage.of(new JsonArray())));
+        return mockBookDatabaseService;
+      });
+    Mockito.when(mockBookDatabaseService.deleteBookById(Mockito.anyInt(), Mockito.any()))
+      .thenAnswer(invocation -> {
+        Handler<AsyncResult<Void>> resultHandler = invocation.getArgument(1);
+        resultHandler.handle(Future.succeededFuture());
+        return mockBookDatabaseService;
+      });
+    return mockBookDatabaseService;
+  }
+}
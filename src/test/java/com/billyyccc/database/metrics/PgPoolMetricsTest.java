@@ -0,0 +1,198 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.reactiverse.pgclient.PgConnection;
+import io.reactiverse.pgclient.PgIterator;
+import io.reactiverse.pgclient.PgPool;
+import io.reactiverse.pgclient.PgPoolOptions;
+import io.reactiverse.pgclient.PgRowSet;
+import io.reactiverse.pgclient.Row;
+import io.reactiverse.pgclient.Tuple;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is for testing the connection, statement and prepare counts of {@link PgPoolMetrics}.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class PgPoolMetricsTest {
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testConnectionIsActiveUntilClosed() {
+    PgConnection mockPgConnection = Mockito.mock(PgConnection.class);
+    PgPool mockPgPool = Mockito.mock(PgPool.class);
+    Mockito.doAnswer(invocation -> {
+      Handler<AsyncResult<PgConnection>> handler = invocation.getArgument(0);
+      handler.handle(Future.succeededFuture(mockPgConnection));
+      return null;
+    }).when(mockPgPool).getConnection(Mockito.any());
+
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    PgPool pgPool = PgPoolMetrics.instrument(mockPgPool, meterRegistry, "test", new PgPoolOptions().setMaxSize(20),
+      0, TimeUnit.SECONDS);
+
+    PgConnection[] acquired = new PgConnection[1];
+    pgPool.getConnection(ar -> acquired[0] = ar.result());
+    Assert.assertEquals(1.0, meterRegistry.get("library.db.pool.active").gauge().value(), 0.0);
+    Assert.assertEquals(1L, meterRegistry.get("library.db.pool.wait").timer().count());
+
+    // closing twice gives the connection back once only
+    acquired[0].close();
+    acquired[0].close();
+    Assert.assertEquals(0.0, meterRegistry.get("library.db.pool.active").gauge().value(), 0.0);
+    Assert.assertEquals(0.0, meterRegistry.get("library.db.pool.pending").gauge().value(), 0.0);
+    Assert.assertEquals(20.0, meterRegistry.get("library.db.pool.max").gauge().value(), 0.0);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testPreparedQueriesAreCounted() {
+    PgConnection mockPgConnection = Mockito.mock(PgConnection.class);
+    PgPool mockPgPool = Mockito.mock(PgPool.class);
+    Mockito.doAnswer(invocation -> {
+      Handler<AsyncResult<PgConnection>> handler = invocation.getArgument(0);
+      handler.handle(Future.succeededFuture(mockPgConnection));
+      return null;
+    }).when(mockPgPool).getConnection(Mockito.any());
+    Mockito.doAnswer(invocation -> {
+      Handler<AsyncResult<PgRowSet>> handler = invocation.getArgument(2);
+      handler.handle(Future.succeededFuture());
+      return mockPgConnection;
+    }).when(mockPgConnection).preparedQuery(Mockito.anyString(), Mockito.any(Tuple.class), Mockito.any(Handler.class));
+    Mockito.doAnswer(invocation -> {
+      Handler<AsyncResult<PgRowSet>> handler = invocation.getArgument(1);
+      handler.handle(Future.succeededFuture());
+      return mockPgConnection;
+    }).when(mockPgConnection).query(Mockito.anyString(), Mockito.any(Handler.class));
+
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    PgPool pgPool = PgPoolMetrics.instrument(mockPgPool, meterRegistry, "test",
+      new PgPoolOptions().setCachePreparedStatements(true), 0, TimeUnit.SECONDS);
+
+    int[] results = new int[1];
+    pgPool.preparedQuery("SELECT * FROM book WHERE id = $1", Tuple.of(1), ar -> results[0]++);
+    pgPool.preparedQuery("SELECT * FROM book WHERE id = $1", Tuple.of(2), ar -> results[0]++);
+    pgPool.query("SELECT 1", ar -> results[0]++);
+
+    // the queries of the pool run without any prepare ahead of them
+    Mockito.verify(mockPgConnection, Mockito.never()).prepare(Mockito.anyString(), Mockito.any(Handler.class));
+    Mockito.verify(mockPgConnection, Mockito.times(3)).close();
+    Assert.assertEquals(3, results[0]);
+    Assert.assertEquals(2.0, meterRegistry.get("library.db.statements.executions").counter().count(), 0.0);
+    Assert.assertEquals(0.0, meterRegistry.get("library.db.pool.active").gauge().value(), 0.0);
+  }
+
+  @Test
+  public void testPreparesAreSampledOncePerInterval() {
+    PgConnection mockPgConnection = mockConnectionPreparing(2L, 3L);
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    PgPool pgPool = PgPoolMetrics.instrument(mockPool(mockPgConnection), meterRegistry, "test",
+      new PgPoolOptions().setCachePreparedStatements(true), 1, TimeUnit.HOURS);
+
+    pgPool.getConnection(ar -> ar.result().close());
+    pgPool.getConnection(ar -> ar.result().close());
+
+    // the second release comes within the interval of the first sample of the session
+    Mockito.verify(mockPgConnection, Mockito.times(1)).query(Mockito.anyString(), Mockito.any());
+    Mockito.verify(mockPgConnection, Mockito.times(2)).close();
+    Assert.assertEquals(2.0, meterRegistry.get("library.db.statements.prepares").counter().count(), 0.0);
+    Assert.assertEquals(0.0, meterRegistry.get("library.db.pool.active").gauge().value(), 0.0);
+  }
+
+  @Test
+  public void testPreparesAreTheGrowthOfTheSession() {
+    PgConnection mockPgConnection = mockConnectionPreparing(2L, 3L);
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    PgPool pgPool = PgPoolMetrics.instrument(mockPool(mockPgConnection), meterRegistry, "test",
+      new PgPoolOptions().setCachePreparedStatements(true), 1, TimeUnit.NANOSECONDS);
+
+    pgPool.getConnection(ar -> ar.result().close());
+    pgPool.getConnection(ar -> ar.result().close());
+
+    Assert.assertEquals(3.0, meterRegistry.get("library.db.statements.prepares").counter().count(), 0.0);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testEveryExecutionIsPreparedWithoutTheStatementCache() {
+    PgConnection mockPgConnection = mockConnectionPreparing(0L);
+    MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    PgPool pgPool = PgPoolMetrics.instrument(mockPool(mockPgConnection), meterRegistry, "test",
+      new PgPoolOptions().setCachePreparedStatements(false), 1, TimeUnit.NANOSECONDS);
+
+    pgPool.getConnection(ar -> {
+      PgConnection pgConnection = ar.result();
+      pgConnection.preparedQuery("SELECT * FROM book WHERE id = $1", Tuple.of(1), result -> {
+      });
+      pgConnection.close();
+    });
+
+    // the unnamed statements are not listed by the server, the session is not sampled
+    Mockito.verify(mockPgConnection, Mockito.never()).query(Mockito.anyString(), Mockito.any());
+    Assert.assertEquals(1.0, meterRegistry.get("library.db.statements.executions").counter().count(), 0.0);
+    Assert.assertEquals(1.0, meterRegistry.get("library.db.statements.prepares").counter().count(), 0.0);
+  }
+
+  private static PgPool mockPool(PgConnection pgConnection) {
+    PgPool mockPgPool = Mockito.mock(PgPool.class);
+    Mockito.doAnswer(invocation -> {
+      Handler<AsyncResult<PgConnection>> handler = invocation.getArgument(0);
+      handler.handle(Future.succeededFuture(pgConnection));
+      return null;
+    }).when(mockPgPool).getConnection(Mockito.any());
+    return mockPgPool;
+  }
+
+  // a connection whose session lists the given numbers of prepared statements on each sample
+  @SuppressWarnings("unchecked")
+  private static PgConnection mockConnectionPreparing(Long preparedStatements, Long... nextPreparedStatements) {
+    Row mockRow = Mockito.mock(Row.class);
+    Mockito.when(mockRow.getLong(0)).thenReturn(preparedStatements, nextPreparedStatements);
+    PgIterator mockIterator = Mockito.mock(PgIterator.class);
+    Mockito.when(mockIterator.next()).thenReturn(mockRow);
+    PgRowSet mockRowSet = Mockito.mock(PgRowSet.class);
+    Mockito.when(mockRowSet.iterator()).thenReturn(mockIterator);
+    PgConnection mockPgConnection = Mockito.mock(PgConnection.class);
+    Mockito.when(mockPgConnection.processId()).thenReturn(42);
+    Mockito.doAnswer(invocation -> {
+      Handler<AsyncResult<PgRowSet>> handler = invocation.getArgument(1);
+      handler.handle(Future.succeededFuture(mockRowSet));
+      return mockPgConnection;
+    }).when(mockPgConnection).query(Mockito.anyString(), Mockito.any(Handler.class));
+    return mockPgConnection;
+  }
+}
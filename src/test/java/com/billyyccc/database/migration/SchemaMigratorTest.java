@@ -0,0 +1,143 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.migration;
+
+import io.reactiverse.pgclient.PgClient;
+import io.reactiverse.pgclient.PgPool;
+import io.reactiverse.pgclient.PgPoolOptions;
+import io.reactiverse.pgclient.Row;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.RunTestOnContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.testcontainers.containers.BindMode;
+import org.testcontainers.containers.GenericContainer;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class is for testing {@link SchemaMigrator}.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+@RunWith(VertxUnitRunner.class)
+public class SchemaMigratorTest {
+  private static final String TEST_USER = "test";
+  private static final String TEST_PASSWORD = "test-password";
+  private static final String TEST_DB = "test-db";
+
+  @ClassRule
+  public static GenericContainer postgres = new GenericContainer("postgres:12-alpine")
+    .withEnv("POSTGRES_USER", TEST_USER)
+    .withEnv("POSTGRES_PASSWORD", TEST_PASSWORD)
+    .withEnv("POSTGRES_DB", TEST_DB)
+    .withClasspathResourceMapping("/init_testdb.sql", "/docker-entrypoint-initdb.d/v10init_testdb.sql", BindMode.READ_ONLY)
+    .withExposedPorts(5432)
+    .withMinimumRunningDuration(Duration.ofSeconds(2));
+
+  @Rule
+  public RunTestOnContext rule = new RunTestOnContext();
+
+  private Vertx vertx;
+  private PgPoolOptions pgPoolOptions;
+
+  @Before
+  public void setup() {
+    vertx = rule.vertx();
+    pgPoolOptions = new PgPoolOptions()
+      .setPort(postgres.getMappedPort(5432))
+      .setUser(TEST_USER)
+      .setPassword(TEST_PASSWORD)
+      .setDatabase(TEST_DB);
+  }
+
+  @After
+  public void tearDown(TestContext testContext) {
+    vertx.close(testContext.asyncAssertSuccess());
+  }
+
+  @Test
+  public void testStatementsOf() {
+    List<String> statements = SchemaMigrator.statementsOf("-- a comment\n" +
+      "CREATE INDEX CONCURRENTLY a_idx ON book (title)\n    WHERE title IS NOT NULL;\n\n" +
+      "CREATE FUNCTION f() RETURNS INT AS $$\nBEGIN\n  RETURN 1;\nEND;\n$$ LANGUAGE plpgsql;\n");
+
+    Assert.assertEquals(Arrays.asList(
+      "CREATE INDEX CONCURRENTLY a_idx ON book (title)\n    WHERE title IS NOT NULL",
+      "CREATE FUNCTION f() RETURNS INT AS $$\nBEGIN\n  RETURN 1;\nEND;\n$$ LANGUAGE plpgsql"), statements);
+    Assert.assertTrue(SchemaMigrator.isConcurrent(statements.get(0)));
+    Assert.assertFalse(SchemaMigrator.isConcurrent(statements.get(1)));
+  }
+
+  @Test
+  public void testMigrationsAreAppliedOnce(TestContext testContext) {
+    Async async = testContext.async();
+    // the two nodes starting together are serialized by the lock, the second one finds nothing left to apply
+    Async migrated = testContext.async(2);
+    int[] appliedCounts = new int[2];
+    for (int i = 0; i < 2; i++) {
+      int node = i;
+      new SchemaMigrator(vertx, pgPoolOptions).migrate(testContext.asyncAssertSuccess(appliedCount -> {
+        appliedCounts[node] = appliedCount;
+        migrated.countDown();
+      }));
+    }
+
+    migrated.handler(ar -> {
+      testContext.assertEquals(SchemaMigrator.MIGRATIONS.size(), appliedCounts[0] + appliedCounts[1]);
+      PgPool pgPool = PgClient.pool(vertx, pgPoolOptions);
+      pgPool.query("SELECT indexname FROM pg_indexes WHERE tablename = 'book'", testContext.asyncAssertSuccess(rows -> {
+        Set<String> indexes = new HashSet<>();
+        for (Row row : rows) {
+          indexes.add(row.getString(0));
+        }
+        testContext.assertTrue(indexes.containsAll(Arrays.asList("book_title_pattern_idx", "book_category_id_idx",
+          "book_publication_date_id_idx", "book_category_publication_date_idx", "book_title_tsv_idx")));
+        pgPool.query("SELECT count(*) FROM schema_version", testContext.asyncAssertSuccess(count -> {
+          testContext.assertEquals((long) SchemaMigrator.MIGRATIONS.size(), count.iterator().next().getLong(0));
+          pgPool.query("SELECT count(*) FROM pg_trigger WHERE tgname = 'book_changes' AND NOT tgisinternal",
+            testContext.asyncAssertSuccess(triggers -> {
+              testContext.assertEquals(1L, triggers.iterator().next().getLong(0));
+              pgPool.close();
+              async.complete();
+            }));
+        }));
+      }));
+    });
+  }
+}
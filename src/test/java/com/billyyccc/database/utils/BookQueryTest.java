@@ -0,0 +1,115 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.database.utils;
+
+import com.billyyccc.entity.BookFilter;
+import io.reactiverse.pgclient.Tuple;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * This class is for testing the statements and the parameters of {@link BookQuery}.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class BookQueryTest {
+
+  @Test
+  public void testPageStatement() {
+    BookFilter filter = new BookFilter()
+      .setCategory("java")
+      .setAfterId(1000)
+      .setLimit(20)
+      .setSort(BookFilter.SORT_BY_ID_DESC);
+
+    Assert.assertEquals(BookQuery.SQL_FIND_BOOKS + " AND category = $1 AND id < $2 ORDER BY id DESC LIMIT $3",
+      BookQuery.statementOf(filter));
+    Tuple params = BookQuery.paramsOf(filter);
+    Assert.assertEquals(3, params.size());
+    Assert.assertEquals("java", params.getString(0));
+    Assert.assertEquals(1000, (int) params.getInteger(1));
+    Assert.assertEquals(20L, (long) params.getLong(2));
+
+    // the statement of a shape is built once
+    Assert.assertSame(BookQuery.statementOf(filter), BookQuery.statementOf(new BookFilter(filter).setCategory("design")));
+  }
+
+  @Test
+  public void testRangeListAndPrefixStatement() {
+    BookFilter filter = new BookFilter()
+      .setTitlePrefix("100% Java_")
+      .setCategories(Arrays.asList("java", "design"))
+      .setPublicationDateFrom("2003-01-01")
+      .setPublicationDateTo("2009-12-31");
+
+    Assert.assertEquals(BookQuery.SQL_FIND_BOOKS + " AND title LIKE $1 AND category = ANY($2)"
+      + " AND publication_date >= $3 AND publication_date <= $4", BookQuery.statementOf(filter));
+    Tuple params = BookQuery.paramsOf(filter);
+    Assert.assertEquals(4, params.size());
+    Assert.assertEquals("100\\% Java\\_%", params.getString(0));
+    Assert.assertArrayEquals(new String[]{"java", "design"}, params.getStringArray(1));
+    Assert.assertEquals(LocalDate.of(2003, 1, 1), params.getLocalDate(2));
+    Assert.assertEquals(LocalDate.of(2009, 12, 31), params.getLocalDate(3));
+  }
+
+  @Test
+  public void testRankedSearchStatement() {
+    BookFilter filter = new BookFilter()
+      .setCategory("java")
+      .setSearch("concurrency practice")
+      .setLimit(10)
+      .setOffset(20);
+
+    Assert.assertEquals(BookQuery.SQL_FIND_BOOKS + " AND title_tsv @@ websearch_to_tsquery('english', $1)"
+      + " AND category = $2 ORDER BY ts_rank(title_tsv, websearch_to_tsquery('english', $1)) DESC, id ASC"
+      + " LIMIT $3 OFFSET $4", BookQuery.statementOf(filter));
+    Tuple params = BookQuery.paramsOf(filter);
+    Assert.assertEquals(4, params.size());
+    Assert.assertEquals("concurrency practice", params.getString(0));
+    Assert.assertEquals(20L, (long) params.getLong(3));
+
+    // a sort asked for replaces the rank
+    Assert.assertEquals(BookQuery.SQL_FIND_BOOKS + " AND title_tsv @@ websearch_to_tsquery('english', $1)"
+      + " ORDER BY id ASC", BookQuery.statementOf(new BookFilter().setSearch("java").setSort(BookFilter.SORT_BY_ID_ASC)));
+  }
+
+  @Test
+  public void testOffsetWithoutRankIsOrderedById() {
+    Assert.assertEquals(BookQuery.SQL_FIND_BOOKS + " AND category = $1 ORDER BY id ASC OFFSET $2",
+      BookQuery.statementOf(new BookFilter().setCategory("java").setOffset(20)));
+  }
+
+  @Test
+  public void testEmptyCategoriesAreNoCondition() {
+    BookFilter filter = new BookFilter().setCategories(Arrays.asList());
+
+    Assert.assertEquals(BookQuery.SQL_FIND_BOOKS, BookQuery.statementOf(filter));
+    Assert.assertEquals(0, BookQuery.paramsOf(filter).size());
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.entity.codec;
+
+import com.billyyccc.entity.Book;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * This class is for testing that {@link BookJsonWriter} writes the same books as {@link Book#toJson()}.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class BookJsonWriterTest {
+
+  @Test
+  public void testEncode() {
+    Book book = new Book(7, "\"Effective\" Java \\ Übersee\n", "java", "2009-01-01");
+    Assert.assertEquals(book.toJson(), new JsonObject(BookJsonWriter.encode(book)));
+    Assert.assertEquals(book.toJson(), new JsonObject(book.toString()));
+
+    // the encoded buffer must not be overwritten by the next book written on the same thread
+    Book otherBook = new Book(8, "Java Concurrency in Practice", "java", "2006-05-19");
+    Buffer encodedBook = BookJsonWriter.encode(book);
+    Assert.assertEquals(otherBook.toJson(), new JsonObject(BookJsonWriter.encode(otherBook)));
+    Assert.assertEquals(book.toJson(), new JsonObject(encodedBook));
+  }
+
+  @Test
+  public void testEncodeNullFields() {
+    Book book = new Book(1, null, null, null);
+    Assert.assertEquals("{\"id\":1,\"title\":null,\"category\":null,\"publicationDate\":null}",
+      BookJsonWriter.encode(book).toString());
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.entity.codec;
+
+import com.billyyccc.entity.Book;
+import com.billyyccc.entity.BookList;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * This class is for testing the wire format of {@link BookListMessageCodec}.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class BookListMessageCodecTest {
+
+  @Test
+  public void testWireRoundTrip() {
+    BookList books = new BookList()
+      .add(new Book(1, "Effective Java", "java", "2009-01-01"))
+      .add(new Book(2, "Programmieren in Übersee", null, null));
+    BookListMessageCodec codec = new BookListMessageCodec();
+
+    // the message starts after some headers on the wire
+    Buffer buffer = Buffer.buffer().appendString("headers");
+    codec.encodeToWire(buffer, books);
+
+    Assert.assertEquals(books, codec.decodeFromWire("headers".length(), buffer));
+  }
+
+  @Test
+  public void testLocalMessageIsNotCopied() {
+    BookList books = new BookList().add(new Book(1, "Effective Java", "java", "2009-01-01"));
+
+    Assert.assertSame(books, new BookListMessageCodec().transform(books));
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.entity.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.json.Json;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+/**
+ * This class is for testing that {@link JsonBytes} writes the same JSON as Jackson.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+public class JsonBytesTest {
+
+  @Test
+  public void testWriteString() {
+    for (String value : new String[]{"Effective Java", "", "Programmieren in Übersee 😀", "\"quoted\" and \\",
+      "line\nbreak\ttab\u0001", "\"", "end\\"}) {
+      ByteBuf out = Unpooled.buffer();
+      JsonBytes.writeString(out, value);
+      Assert.assertEquals(value, Json.decodeValue(out.toString(StandardCharsets.UTF_8), String.class));
+    }
+
+    ByteBuf out = Unpooled.buffer();
+    JsonBytes.writeString(out, null);
+    Assert.assertEquals("null", out.toString(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testWriteInt() {
+    for (int value : new int[]{0, 7, 10, 99, 1000, -1, Integer.MAX_VALUE, Integer.MIN_VALUE}) {
+      ByteBuf out = Unpooled.buffer().writeByte('[');
+      JsonBytes.writeInt(out, value);
+      Assert.assertEquals("[" + value, out.toString(StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void testWriteIsoDate() {
+    for (LocalDate date : new LocalDate[]{LocalDate.of(2009, 1, 1), LocalDate.of(1995, 12, 31), LocalDate.of(5, 6, 7),
+      LocalDate.of(12345, 1, 1)}) {
+      ByteBuf out = Unpooled.buffer();
+      JsonBytes.writeIsoDate(out, date);
+      Assert.assertEquals("\"" + date + "\"", out.toString(StandardCharsets.UTF_8));
+    }
+  }
+}
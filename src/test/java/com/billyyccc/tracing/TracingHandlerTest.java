@@ -0,0 +1,99 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2018 Billy Yuan
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.billyyccc.tracing;
+
+import com.billyyccc.api.RestApiTestBase;
+import com.billyyccc.api.handler.TracingHandler;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.reactivex.core.Vertx;
+import io.vertx.reactivex.ext.web.Router;
+import io.vertx.reactivex.ext.web.RoutingContext;
+import io.vertx.reactivex.ext.web.client.WebClient;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static io.vertx.core.http.HttpMethod.*;
+
+/**
+ * This test Class is to perform unit tests for the tracing of the requests and their Server-Timing header.
+ *
+ * @author Billy Yuan <billy112487983@gmail.com>
+ */
+
+@RunWith(VertxUnitRunner.class)
+public class TracingHandlerTest extends RestApiTestBase {
+  private static final String CALLER_TRACE_ID = "4bf92f3577b34da6a3ce929d0e0e4736";
+  private static final String CALLER_SPAN_ID = "00f067aa0ba902b7";
+
+  private final List<Span> exportedSpans = new CopyOnWriteArrayList<>();
+
+  @Before
+  public void setUp(TestContext testContext) {
+    vertx = new Vertx(rule.vertx());
+    router = Router.router(vertx);
+
+    router.route().handler(new TracingHandler(exportedSpans::addAll, 1.0));
+    router.get("/books").handler(TracingHandler.phase("validation", RoutingContext::next))
+      .handler(TracingHandler.phase("handler", routingContext -> {
+        Trace trace = Trace.current();
+        testContext.assertNotNull(trace);
+        trace.phase("db.getBooks");
+        vertx.setTimer(5, timerId -> {
+          trace.phase("serialize");
+          routingContext.response().end("[]");
+        });
+      }));
+
+    vertx.createHttpServer().requestHandler(router::accept).listen(1234, testContext.asyncAssertSuccess());
+
+    webClient = WebClient.create(vertx);
+  }
+
+  @Test
+  public void restApiTest(TestContext testContext) {
+    expectedResponseStatusCode = 200;
+
+    webClient.request(GET, 1234, "localhost", "/books")
+      .putHeader(Trace.TRACEPARENT_HEADER, "00-" + CALLER_TRACE_ID + "-" + CALLER_SPAN_ID + "-01")
+      .send(testContext.asyncAssertSuccess(resp -> {
+        testContext.assertEquals(expectedResponseStatusCode, resp.statusCode());
+        String serverTiming = resp.getHeader("Server-Timing");
+        testContext.assertTrue(serverTiming.matches("validation;dur=\\d+\\.\\d{3}, handler;dur=\\d+\\.\\d{3}, "
+          + "db\\.getBooks;dur=([5-9]|\\d{2,})\\.\\d{3}, serialize;dur=\\d+\\.\\d{3}, total;dur=\\d+\\.\\d{3}"), serverTiming);
+
+        testContext.assertEquals(5, exportedSpans.size());
+        exportedSpans.forEach(span -> testContext.assertEquals(CALLER_TRACE_ID, span.toJson().getString("traceId")));
+        Span rootSpan = exportedSpans.get(exportedSpans.size() - 1);
+        testContext.assertEquals("GET /books", rootSpan.name());
+        testContext.assertEquals(CALLER_SPAN_ID, rootSpan.toJson().getString("parentSpanId"));
+        testContext.assertEquals(200, rootSpan.toJson().getJsonObject("attributes").getInteger("http.status_code"));
+      }));
+  }
+}
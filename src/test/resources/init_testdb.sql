@@ -2,7 +2,10 @@ CREATE TABLE book(
     id INT NOT NULL PRIMARY KEY,
     title VARCHAR(100),
     category VARCHAR(50),
-    publication_date DATE
+    publication_date DATE,
+    -- the full-text search vector of the title, kept last so that the positional inserts still line up
+    title_tsv TSVECTOR GENERATED ALWAYS AS (to_tsvector('english', coalesce(title, ''))) STORED
 );
+CREATE INDEX book_title_tsv_idx ON book USING GIN (title_tsv);
 INSERT INTO book VALUES(1, 'Effective java', 'java', '2009-01-01');
 INSERT INTO book VALUES(2, 'Thinking in java', 'java', '2006-02-20');
\ No newline at end of file